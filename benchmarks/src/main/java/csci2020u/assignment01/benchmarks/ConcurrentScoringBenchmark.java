@@ -0,0 +1,93 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.Label;
+import csci2020u.assignment01.SpamDetector;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures score() throughput when many threads share one trained SpamDetector.
+
+ * Run it with different thread counts to see how it scales across cores, e.g.
+ * "java -jar target/benchmarks.jar ConcurrentScoring -t 1" and then "-t 4", "-t 8".
+ * The "withLearning" group adds a thread that keeps learning and unlearning a message,
+ * to show that model updates do not stall the scoring threads. "scoreCached" scores through the
+ * score cache, where every message after the first pass is a hit, to show that threads sharing
+ * the cache still scale.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentScoringBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedDetector {
+        SpamDetector detector;
+        List<byte[]> messages;
+
+        @Setup
+        public void train() {
+            detector = new SpamDetector();
+            detector.train(Corpus.dataDirectory().resolve("train").toFile());
+            messages = Corpus.load("test");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CachingDetector {
+        // Holds every test message, so all lookups after the first pass hit
+        private static final int CACHE_SIZE = 10_000;
+
+        final SharedDetector shared = new SharedDetector();
+
+        @Setup
+        public void train() {
+            shared.train();
+            shared.detector.setScoreCacheSize(CACHE_SIZE);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        byte[] nextMessage(List<byte[]> messages) {
+            byte[] message = messages.get(next);
+            next = (next + 1) % messages.size();
+            return message;
+        }
+    }
+
+    // One operation scores one test message
+    @Benchmark
+    public double score(SharedDetector shared, Cursor cursor) throws IOException {
+        return shared.detector.score(new ByteArrayInputStream(cursor.nextMessage(shared.messages))).getSpamProbability();
+    }
+
+    @Benchmark
+    public double scoreCached(CachingDetector caching, Cursor cursor) {
+        return caching.shared.detector.score(cursor.nextMessage(caching.shared.messages)).getSpamProbability();
+    }
+
+    @Benchmark
+    @Group("withLearning")
+    @GroupThreads(3)
+    public double scoreWhileLearning(SharedDetector shared, Cursor cursor) throws IOException {
+        return score(shared, cursor);
+    }
+
+    @Benchmark
+    @Group("withLearning")
+    @GroupThreads(1)
+    public void learnAndUnlearn(SharedDetector shared, Cursor cursor) throws IOException {
+        byte[] message = cursor.nextMessage(shared.messages);
+        shared.detector.learn(new ByteArrayInputStream(message), Label.SPAM);
+        shared.detector.unlearn(new ByteArrayInputStream(message), Label.SPAM);
+    }
+}
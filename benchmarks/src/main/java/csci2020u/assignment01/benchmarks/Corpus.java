@@ -0,0 +1,128 @@
+package csci2020u.assignment01.benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * Corpus loads the bundled email data set into memory so benchmarks measure CPU work, not disk reads.
+
+ * The data directory defaults to ../src/main/resources/data (the benchmarks are run from this module)
+ * and can be changed with -Dspam.data=<path>.
+ */
+final class Corpus {
+    private Corpus() {
+    }
+
+    static Path dataDirectory() {
+        return Paths.get(System.getProperty("spam.data", "../src/main/resources/data"));
+    }
+
+    /*
+     * Reads every regular file below the given directory of the data set.
+     *
+     * @param relative Directory relative to the data directory, e.g. "train" or "test/spam".
+     * @return The file contents in path order.
+     */
+
+    static List<byte[]> load(String relative) {
+        try {
+            List<byte[]> messages = new ArrayList<>();
+            for (Path path : files(relative)) {
+                messages.add(Files.readAllBytes(path));
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Lists every regular file below the given directory of the data set, for benchmarks that read from disk.
+     *
+     * @param relative Directory relative to the data directory, e.g. "train" or "test/spam".
+     * @return The file paths in order.
+     */
+
+    static List<Path> files(String relative) {
+        Path root = dataDirectory().resolve(relative);
+        try (Stream<Path> paths = Files.walk(root)) {
+            List<Path> files = paths.filter(Files::isRegularFile).sorted().toList();
+            if (files.isEmpty()) {
+                throw new IllegalStateException("No messages found under " + root.toAbsolutePath());
+            }
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static long fileBytes(List<Path> files) {
+        long total = 0;
+        try {
+            for (Path file : files) {
+                total += Files.size(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return total;
+    }
+
+    static long totalBytes(List<byte[]> messages) {
+        long total = 0;
+        for (byte[] message : messages) {
+            total += message.length;
+        }
+        return total;
+    }
+
+    /*
+     * Measures how much heap the object built by the supplier keeps alive, as the difference in
+     * live heap before and after building it. Live heap is the total of a class histogram of
+     * reachable objects where the JVM offers one (HotSpot), which unlike used heap does not count
+     * garbage or filler space left after a collection.
+     */
+
+    static <T> long retainedBytes(Supplier<T> builder) {
+        long before = liveHeapBytes();
+        T built = builder.get();
+        long after = liveHeapBytes();
+        if (built.hashCode() == 42) {
+            System.out.print(""); // keeps the object reachable until the second measurement
+        }
+        return after - before;
+    }
+
+    private static long liveHeapBytes() {
+        try {
+            ObjectName diagnostics = new ObjectName("com.sun.management:type=DiagnosticCommand");
+            String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(diagnostics,
+                    "gcClassHistogram", new Object[]{new String[0]}, new String[]{String[].class.getName()});
+            // Rows are "<rank>: <instances> <bytes> <class>"; filler arrays are heap padding, not objects
+            long bytes = 0;
+            for (String line : histogram.split("\n")) {
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length >= 4 && columns[0].endsWith(":") && !columns[3].contains("FillerArray")) {
+                    bytes += Long.parseLong(columns[2]);
+                }
+            }
+            return bytes;
+        } catch (JMException | RuntimeException e) {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+}
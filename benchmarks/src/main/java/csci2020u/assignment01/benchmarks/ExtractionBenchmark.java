@@ -0,0 +1,70 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.MessageTokenizer;
+import csci2020u.assignment01.TokenTable;
+import csci2020u.assignment01.Tokenization;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures word extraction from email files on disk, the first step of both training and classification.
+
+ * One operation extracts the unique words of one file the way SpamDetector.extractWordsFromFile does:
+ * open the file, tokenize it into a reused TokenTable, close it, with either tokenization. The files of data/train and data/test
+ * are visited in turn; the "files" and "megabytes" counters give files/s and MB/s.
+ * Run with "-prof gc" to see the allocation per file (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionBenchmark {
+    @Param({"PLAIN", "MIME"})
+    public Tokenization tokenization;
+
+    private Path[] files;
+    private long[] sizes;
+    private int next;
+    private MessageTokenizer tokenizer;
+    private final TokenTable words = new TokenTable(4096);
+
+    // Reported by JMH as rates next to the operation rate
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Processed {
+        public long files;
+        public double megabytes;
+    }
+
+    @Setup
+    public void listFiles() throws IOException {
+        tokenizer = tokenization.newTokenizer();
+        List<Path> all = Corpus.files("");
+        files = all.toArray(new Path[0]);
+        sizes = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            sizes[i] = Files.size(files[i]);
+        }
+    }
+
+    @Benchmark
+    public int extractWordsFromFile(Processed processed) throws IOException {
+        int i = next;
+        next = i + 1 == files.length ? 0 : i + 1;
+        words.clear();
+        try (InputStream in = Files.newInputStream(files[i])) {
+            tokenizer.tokenize(in, words::intern);
+        }
+        processed.files++;
+        processed.megabytes += sizes[i] / 1e6;
+        return words.size();
+    }
+}
@@ -0,0 +1,63 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.ModelBudget;
+import csci2020u.assignment01.SpamDetector;
+
+import java.io.File;
+
+/*
+ * Prints how much heap the trained model takes under different model budgets, against the
+ * accuracy and precision it reaches on data/test.
+
+ * Memory is the heap a trained detector keeps alive, measured after full collections, so it is
+ * approximate; the sketch rows should come out close to their budget. Run it from this module after
+ * "mvn package", with a heap big enough for the full model:
+ * java -cp target/benchmarks.jar csci2020u.assignment01.benchmarks.ModelBudgetReport
+ */
+public final class ModelBudgetReport {
+    private static final ModelBudget[] BUDGETS = {
+            ModelBudget.UNLIMITED,
+            ModelBudget.pruned(2, 0),
+            ModelBudget.pruned(3, 0),
+            ModelBudget.pruned(5, 0),
+            ModelBudget.pruned(1, 20_000),
+            ModelBudget.pruned(1, 5_000),
+            ModelBudget.pruned(1, 1_000),
+            ModelBudget.sketch(1024 * 1024),
+            ModelBudget.sketch(256 * 1024),
+            ModelBudget.sketch(64 * 1024),
+            ModelBudget.sketch(16 * 1024),
+    };
+
+    private ModelBudgetReport() {
+    }
+
+    public static void main(String[] args) {
+        File trainDir = Corpus.dataDirectory().resolve("train").toFile();
+        File testDir = Corpus.dataDirectory().resolve("test").toFile();
+        train(ModelBudget.UNLIMITED, trainDir); // warm up, so class loading does not count as model memory
+
+        System.out.printf("%-50s %10s %9s %9s%n", "budget", "heap KB", "accuracy", "precision");
+        for (ModelBudget budget : BUDGETS) {
+            printRow(budget, trainDir, testDir);
+        }
+    }
+
+    // A method of its own, so the detector of one row is garbage before the next row is measured
+    private static void printRow(ModelBudget budget, File trainDir, File testDir) {
+        long bytes = Corpus.retainedBytes(() -> train(budget, trainDir));
+        SpamDetector detector = train(budget, trainDir);
+        detector.classifyTestEmails(testDir);
+        String name = budget.usesSketch() ? "sketch bytes=" + budget.getSketchBytes()
+                : "minCount=" + budget.getMinCount() + " maxWords=" + budget.getMaxWords();
+        System.out.printf("%-50s %10d %9.4f %9.4f%n", name, bytes / 1024,
+                detector.computeAccuracy(), detector.computePrecision());
+    }
+
+    private static SpamDetector train(ModelBudget budget, File trainDir) {
+        SpamDetector detector = new SpamDetector();
+        detector.setModelBudget(budget);
+        detector.train(trainDir);
+        return detector;
+    }
+}
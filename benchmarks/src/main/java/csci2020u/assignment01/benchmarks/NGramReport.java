@@ -0,0 +1,131 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.HashedFeatureModel;
+import csci2020u.assignment01.NGramFeatures;
+import csci2020u.assignment01.SpamDetector;
+import csci2020u.assignment01.Tokenization;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/*
+ * Prints how hashed n-gram features (HashedFeatureModel) compare with SpamDetector's word model on
+ * the bundled data set: table size, training time, scoring throughput, accuracy and precision.
+
+ * Test emails are scored from memory, so throughput measures tokenizing and scoring, not disk reads.
+ * Times are the best of five runs after a warm-up run. Run it from this module after "mvn package":
+ * java -cp target/benchmarks.jar csci2020u.assignment01.benchmarks.NGramReport
+ */
+public final class NGramReport {
+    private static final int RUNS = 5;
+
+    private static final NGramFeatures[] FEATURES = {
+            new NGramFeatures(false, 0, 20),
+            new NGramFeatures(false, 0, 16),
+            new NGramFeatures(true, 0, 20),
+            new NGramFeatures(false, 4, 20),
+            new NGramFeatures(false, 5, 20),
+            new NGramFeatures(true, 4, 20),
+            new NGramFeatures(true, 4, 22),
+    };
+
+    private NGramReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        File trainDir = Corpus.dataDirectory().resolve("train").toFile();
+        List<byte[]> testHam = Corpus.load("test/ham");
+        List<byte[]> testSpam = Corpus.load("test/spam");
+        int emails = testHam.size() + testSpam.size();
+
+        System.out.printf("%-32s %9s %9s %10s %9s %9s%n",
+                "features", "table MB", "train ms", "emails/s", "accuracy", "precision");
+
+        // Baseline: SpamDetector's word model, scored the same way
+        SpamDetector detector = null;
+        long bestTrain = Long.MAX_VALUE;
+        long bestScore = Long.MAX_VALUE;
+        Outcome outcome = null;
+        for (int run = 0; run <= RUNS; run++) {
+            detector = new SpamDetector();
+            detector.setScoreCacheSize(0);
+            long start = System.nanoTime();
+            detector.train(trainDir);
+            long trained = System.nanoTime();
+            outcome = new Outcome();
+            for (byte[] message : testHam) {
+                outcome.add(false, detector.score(new ByteArrayInputStream(message)).isSpam());
+            }
+            for (byte[] message : testSpam) {
+                outcome.add(true, detector.score(new ByteArrayInputStream(message)).isSpam());
+            }
+            long scored = System.nanoTime();
+            if (run > 0) {
+                bestTrain = Math.min(bestTrain, trained - start);
+                bestScore = Math.min(bestScore, scored - trained);
+            }
+        }
+        System.out.printf("%-32s %9s %9d %10.0f %9.4f %9.4f%n", "SpamDetector words", "-",
+                bestTrain / 1_000_000, emails / (bestScore / 1e9), outcome.accuracy(), outcome.precision());
+
+        for (NGramFeatures features : FEATURES) {
+            bestTrain = Long.MAX_VALUE;
+            bestScore = Long.MAX_VALUE;
+            HashedFeatureModel model = null;
+            for (int run = 0; run <= RUNS; run++) {
+                model = new HashedFeatureModel(features, Tokenization.PLAIN, 500.0);
+                long start = System.nanoTime();
+                model.train(trainDir);
+                long trained = System.nanoTime();
+                outcome = new Outcome();
+                for (byte[] message : testHam) {
+                    outcome.add(false, model.score(new ByteArrayInputStream(message)).isSpam());
+                }
+                for (byte[] message : testSpam) {
+                    outcome.add(true, model.score(new ByteArrayInputStream(message)).isSpam());
+                }
+                long scored = System.nanoTime();
+                if (run > 0) {
+                    bestTrain = Math.min(bestTrain, trained - start);
+                    bestScore = Math.min(bestScore, scored - trained);
+                }
+            }
+            String name = "hashed 2^" + features.getTableBits() + " words"
+                    + (features.usesBigrams() ? "+bigrams" : "")
+                    + (features.getCharNGramLength() > 0 ? "+char" + features.getCharNGramLength() : "");
+            System.out.printf("%-32s %9.1f %9d %10.0f %9.4f %9.4f%n", name, model.getTableBytes() / 1e6,
+                    bestTrain / 1_000_000, emails / (bestScore / 1e9), outcome.accuracy(), outcome.precision());
+        }
+    }
+
+    // Confusion counts of one test run, spam being the positive class
+    private static final class Outcome {
+        private int correct;
+        private int total;
+        private int truePositives;
+        private int predictedPositives;
+
+        void add(boolean actualSpam, boolean predictedSpam) {
+            total++;
+            if (actualSpam == predictedSpam) {
+                correct++;
+            }
+            if (predictedSpam) {
+                predictedPositives++;
+                if (actualSpam) {
+                    truePositives++;
+                }
+            }
+        }
+
+        double accuracy() {
+            return (double) correct / total;
+        }
+
+        double precision() {
+            return predictedPositives == 0 ? 0.0 : (double) truePositives / predictedPositives;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.ScoringLimits;
+import csci2020u.assignment01.SpamDetector;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures the latency of scoring one email, the work SpamDetector.computeEmailSpamProbability does
+ * per test file minus the disk read (ExtractionBenchmark covers reading files).
+
+ * Sample-time mode records the time of individual calls, so JMH reports the p50, p90, p99 and
+ * p99.9 latencies. Test messages are scored in turn against the model trained on data/train.
+ * With syntheticWords > 0 the model has that many extra made-up words and each message gets
+ * a line of 20 of them, so lookups land all over a vocabulary far larger than the CPU caches.
+ * maxWords > 0 measures bounded scoring (see ScoringLimits).
+ * Run with "-prof gc" to see the allocation per message (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class ScoringLatencyBenchmark {
+
+    @Param({"0", "100000", "1000000"})
+    public int syntheticWords;
+
+    // 0 scores whole emails; otherwise the most informative words are kept, with early exit and a 64 KB cap
+    @Param({"0", "150"})
+    public int maxWords;
+
+    private SpamDetector detector;
+    private byte[][] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        detector = SyntheticModel.load(SyntheticModel.write(syntheticWords));
+        if (maxWords > 0) {
+            detector.setScoringLimits(new ScoringLimits(maxWords, 0.49, 64 * 1024));
+        }
+        List<byte[]> test = Corpus.load("test");
+        messages = new byte[test.size()][];
+        SplittableRandom random = new SplittableRandom(2020);
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = syntheticWords > 0 ? SyntheticModel.pad(test.get(i), syntheticWords, 20, random) : test.get(i);
+        }
+    }
+
+    @Benchmark
+    public double score() throws IOException {
+        int i = next;
+        next = i + 1 == messages.length ? 0 : i + 1;
+        return detector.score(new ByteArrayInputStream(messages[i])).getSpamProbability();
+    }
+}
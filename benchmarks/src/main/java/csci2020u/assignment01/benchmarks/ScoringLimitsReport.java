@@ -0,0 +1,72 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.ScoringLimits;
+import csci2020u.assignment01.SpamDetector;
+import csci2020u.assignment01.TestFile;
+
+import java.io.File;
+import java.util.List;
+
+/*
+ * Prints how bounded scoring changes the verdicts on data/test compared with whole-email scoring.
+
+ * For each set of limits the test set is classified once and the report shows accuracy, precision,
+ * how many verdicts differ from whole-email scoring, the mean change in spam probability and
+ * the time taken. Run it from this module after "mvn package":
+ * java -cp target/benchmarks.jar csci2020u.assignment01.benchmarks.ScoringLimitsReport
+ */
+public final class ScoringLimitsReport {
+    private static final ScoringLimits[] LIMITS = {
+            new ScoringLimits(15, 0.0, 0),
+            new ScoringLimits(50, 0.0, 0),
+            new ScoringLimits(150, 0.0, 0),
+            new ScoringLimits(50, 0.45, 0),
+            new ScoringLimits(150, 0.45, 0),
+            new ScoringLimits(150, 0.49, 0),
+            new ScoringLimits(0, 0.0, 16 * 1024),
+            new ScoringLimits(150, 0.45, 64 * 1024),
+    };
+
+    private ScoringLimitsReport() {
+    }
+
+    public static void main(String[] args) {
+        File testDir = Corpus.dataDirectory().resolve("test").toFile();
+        SpamDetector detector = new SpamDetector();
+        detector.train(Corpus.dataDirectory().resolve("train").toFile());
+
+        // Warm up, then score whole emails as the reference
+        detector.classifyTestEmails(testDir);
+        long start = System.nanoTime();
+        detector.classifyTestEmails(testDir);
+        long fullNanos = System.nanoTime() - start;
+        List<TestFile> full = detector.getClassifiedEmails();
+
+        System.out.printf("%-50s %9s %9s %8s %10s %8s%n", "limits", "accuracy", "precision", "changed", "mean |dp|", "ms");
+        System.out.printf("%-50s %9.4f %9.4f %8d %10.5f %8d%n", "none (whole email)",
+                detector.computeAccuracy(), detector.computePrecision(), 0, 0.0, fullNanos / 1_000_000);
+
+        for (ScoringLimits limits : LIMITS) {
+            detector.setScoringLimits(limits);
+            detector.classifyTestEmails(testDir);
+            start = System.nanoTime();
+            detector.classifyTestEmails(testDir);
+            long nanos = System.nanoTime() - start;
+            List<TestFile> bounded = detector.getClassifiedEmails();
+
+            int changed = 0;
+            double totalDifference = 0;
+            for (int i = 0; i < full.size(); i++) {
+                double before = full.get(i).getSpamProbability();
+                double after = bounded.get(i).getSpamProbability();
+                if ((before > 0.5) != (after > 0.5)) {
+                    changed++;
+                }
+                totalDifference += Math.abs(after - before);
+            }
+            String name = "words=" + limits.getMaxWords() + " margin=" + limits.getExitMargin() + " bytes=" + limits.getMaxBytes();
+            System.out.printf("%-50s %9.4f %9.4f %8d %10.5f %8d%n", name, detector.computeAccuracy(),
+                    detector.computePrecision(), changed, totalDifference / full.size(), nanos / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.MappedModel;
+import csci2020u.assignment01.SpamModel;
+import csci2020u.assignment01.TokenTable;
+import csci2020u.assignment01.Vocabulary;
+import csci2020u.assignment01.VocabularyModel;
+import csci2020u.assignment01.WordTokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the loop that combines the words of an email into a score: clamping every word
+ * probability and taking two logarithms per word, as scoring used to, against summing the
+ * weights the model precomputes for the word IDs of the email.
+
+ * One operation scores every test message from its already extracted unique words, so tokenizing
+ * is not measured. Both loops do the same lookups; heap models keep the weights in a double[],
+ * mapped models in a section of the model file. With syntheticWords > 0 the messages get a line of
+ * 20 made-up words from a model that much larger, as in ScoringLatencyBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class ScoringLoopBenchmark {
+
+    @Param({"0", "1000000"})
+    public int syntheticWords;
+
+    @Param({"heap", "mapped"})
+    public String model;
+
+    private SpamModel spamModel;
+    private TokenTable[] messageWords;
+    private int[] ids;
+
+    @Setup
+    public void setUp() throws IOException {
+        MappedModel mapped = MappedModel.open(SyntheticModel.write(syntheticWords));
+        if (model.equals("heap")) {
+            Vocabulary counts = new Vocabulary(mapped.size());
+            mapped.addCountsTo(counts);
+            spamModel = VocabularyModel.train(counts, mapped.numHamFiles(), mapped.numSpamFiles(), mapped.smoothingFactor());
+        } else {
+            spamModel = mapped;
+        }
+
+        List<byte[]> test = Corpus.load("test");
+        messageWords = new TokenTable[test.size()];
+        SplittableRandom random = new SplittableRandom(2020);
+        int maxWords = 0;
+        for (int i = 0; i < messageWords.length; i++) {
+            byte[] message = syntheticWords > 0 ? SyntheticModel.pad(test.get(i), syntheticWords, 20, random) : test.get(i);
+            messageWords[i] = new TokenTable();
+            new WordTokenizer().tokenize(new ByteArrayInputStream(message), messageWords[i]::intern);
+            maxWords = Math.max(maxWords, messageWords[i].size());
+        }
+        ids = new int[maxWords];
+
+        // Both loops must agree before either is worth measuring
+        double difference = Math.abs(logPerWord() - gatheredWeights());
+        if (difference > 1e-9 * messageWords.length) {
+            throw new IllegalStateException("Scores differ by " + difference);
+        }
+    }
+
+    @Benchmark
+    public double logPerWord() {
+        double sum = 0;
+        for (TokenTable words : messageWords) {
+            int wordCount = words.size();
+            double normalizationFactor = Math.sqrt(wordCount);
+            double eta = 0.0;
+            for (int i = 0; i < wordCount; i++) {
+                int id = spamModel.find(words, i);
+                double p = id >= 0 ? spamModel.spamProbability(id) : 0.5;
+                p = Math.max(0.1, Math.min(0.9, p));
+                eta += (Math.log(1 - p) - Math.log(p)) / normalizationFactor;
+            }
+            sum += 1 / (1 + Math.exp(eta));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double gatheredWeights() {
+        double sum = 0;
+        for (TokenTable words : messageWords) {
+            int wordCount = words.size();
+            int known = 0;
+            for (int i = 0; i < wordCount; i++) {
+                int id = spamModel.find(words, i);
+                if (id >= 0) {
+                    ids[known++] = id;
+                }
+            }
+            double eta = spamModel.sumWeights(ids, known) / Math.sqrt(wordCount);
+            sum += 1 / (1 + Math.exp(eta));
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,198 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.ScoringServer;
+import csci2020u.assignment01.SpamDetector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Load-tests ScoringServer on localhost and prints throughput and tail latency.
+
+ * For each number of concurrent clients, every client (a virtual thread) posts the emails of data/test
+ * to /score in a loop, one request at a time, first for a warm-up period and then for the measured
+ * period. Latency is measured per request from sending it to receiving the whole response.
+ * Then the whole test set is posted to /score/batch as one mbox, to compare against one request per email.
+
+ * Without a URL (or with "" to still pass the other arguments) the report starts its own server on a
+ * free port, trained on data/train and with the score cache off, so every request is tokenized and scored. Run it from this module after "mvn package":
+ * java -cp target/benchmarks.jar csci2020u.assignment01.benchmarks.ScoringServerLoadTest [url] [clients,...] [seconds]
+ * e.g. ... ScoringServerLoadTest http://127.0.0.1:8080 1,8,64 10, or ... ScoringServerLoadTest "" 1,256 5
+ */
+public final class ScoringServerLoadTest {
+    private static final int[] DEFAULT_CLIENTS = {1, 8, 64};
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int WARMUP_SECONDS = 3;
+    private static final int BATCH_ROUNDS = 5;
+
+    private ScoringServerLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<byte[]> messages = Corpus.load("test");
+        int[] clients = args.length > 1 ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray() : DEFAULT_CLIENTS;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+
+        ScoringServer server = null;
+        URI base;
+        if (args.length > 0 && !args[0].isEmpty()) {
+            base = URI.create(args[0]);
+        } else {
+            System.setProperty("sun.net.httpserver.nodelay", "true"); // see ScoringServer
+            SpamDetector detector = new SpamDetector();
+            detector.train(Corpus.dataDirectory().resolve("train").toFile());
+            detector.setScoreCacheSize(0);
+            server = new ScoringServer(detector, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.start();
+            base = URI.create("http://127.0.0.1:" + server.getPort());
+        }
+
+        try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            System.out.printf("Server %s, %d emails, %d s per run%n", base, messages.size(), seconds);
+            System.out.printf("%8s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                    "clients", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (int clientCount : clients) {
+                run(client, base.resolve("/score"), messages, clientCount, WARMUP_SECONDS);
+                Run run = run(client, base.resolve("/score"), messages, clientCount, seconds);
+                long[] latencies = run.latencies();
+                System.out.printf("%8d %10d %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n", clientCount,
+                        latencies.length, run.errors(), latencies.length / (run.nanos() / 1e9),
+                        percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                        percentile(latencies, 0.999), percentile(latencies, 1.0));
+            }
+
+            byte[] mbox = toMbox(messages);
+            HttpRequest batch = HttpRequest.newBuilder(base.resolve("/score/batch"))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mbox)).build();
+            client.send(batch, HttpResponse.BodyHandlers.ofString()); // warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < BATCH_ROUNDS; i++) {
+                HttpResponse<String> response = client.send(batch, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Batch request failed: " + response.statusCode());
+                }
+            }
+            double batchSeconds = (System.nanoTime() - start) / 1e9 / BATCH_ROUNDS;
+            System.out.printf("Batch of %d emails (%.1f MB): %.1f ms per request, %.1f emails/s%n", messages.size(),
+                    mbox.length / 1e6, batchSeconds * 1e3, messages.size() / batchSeconds);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    // Latencies in nanoseconds of all successful requests of a run, sorted
+    private record Run(long[] latencies, long errors, long nanos) {
+    }
+
+    private static Run run(HttpClient client, URI uri, List<byte[]> messages, int clientCount, int seconds)
+            throws InterruptedException {
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong errors = new AtomicLong();
+        long[][] perClient = new long[clientCount][];
+        Thread[] threads = new Thread[clientCount];
+        long start = System.nanoTime();
+        for (int c = 0; c < clientCount; c++) {
+            int clientIndex = c;
+            threads[c] = Thread.ofVirtual().start(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                int next = clientIndex * messages.size() / clientCount; // clients start at different emails
+                try {
+                    while (System.nanoTime() < end) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(messages.get(next))).build();
+                        next = (next + 1) % messages.size();
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                            continue;
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - sent;
+                    }
+                } finally {
+                    perClient[clientIndex] = Arrays.copyOf(latencies, count);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - start;
+
+        long[] all = Arrays.stream(perClient).flatMapToLong(Arrays::stream).toArray();
+        Arrays.sort(all);
+        return new Run(all, errors.get(), nanos);
+    }
+
+    // Latency in milliseconds below which the given share of the sorted latencies fall
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    // Joins messages into an mboxrd file, escaping body lines that would read as separators
+    private static byte[] toMbox(List<byte[]> messages) {
+        ByteArrayOutputStream mbox = new ByteArrayOutputStream();
+        byte[] separator = "From load-test\n".getBytes(StandardCharsets.US_ASCII);
+        for (byte[] message : messages) {
+            mbox.writeBytes(separator);
+            int lineStart = 0;
+            for (int i = 0; i <= message.length; i++) {
+                if (i == message.length || message[i] == '\n') {
+                    if (isFromLine(message, lineStart, i)) {
+                        mbox.write('>');
+                    }
+                    mbox.write(message, lineStart, i - lineStart);
+                    mbox.write('\n');
+                    lineStart = i + 1;
+                }
+            }
+            mbox.write('\n');
+        }
+        return mbox.toByteArray();
+    }
+
+    // Whether a line matches ">*From ", which mboxrd escapes with one more '>'
+    private static boolean isFromLine(byte[] text, int start, int end) {
+        int i = start;
+        while (i < end && text[i] == '>') {
+            i++;
+        }
+        byte[] from = {'F', 'r', 'o', 'm', ' '};
+        if (end - i < from.length) {
+            return false;
+        }
+        for (int k = 0; k < from.length; k++) {
+            if (text[i + k] != from[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
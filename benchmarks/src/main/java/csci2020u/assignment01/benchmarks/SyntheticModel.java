@@ -0,0 +1,128 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.MappedModel;
+import csci2020u.assignment01.SpamDetector;
+import csci2020u.assignment01.Vocabulary;
+import csci2020u.assignment01.VocabularyModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/*
+ * SyntheticModel builds models far larger than the bundled training set allows, to see how
+ * training and scoring behave once the vocabulary no longer fits in the CPU caches.
+
+ * A synthetic model is the model trained on data/train plus the requested number of made-up words
+ * with random ham and spam counts. Made-up words are 4 to 12 lowercase letters and digits, like
+ * real tokens, and the same index always gives the same word, so messages can be padded with words
+ * the model knows.
+ */
+final class SyntheticModel {
+    private static final long SEED = 0x5EED_2020L;
+
+    private SyntheticModel() {
+    }
+
+    /*
+     * Writes a model with the given number of made-up words to a temporary model file.
+     * The file is deleted when the JVM exits.
+     *
+     * @param syntheticWords Number of made-up words to add; 0 writes the plain trained model.
+     * @return The model file, for SpamDetector.load().
+     */
+
+    static Path write(int syntheticWords) {
+        try {
+            Path trained = Files.createTempFile("spam-benchmark-trained", ".bin");
+            trained.toFile().deleteOnExit();
+            SpamDetector detector = new SpamDetector();
+            detector.train(Corpus.dataDirectory().resolve("train").toFile());
+            detector.save(trained);
+            if (syntheticWords == 0) {
+                return trained;
+            }
+
+            MappedModel base = MappedModel.open(trained);
+            Vocabulary counts = new Vocabulary(base.size() + syntheticWords);
+            base.addCountsTo(counts);
+            SplittableRandom random = new SplittableRandom(SEED);
+            for (int i = 0; i < syntheticWords; i++) {
+                byte[] word = word(i).getBytes(StandardCharsets.ISO_8859_1);
+                int id = counts.intern(word, word.length, word(i).hashCode());
+                // Most words are rare, like in real mail; every word is in at least one file
+                int ham = random.nextInt(4) == 0 ? random.nextInt(1, 50) : random.nextInt(3);
+                int spam = random.nextInt(4) == 0 ? random.nextInt(1, 50) : (ham == 0 ? 1 : 0);
+                counts.addCounts(id, ham, spam);
+            }
+
+            Path synthetic = Files.createTempFile("spam-benchmark-synthetic", ".bin");
+            synthetic.toFile().deleteOnExit();
+            MappedModel.write(synthetic, VocabularyModel.train(counts,
+                    base.numHamFiles(), base.numSpamFiles(), base.smoothingFactor()));
+            return synthetic;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Loads a model written by write() into a heap model, the form train() produces.
+     */
+
+    static SpamDetector load(Path modelFile) {
+        try {
+            SpamDetector detector = SpamDetector.load(modelFile);
+            detector.computeWordProbabilities();
+            return detector;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Returns the made-up word with the given index.
+     */
+
+    static String word(int index) {
+        long bits = mix(SEED + index);
+        int length = 4 + (int) ((bits >>> 58) % 9);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int digit = (int) ((bits >>> (5 * i)) & 31);
+            word.append(Character.forDigit(digit, 32));
+        }
+        return word.toString();
+    }
+
+    /*
+     * Appends a line of made-up words to a message, so scoring it looks up words spread over the whole model.
+     *
+     * @param message        The original message.
+     * @param syntheticWords Number of made-up words in the model.
+     * @param count          Number of words to append.
+     * @param random         Picks the words.
+     */
+
+    static byte[] pad(byte[] message, int syntheticWords, int count, SplittableRandom random) {
+        StringBuilder line = new StringBuilder("\n");
+        for (int i = 0; i < count; i++) {
+            line.append(word(random.nextInt(syntheticWords))).append(' ');
+        }
+        byte[] extra = line.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] padded = new byte[message.length + extra.length];
+        System.arraycopy(message, 0, padded, 0, message.length);
+        System.arraycopy(extra, 0, padded, message.length, extra.length);
+        return padded;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,61 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.MappedModel;
+import csci2020u.assignment01.SpamDetector;
+import csci2020u.assignment01.Tokenization;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+ * Prints how MIME tokenization compares with plain tokenization on the bundled data set:
+ * vocabulary size, model file size, training and classification time, accuracy and precision.
+
+ * Times are the best of five runs after a warm-up run. Run it from this module after "mvn package":
+ * java -cp target/benchmarks.jar csci2020u.assignment01.benchmarks.TokenizationReport
+ */
+public final class TokenizationReport {
+    private static final int RUNS = 5;
+
+    private TokenizationReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        File trainDir = Corpus.dataDirectory().resolve("train").toFile();
+        File testDir = Corpus.dataDirectory().resolve("test").toFile();
+
+        System.out.printf("%-8s %10s %10s %10s %12s %9s %9s%n",
+                "mode", "words", "model MB", "train ms", "classify ms", "accuracy", "precision");
+        for (Tokenization tokenization : Tokenization.values()) {
+            SpamDetector detector = null;
+            long bestTrain = Long.MAX_VALUE;
+            long bestClassify = Long.MAX_VALUE;
+            for (int run = 0; run <= RUNS; run++) {
+                detector = new SpamDetector();
+                detector.setTokenization(tokenization);
+                long start = System.nanoTime();
+                detector.train(trainDir);
+                long trained = System.nanoTime();
+                detector.classifyTestEmails(testDir);
+                long classified = System.nanoTime();
+                if (run > 0) {
+                    bestTrain = Math.min(bestTrain, trained - start);
+                    bestClassify = Math.min(bestClassify, classified - trained);
+                }
+            }
+
+            Path modelFile = Files.createTempFile("spam-tokenization", ".bin");
+            try {
+                detector.save(modelFile);
+                System.out.printf("%-8s %10d %10.1f %10d %12d %9.4f %9.4f%n", tokenization,
+                        MappedModel.open(modelFile).size(), Files.size(modelFile) / 1e6,
+                        bestTrain / 1_000_000, bestClassify / 1_000_000,
+                        detector.computeAccuracy(), detector.computePrecision());
+            } finally {
+                Files.delete(modelFile);
+            }
+        }
+    }
+}
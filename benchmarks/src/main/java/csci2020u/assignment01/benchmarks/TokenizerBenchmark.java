@@ -0,0 +1,80 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.TokenTable;
+import csci2020u.assignment01.WordTokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the regex-based word extraction SpamDetector used to do with WordTokenizer.
+
+ * One operation tokenizes the whole bundled corpus (train and test, about 33 MB); the corpus size
+ * is printed at setup so ops/s can be turned into MB/s. Run with "-prof gc" to see
+ * the allocation per operation (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+    private List<byte[]> messages;
+    private final WordTokenizer tokenizer = new WordTokenizer();
+    private final TokenTable uniqueTokens = new TokenTable(4096);
+    private long hashSum;
+
+    @Setup
+    public void loadCorpus() {
+        messages = Corpus.load("");
+        System.out.printf("%nCorpus: %d messages, %.2f MB%n", messages.size(), Corpus.totalBytes(messages) / 1e6);
+    }
+
+    // The former SpamDetector.extractWordsFromFile: lowercase copy + regex split + HashSet per message
+    @Benchmark
+    public int legacySplit() throws IOException {
+        int uniqueWords = 0;
+        for (byte[] message : messages) {
+            Set<String> words = new HashSet<>();
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(message)))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    words.addAll(Arrays.asList(line.toLowerCase().split("\\W+")));
+                }
+            }
+            uniqueWords += words.size();
+        }
+        return uniqueWords;
+    }
+
+    // Unique words per message as interned IDs, the shape training and scoring need
+    @Benchmark
+    public int tokenizerUniqueIds() throws IOException {
+        int uniqueWords = 0;
+        for (byte[] message : messages) {
+            uniqueTokens.clear();
+            tokenizer.tokenize(new ByteArrayInputStream(message), uniqueTokens::intern);
+            uniqueWords += uniqueTokens.size();
+        }
+        return uniqueWords;
+    }
+
+    // Raw scanning speed: every token's hash, no deduplication
+    @Benchmark
+    public long tokenizerHashes() throws IOException {
+        hashSum = 0;
+        for (byte[] message : messages) {
+            tokenizer.tokenize(new ByteArrayInputStream(message), (token, length, hash) -> hashSum += hash);
+        }
+        return hashSum;
+    }
+}
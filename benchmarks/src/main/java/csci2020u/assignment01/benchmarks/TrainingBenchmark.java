@@ -0,0 +1,74 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.SpamDetector;
+import csci2020u.assignment01.Tokenization;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Measures SpamDetector.train() on the bundled training directory, read from disk as the GUI does.
+
+ * One operation trains a fresh detector on data/train; the "files" and "megabytes"
+ * counters turn that into files/s and MB/s. syntheticWords > 0 trains on top of a saved model
+ * with that many extra words, which shows the cost of merging into a large existing model.
+ * Run with "-prof gc" to see the allocation per training run (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TrainingBenchmark {
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"0", "1000000"})
+    public int syntheticWords;
+
+    @Param({"PLAIN", "MIME"})
+    public Tokenization tokenization;
+
+    private File trainDir;
+    private Path baseModel;
+    private long fileCount;
+    private long byteCount;
+
+    // Reported by JMH as rates next to the operation rate
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Processed {
+        public long files;
+        public double megabytes;
+    }
+
+    @Setup
+    public void setUp() {
+        trainDir = Corpus.dataDirectory().resolve("train").toFile();
+        // train() reads only the ham and spam subdirectories
+        List<Path> files = new ArrayList<>(Corpus.files("train/ham"));
+        files.addAll(Corpus.files("train/spam"));
+        fileCount = files.size();
+        byteCount = Corpus.fileBytes(files);
+        baseModel = syntheticWords > 0 ? SyntheticModel.write(syntheticWords) : null;
+    }
+
+    @Benchmark
+    public SpamDetector train(Processed processed) throws IOException {
+        // A saved model opens by mapping the file, so almost all of the time is train() itself
+        SpamDetector detector = baseModel == null ? new SpamDetector() : SpamDetector.load(baseModel);
+        detector.setTrainingParallelism(parallelism);
+        detector.setTokenization(tokenization);
+        detector.train(trainDir);
+        processed.files += fileCount;
+        processed.megabytes += byteCount / 1e6;
+        return detector;
+    }
+}
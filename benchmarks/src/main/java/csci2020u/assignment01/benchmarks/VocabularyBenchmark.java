@@ -0,0 +1,122 @@
+package csci2020u.assignment01.benchmarks;
+
+import csci2020u.assignment01.TokenTable;
+import csci2020u.assignment01.Vocabulary;
+import csci2020u.assignment01.WordTokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compares the TreeMap<String, Double> word probability lookup SpamDetector used to do with
+ * the Vocabulary hash table plus a double[] of probabilities.
+
+ * Both models are built from the training corpus; one operation looks up every unique word of
+ * every test message, which is what classifying the test set does. The heap each model retains
+ * is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class VocabularyBenchmark {
+    private TreeMap<String, Double> treeModel;
+    private Vocabulary vocabulary;
+    private double[] probabilities;
+
+    // Unique words of every test message, as Strings and as bytes
+    private List<List<String>> messageWordStrings;
+    private List<TokenTable> messageWordTables;
+
+    @Setup
+    public void buildModels() {
+        List<byte[]> training = Corpus.load("train");
+        List<byte[]> test = Corpus.load("test");
+
+        long treeBytes = Corpus.retainedBytes(() -> treeModel = buildTreeModel(training));
+        long vocabularyBytes = Corpus.retainedBytes(() -> {
+            vocabulary = buildVocabulary(training);
+            probabilities = new double[vocabulary.size()];
+            for (int id = 0; id < probabilities.length; id++) {
+                probabilities[id] = (vocabulary.spamCount(id) + 1.0) / (vocabulary.hamCount(id) + 2.0);
+            }
+            return vocabulary;
+        });
+        System.out.printf("%nWords: %d, TreeMap model: %.1f MB, Vocabulary model: %.1f MB%n",
+                vocabulary.size(), treeBytes / 1e6, vocabularyBytes / 1e6);
+
+        messageWordStrings = new ArrayList<>();
+        messageWordTables = new ArrayList<>();
+        for (byte[] message : test) {
+            TokenTable words = uniqueWords(message);
+            List<String> strings = new ArrayList<>(words.size());
+            for (int id = 0; id < words.size(); id++) {
+                strings.add(words.token(id));
+            }
+            messageWordTables.add(words);
+            messageWordStrings.add(strings);
+        }
+    }
+
+    @Benchmark
+    public double treeMapLookup() {
+        double sum = 0;
+        for (List<String> words : messageWordStrings) {
+            for (String word : words) {
+                sum += treeModel.getOrDefault(word, 0.5);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double vocabularyLookup() {
+        double sum = 0;
+        for (TokenTable words : messageWordTables) {
+            for (int i = 0; i < words.size(); i++) {
+                int id = vocabulary.find(words, i);
+                sum += id >= 0 ? probabilities[id] : 0.5;
+            }
+        }
+        return sum;
+    }
+
+    private static TreeMap<String, Double> buildTreeModel(List<byte[]> training) {
+        TreeMap<String, Integer> counts = new TreeMap<>();
+        for (byte[] message : training) {
+            TokenTable words = uniqueWords(message);
+            for (int id = 0; id < words.size(); id++) {
+                counts.merge(words.token(id), 1, Integer::sum);
+            }
+        }
+        TreeMap<String, Double> model = new TreeMap<>();
+        counts.forEach((word, count) -> model.put(word, count / (count + 1.0)));
+        return model;
+    }
+
+    private static Vocabulary buildVocabulary(List<byte[]> training) {
+        Vocabulary counts = new Vocabulary();
+        for (byte[] message : training) {
+            counts.addFile(uniqueWords(message), false);
+        }
+        return counts;
+    }
+
+    private static TokenTable uniqueWords(byte[] message) {
+        TokenTable words = new TokenTable();
+        try {
+            new WordTokenizer().tokenize(new ByteArrayInputStream(message), words::intern);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return words;
+    }
+}
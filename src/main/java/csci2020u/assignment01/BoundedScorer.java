@@ -0,0 +1,149 @@
+package csci2020u.assignment01;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/*
+ * BoundedScorer scores an email under ScoringLimits while it is being tokenized.
+
+ * Every distinct word is looked up once, when it first occurs, and its weight
+ * (SpamModel.weight(), 0 for unknown words, as in full scoring) is offered to a min-heap
+ * that keeps the maxWords weights of largest magnitude. The score combines only the kept weights,
+ * with the same square-root normalization as full scoring, so an email with at most maxWords
+ * distinct words scores the same either way. Rules (see SpamRules) are matched in the same pass,
+ * and their weights are added to the combined word weights.
+
+ * A BoundedScorer is not thread-safe; SpamDetector keeps one per thread.
+ */
+final class BoundedScorer implements WordTokenizer.TokenSink {
+    // How many new words are read between early-exit checks
+    private static final int EXIT_CHECK_INTERVAL = 16;
+
+    private final TokenTable words = new TokenTable(4096);
+    private final RuleMatcher ruleMatcher = new RuleMatcher();
+    private double[] heap = new double[64]; // kept weights, smallest magnitude first
+
+    // State of the email being scored
+    private MessageTokenizer tokenizer;
+    private SpamModel model;
+    private boolean matchingRules;
+    private int maxWords;
+    private double exitMargin;
+    private int kept;
+    private int knownWordCount;
+    private int wordsSinceCheck;
+
+    SpamScore score(InputStream message, MessageTokenizer tokenizer, SpamModel model, ScoringLimits limits,
+                    SpamRules rules) throws IOException {
+        WordTokenizer.TokenSink sink = begin(tokenizer, model, limits, rules);
+        long maxBytes = limits.getMaxBytes() > 0 ? limits.getMaxBytes() : Long.MAX_VALUE;
+        tokenizer.tokenize(message, maxBytes, sink);
+        return finish();
+    }
+
+    SpamScore score(CharSequence message, MessageTokenizer tokenizer, SpamModel model, ScoringLimits limits,
+                    SpamRules rules) {
+        WordTokenizer.TokenSink sink = begin(tokenizer, model, limits, rules);
+        long maxBytes = limits.getMaxBytes();
+        if (maxBytes > 0 && maxBytes < message.length()) {
+            message = message.subSequence(0, (int) maxBytes); // chars stand in for bytes here
+        }
+        tokenizer.tokenize(message, sink);
+        return finish();
+    }
+
+    @Override
+    public void token(byte[] token, int length, int hash) {
+        int size = words.size();
+        if (words.intern(token, length, hash) < size) {
+            return; // seen before in this email
+        }
+
+        double weight = 0.0; // unknown words count as p = 0.5
+        int id = model.find(token, length, hash);
+        if (id >= 0) {
+            weight = model.weight(id);
+            knownWordCount++;
+        }
+        offer(weight);
+
+        if (exitMargin > 0 && kept == maxWords && ++wordsSinceCheck >= EXIT_CHECK_INTERVAL) {
+            wordsSinceCheck = 0;
+            if (Math.abs(spamProbability() - 0.5) >= exitMargin) {
+                tokenizer.stop();
+            }
+        }
+    }
+
+    // Returns the sink to tokenize into: this scorer, behind the rule matcher if there are rules
+    private WordTokenizer.TokenSink begin(MessageTokenizer tokenizer, SpamModel model, ScoringLimits limits,
+                                          SpamRules rules) {
+        this.tokenizer = tokenizer;
+        this.model = model;
+        matchingRules = rules.size() > 0;
+        maxWords = limits.getMaxWords() > 0 ? limits.getMaxWords() : Integer.MAX_VALUE;
+        exitMargin = limits.getExitMargin();
+        kept = 0;
+        knownWordCount = 0;
+        wordsSinceCheck = 0;
+        words.clear();
+        return matchingRules ? ruleMatcher.begin(rules, this) : this;
+    }
+
+    private SpamScore finish() {
+        tokenizer = null;
+        model = null;
+        if (words.size() == 0) return new SpamScore(0.5, 0, 0); // Neutral probability for empty emails
+        return new SpamScore(spamProbability(), words.size(), knownWordCount,
+                matchingRules ? ruleMatcher.matchCount() : 0);
+    }
+
+    private double spamProbability() {
+        double normalizationFactor = Math.sqrt(kept);
+        double eta = 0.0;
+        for (int i = 0; i < kept; i++) {
+            eta += heap[i] / normalizationFactor;
+        }
+        if (matchingRules) {
+            eta -= ruleMatcher.weight();
+        }
+        return 1 / (1 + Math.exp(eta));
+    }
+
+    // Keeps the weight if fewer than maxWords are kept or it outweighs the least informative kept one
+    private void offer(double weight) {
+        if (kept < maxWords) {
+            if (kept == heap.length) {
+                heap = Arrays.copyOf(heap, kept * 2);
+            }
+            int i = kept++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (Math.abs(heap[parent]) <= Math.abs(weight)) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = weight;
+        } else if (Math.abs(weight) > Math.abs(heap[0])) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= kept) {
+                    break;
+                }
+                if (child + 1 < kept && Math.abs(heap[child + 1]) < Math.abs(heap[child])) {
+                    child++;
+                }
+                if (Math.abs(heap[child]) >= Math.abs(weight)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = weight;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package csci2020u.assignment01;
+
+/*
+ * CacheStats is a snapshot of the score cache counters of a SpamDetector, for sizing the cache.
+ * Counters start at 0 when the cache is created (see SpamDetector.setScoreCacheSize()).
+
+ * - hits / misses: lookups that found a score, or had to score the message.
+ * - evictions: entries dropped to stay within the capacity. Many evictions with few hits mean the
+ *   cache is too small for the stream's repeats.
+ * - invalidations: times the cache was emptied because the model or scoring settings changed.
+ */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+    private final int capacity;
+
+    public CacheStats(long hits, long misses, long evictions, long invalidations, int size, int capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+
+    public long getEvictions() { return evictions; }
+
+    public long getInvalidations() { return invalidations; }
+
+    // Number of cached scores
+    public int getSize() { return size; }
+
+    public int getCapacity() { return capacity; }
+
+    // Share of lookups answered from the cache, 0 before the first lookup
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats[hits=%d, misses=%d, hitRate=%.4f, evictions=%d, invalidations=%d, size=%d/%d]",
+                hits, misses, getHitRate(), evictions, invalidations, size, capacity);
+    }
+}
@@ -0,0 +1,274 @@
+package csci2020u.assignment01;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/*
+ * ClassificationPipeline classifies arbitrarily large sets of emails with flat memory use.
+
+ * Stages:
+ * - A reader thread walks the sources (directory trees and mbox files) and reads one message at a time.
+ * - Worker threads tokenize and score messages with SpamDetector.score(byte[]). Tokenizing and scoring
+ *   share a stage so each message's word table stays on one thread; repeated copies of a message are
+ *   answered from the detector's score cache when it is on (the command line turns it on).
+ * - The calling thread hands every result, with the running metrics, to a ResultSink as soon as it is ready.
+ * Stages are connected by bounded queues, so a slow sink or slow workers hold back the reader
+ * (backpressure) and at most a fixed number of messages are in memory at once.
+
+ * Results arrive in completion order, not input order.
+ */
+public final class ClassificationPipeline {
+
+    /*
+     * Receives every classified email together with the metrics that include it.
+     */
+    @FunctionalInterface
+    public interface ResultSink {
+        void accept(TestFile result, RunningMetrics metrics) throws IOException;
+    }
+
+    // A raw message on its way from the reader to the workers
+    private record Email(String name, String actualClass, byte[] content) {
+    }
+
+    // A source of emails with the actual class of all of them (null if unknown)
+    private record Source(Path path, Label label, boolean mbox) {
+    }
+
+    // Scores the command line remembers, so copies of bulk mail in an archive are scored once
+    private static final int SCORE_CACHE_SIZE = 10_000;
+
+    private static final Email END_OF_EMAILS = new Email(null, null, null);
+    private static final TestFile END_OF_RESULTS = new TestFile(null, 0, null);
+
+    private final SpamDetector detector;
+    private final int workers;
+    private final int queueCapacity;
+    private final List<Source> sources = new ArrayList<>();
+
+    /*
+     * @param detector      The trained detector to score with.
+     * @param workers       Number of tokenizer/scorer threads.
+     * @param queueCapacity Number of messages each queue between stages holds at most.
+     */
+
+    public ClassificationPipeline(SpamDetector detector, int workers, int queueCapacity) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Workers and queue capacity must be at least 1");
+        }
+        this.detector = detector;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /*
+     * Adds every regular file below a directory, at any depth, as one email.
+     *
+     * @param root  The directory to walk.
+     * @param label The actual class of the emails, or null if unknown.
+     */
+
+    public ClassificationPipeline addDirectory(Path root, Label label) {
+        sources.add(new Source(root, label, false));
+        return this;
+    }
+
+    /*
+     * Adds every message of an mbox file.
+     *
+     * @param mboxFile The mbox file.
+     * @param label    The actual class of the messages, or null if unknown.
+     */
+
+    public ClassificationPipeline addMbox(Path mboxFile, Label label) {
+        sources.add(new Source(mboxFile, label, true));
+        return this;
+    }
+
+    /*
+     * Classifies every email of the sources, feeding results to the sink as they are produced.
+     * Files that cannot be read are reported on System.err and skipped.
+     *
+     * @param sink Receives each result; runs on the calling thread.
+     * @return The final metrics.
+     * @throws IOException If a source cannot be listed or the sink fails; the pipeline is stopped.
+     */
+
+    public RunningMetrics run(ResultSink sink) throws IOException, InterruptedException {
+        RunningMetrics metrics = new RunningMetrics();
+        BlockingQueue<Email> emails = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<TestFile> results = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        threads.add(startThread("spam-pipeline-reader", failure, () -> {
+            readSources(emails);
+            for (int i = 0; i < workers; i++) {
+                emails.put(END_OF_EMAILS);
+            }
+        }));
+        for (int i = 0; i < workers; i++) {
+            threads.add(startThread("spam-pipeline-worker-" + i, failure, () -> {
+                for (Email email = emails.take(); email != END_OF_EMAILS; email = emails.take()) {
+                    SpamScore score = detector.score(email.content());
+                    results.put(new TestFile(email.name(), score.getSpamProbability(), email.actualClass()));
+                }
+                results.put(END_OF_RESULTS);
+            }));
+        }
+
+        try {
+            int finishedWorkers = 0;
+            while (finishedWorkers < workers) {
+                TestFile result = results.poll(100, TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    rethrow(failure.get());
+                } else if (result == END_OF_RESULTS) {
+                    finishedWorkers++;
+                } else {
+                    metrics.record(result);
+                    sink.accept(result, metrics);
+                }
+            }
+            rethrow(failure.get());
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+        return metrics;
+    }
+
+    private void readSources(BlockingQueue<Email> emails) throws IOException, InterruptedException {
+        for (Source source : sources) {
+            String actualClass = source.label() == null ? null : source.label().getClassName();
+            if (source.mbox()) {
+                readMbox(source.path(), actualClass, emails);
+            } else {
+                readDirectory(source.path(), actualClass, emails);
+            }
+        }
+    }
+
+    private static void readDirectory(Path root, String actualClass, BlockingQueue<Email> emails)
+            throws IOException, InterruptedException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            Iterator<Path> files = paths.filter(Files::isRegularFile).iterator();
+            while (files.hasNext()) {
+                Path file = files.next();
+                byte[] content;
+                try {
+                    content = Files.readAllBytes(file);
+                } catch (IOException e) {
+                    System.err.println("Error reading file: " + file);
+                    continue;
+                }
+                emails.put(new Email(root.relativize(file).toString(), actualClass, content));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void readMbox(Path mboxFile, String actualClass, BlockingQueue<Email> emails)
+            throws IOException, InterruptedException {
+        try (InputStream in = Files.newInputStream(mboxFile); MboxReader reader = new MboxReader(in)) {
+            int index = 0;
+            for (byte[] message = reader.next(); message != null; message = reader.next()) {
+                emails.put(new Email(mboxFile.getFileName() + "#" + index++, actualClass, message));
+            }
+        }
+    }
+
+    // Body of a pipeline thread; a stage that fails records why and the sink loop stops the others
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private static Thread startThread(String name, AtomicReference<Throwable> failure, Stage stage) {
+        return Thread.ofPlatform().name(name).daemon().start(() -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                // Stopped by the sink thread after a failure elsewhere
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException e) {
+            throw new IOException("Classification pipeline failed: " + e.getMessage(), e);
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        throw new IllegalStateException("Classification pipeline failed", failure);
+    }
+
+    /*
+     * Classifies emails from the command line and prints one CSV line per email as it is classified,
+     * followed by the final metrics.
+     *
+     * Usage: ClassificationPipeline <model file> [ham=|spam=]<directory or mbox file>...
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ClassificationPipeline <model file> [ham=|spam=]<directory or mbox file>...");
+            System.exit(2);
+        }
+        SpamDetector detector = SpamDetector.load(Paths.get(args[0]));
+        detector.setScoreCacheSize(SCORE_CACHE_SIZE);
+        int workers = Runtime.getRuntime().availableProcessors();
+        ClassificationPipeline pipeline = new ClassificationPipeline(detector, workers, 4 * workers);
+
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            Label label = null;
+            if (arg.startsWith("ham=")) {
+                label = Label.HAM;
+                arg = arg.substring(4);
+            } else if (arg.startsWith("spam=")) {
+                label = Label.SPAM;
+                arg = arg.substring(5);
+            }
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                pipeline.addDirectory(path, label);
+            } else {
+                pipeline.addMbox(path, label);
+            }
+        }
+
+        System.out.println("filename,actualClass,spamProbability");
+        RunningMetrics metrics = pipeline.run((result, running) -> {
+            System.out.println(result.getFilename() + "," + (result.getActualClass() == null ? "" : result.getActualClass())
+                    + "," + result.getSpamProbRounded());
+            if (running.getProcessed() % 10000 == 0) {
+                System.err.println(running);
+            }
+        });
+        System.err.println(metrics);
+    }
+}
@@ -0,0 +1,70 @@
+package csci2020u.assignment01;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * ClassifiedEmailsTableModel shows classified emails in a JTable while classification is still running.
+
+ * Rows are appended in batches as results arrive, firing one insert event per batch, so the table
+ * never copies or rebuilds its rows. Cells are formatted when the table asks for them, which it only
+ * does for visible rows, so large result sets cost nothing to display beyond the TestFiles themselves.
+
+ * Like all Swing models, it must only be used on the Event Dispatch Thread.
+ */
+final class ClassifiedEmailsTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMN_NAMES = {"Filename", "ActualClass", "Spam Probability"};
+
+    // Rows are not serialized; the model only lives as long as its window
+    private final transient List<TestFile> emails = new ArrayList<>();
+    private final DecimalFormat probabilityFormat = new DecimalFormat("0.00000");
+
+    // Appends a batch of classified emails
+    void addRows(List<TestFile> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int first = emails.size();
+        emails.addAll(batch);
+        fireTableRowsInserted(first, emails.size() - 1);
+    }
+
+    void clear() {
+        emails.clear();
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return emails.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        TestFile email = emails.get(row);
+        return switch (column) {
+            case 0 -> email.getFilename();
+            case 1 -> email.getActualClass();
+            case 2 -> probabilityFormat.format(email.getSpamProbability());
+            default -> throw new IndexOutOfBoundsException("Column " + column);
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package csci2020u.assignment01;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/*
+ * ContentHash is the key under which the score of a message is cached: a SHA-256 digest of the
+ * bytes scoring reads. The digest is the whole identity of a message in the cache, so it must be
+ * collision-resistant; a sender who could give a spam message the key of a ham message would get
+ * the ham message's score.
+
+ * A cached score must be the score the message would get, so the key covers every byte scoring reads.
+ * The one exception is made for MIME tokenization, which never scores routing headers: there the
+ * header fields that change with every delivery (see TRACE_HEADERS), including their continuation
+ * lines, are left out, so copies of a bulk message get the same key. A field is only left out where
+ * MimeTokenizer would parse the rest of the headers the same way without it: not on the first line,
+ * which may be an mbox envelope, and not if a line of it is long enough to be split. Plain
+ * tokenization scores the words of every header, so its keys cover the whole message.
+ */
+final class ContentHash {
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(ContentHash::sha256);
+
+    // Lower-case names of the header fields that differ between copies of the same message.
+    // None of them is a header MimeTokenizer scores or parses.
+    private static final byte[][] TRACE_HEADERS = {
+            bytes("received"), bytes("date"), bytes("message-id"), bytes("delivered-to"),
+            bytes("return-path"), bytes("x-original-to"),
+    };
+
+    private final byte[] digest;
+    private final int hashCode;
+
+    private ContentHash(byte[] digest) {
+        this.digest = digest;
+        // The digest is uniformly distributed, so any four of its bytes make a good hash code
+        this.hashCode = (digest[0] & 0xFF) << 24 | (digest[1] & 0xFF) << 16 | (digest[2] & 0xFF) << 8 | digest[3] & 0xFF;
+    }
+
+    /*
+     * @param message          The raw message.
+     * @param skipTraceHeaders Whether to leave out trace header fields. Only exact when the message is
+     *                         scored with MIME tokenization and read to its end (no byte limit).
+     */
+
+    static ContentHash of(byte[] message, boolean skipTraceHeaders) {
+        MessageDigest digest = DIGESTS.get();
+        digest.reset();
+        if (skipTraceHeaders) {
+            digestWithoutTraceHeaders(digest, message);
+        } else {
+            digest.update(message);
+        }
+        return new ContentHash(digest.digest());
+    }
+
+    private static void digestWithoutTraceHeaders(MessageDigest digest, byte[] message) {
+        int end = message.length;
+        boolean skippingField = false;
+
+        for (int lineStart = 0; lineStart < end; ) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && message[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int next = Math.min(lineEnd + 1, end); // start of the next line
+
+            if (lineEnd == lineStart || lineEnd == lineStart + 1 && message[lineStart] == '\r') {
+                // The blank line before the body; the rest is digested as it is
+                digest.update(message, lineStart, end - lineStart);
+                return;
+            }
+            if (message[lineStart] != ' ' && message[lineStart] != '\t') {
+                skippingField = lineStart > 0 && isTraceHeader(message, lineStart, lineEnd);
+            }
+            if (skippingField) {
+                if (lineEnd - lineStart >= MimeTokenizer.MAX_LINE) {
+                    // MimeTokenizer would split the line
+                    digest.reset();
+                    digest.update(message);
+                    return;
+                }
+            } else {
+                digest.update(message, lineStart, next - lineStart);
+            }
+            lineStart = next;
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ContentHash hash && Arrays.equals(digest, hash.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform must support SHA-256", e);
+        }
+    }
+
+    // Whether a header line starts with one of the TRACE_HEADERS names followed by ':'
+    private static boolean isTraceHeader(byte[] message, int lineStart, int lineEnd) {
+        for (byte[] name : TRACE_HEADERS) {
+            if (lineEnd - lineStart > name.length && message[lineStart + name.length] == ':'
+                    && equalsIgnoreCase(message, lineStart, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] message, int start, byte[] lowerCaseName) {
+        for (int i = 0; i < lowerCaseName.length; i++) {
+            int c = message[start + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != lowerCaseName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String name) {
+        return name.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
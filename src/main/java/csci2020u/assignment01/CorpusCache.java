@@ -0,0 +1,269 @@
+package csci2020u.assignment01;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * CorpusCache remembers the distinct words of every training file it has read, so training again
+ * on the same directories (see SpamDetector.train(Map, CorpusCache)) only reads files that are new
+ * or changed. The rest are counted from their cached word IDs, which is a pass over int arrays.
+
+ * A file is identified by its absolute path and counts as changed when its size or modification
+ * time differs from when it was read. A file rewritten with the same size within the file system's
+ * timestamp resolution is not noticed. The cached words depend on the tokenization; training with
+ * a different one empties the cache. A file that cannot be read is skipped, cached or not, just as
+ * training without a cache skips it.
+
+ * The cache lives in memory and is written to its file by save(). An unreadable or outdated cache
+ * file is ignored, so the cache can always be deleted to start over. A CorpusCache is not thread-safe.
+
+ * File format (big-endian, DataOutputStream):
+ * - int MAGIC, int VERSION, int tokenization ordinal
+ * - int word count, then per word: int hash, int length, bytes (ISO-8859-1)
+ * - int file count, then per file: int length and UTF-8 bytes of the path, long size, long modification time (ns), int word count, int[] word IDs
+ */
+public final class CorpusCache {
+    private static final int MAGIC = 0x53444343; // "SDCC"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private Tokenization tokenization;
+    // Every word of the cached files, by ID
+    private TokenTable words = new TokenTable(1 << 16);
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final TokenTable fileWords = new TokenTable(4096);
+    private boolean changed;
+    private long filesReused;
+    private long filesRead;
+
+    private record Entry(long size, long modified, int[] wordIds) {
+    }
+
+    /*
+     * Reads the distinct words of a file into a table, returning false if the file cannot be read.
+     */
+    @FunctionalInterface
+    interface WordReader {
+        boolean read(File file, TokenTable words);
+    }
+
+    private CorpusCache(Path file, Tokenization tokenization) {
+        this.file = file;
+        this.tokenization = tokenization;
+    }
+
+    /*
+     * Loads a cache from its file, or starts an empty one if the file does not exist or cannot be used.
+     *
+     * @param file Where the cache is loaded from and saved to.
+     */
+
+    public static CorpusCache open(Path file) {
+        if (!Files.exists(file)) {
+            return new CorpusCache(file, Tokenization.PLAIN);
+        }
+        try {
+            return read(file, ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring corpus cache " + file + ": " + e.getMessage());
+            return new CorpusCache(file, Tokenization.PLAIN);
+        }
+    }
+
+    private static CorpusCache read(Path file, ByteBuffer in) throws IOException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a corpus cache file");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported corpus cache version " + version);
+        }
+        CorpusCache cache = new CorpusCache(file, Tokenization.values()[in.getInt()]);
+
+        int wordCount = in.getInt();
+        cache.words = new TokenTable(wordCount);
+        byte[] word = new byte[256];
+        for (int id = 0; id < wordCount; id++) {
+            int hash = in.getInt();
+            int length = in.getInt();
+            if (word.length < length) {
+                word = new byte[Math.max(length, word.length * 2)];
+            }
+            in.get(word, 0, length);
+            cache.words.intern(word, length, hash);
+        }
+
+        int fileCount = in.getInt();
+        for (int i = 0; i < fileCount; i++) {
+            int pathLength = in.getInt();
+            String path = new String(in.array(), in.position(), pathLength, StandardCharsets.UTF_8);
+            in.position(in.position() + pathLength);
+            long size = in.getLong();
+            long modified = in.getLong();
+            int[] wordIds = new int[in.getInt()];
+            in.asIntBuffer().get(wordIds);
+            in.position(in.position() + 4 * wordIds.length);
+            for (int id : wordIds) {
+                if (id < 0 || id >= wordCount) {
+                    throw new IOException("Corrupt corpus cache: word ID " + id);
+                }
+            }
+            cache.entries.put(path, new Entry(size, modified, wordIds));
+        }
+        return cache;
+    }
+
+    /*
+     * Returns the IDs in words() of the distinct words of a file, from the cache if the file is
+     * unchanged, otherwise read with the given reader and cached.
+     *
+     * @param file   The email file.
+     * @param mode   The tokenization the reader uses; the cache is emptied if it differs from the cached one.
+     * @param reader Reads the file if it is not cached.
+     * @return The word IDs, or null if the file could not be read. The array must not be modified.
+     */
+
+    int[] wordIds(File file, Tokenization mode, WordReader reader) {
+        if (mode != tokenization) {
+            entries.clear();
+            words = new TokenTable(1 << 16);
+            tokenization = mode;
+            changed = true;
+        }
+
+        String path = file.getAbsolutePath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            attributes = null; // the reader reports the error
+        }
+        // Attributes are read before the file, so a change made while reading is noticed next time
+        long size = attributes == null ? -1 : attributes.size();
+        long modified = attributes == null ? -1 : attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+
+        // A cached file that can no longer be read is given to the reader, which reports it as unreadable
+        Entry entry = entries.get(path);
+        if (entry != null && entry.size() == size && entry.modified() == modified && Files.isReadable(file.toPath())) {
+            filesReused++;
+            return entry.wordIds();
+        }
+
+        if (!reader.read(file, fileWords)) {
+            return null;
+        }
+        filesRead++;
+        int[] wordIds = new int[fileWords.size()];
+        for (int i = 0; i < wordIds.length; i++) {
+            wordIds[i] = words.intern(fileWords, i);
+        }
+        if (attributes != null) {
+            entries.put(path, new Entry(size, modified, wordIds));
+            changed = true;
+        }
+        return wordIds;
+    }
+
+    // Every word of the cached files, by the IDs wordIds() returns
+    TokenTable words() {
+        return words;
+    }
+
+    // Number of files in the cache
+    public int size() {
+        return entries.size();
+    }
+
+    // Files whose words were taken from the cache since it was opened
+    public long getFilesReused() {
+        return filesReused;
+    }
+
+    // Files that had to be read since the cache was opened, because they were new or changed
+    public long getFilesRead() {
+        return filesRead;
+    }
+
+    /*
+     * Writes the cache to its file if anything changed since it was opened or last saved. Files that no
+     * longer exist are dropped first, with the words only they used. The file is written under a
+     * temporary name, forced to disk and then moved into place, so a failed save or a crash leaves
+     * the previous cache intact.
+     */
+
+    public void save() throws IOException {
+        if (!changed) {
+            return;
+        }
+        entries.keySet().removeIf(path -> !Files.exists(Paths.get(path)));
+
+        // Renumber the words still in use; old ID arrays are replaced, since callers may still hold them
+        TokenTable kept = new TokenTable(words.size());
+        int[] newIds = new int[words.size()];
+        Arrays.fill(newIds, -1);
+        for (Map.Entry<String, Entry> mapping : entries.entrySet()) {
+            Entry entry = mapping.getValue();
+            int[] wordIds = new int[entry.wordIds().length];
+            for (int i = 0; i < wordIds.length; i++) {
+                int id = entry.wordIds()[i];
+                if (newIds[id] < 0) {
+                    newIds[id] = kept.intern(words, id);
+                }
+                wordIds[i] = newIds[id];
+            }
+            mapping.setValue(new Entry(entry.size(), entry.modified(), wordIds));
+        }
+        words = kept;
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tokenization.ordinal());
+            out.writeInt(words.size());
+            for (int id = 0; id < words.size(); id++) {
+                out.writeInt(words.hash(id));
+                out.writeInt(words.length(id));
+                out.write(words.keyBytes(), words.start(id), words.length(id));
+            }
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> mapping : entries.entrySet()) {
+                Entry entry = mapping.getValue();
+                byte[] path = mapping.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(path.length);
+                out.write(path);
+                out.writeLong(entry.size());
+                out.writeLong(entry.modified());
+                out.writeInt(entry.wordIds().length);
+                for (int id : entry.wordIds()) {
+                    out.writeInt(id);
+                }
+            }
+            out.flush();
+            // Synced before the move, or a crash could keep the rename but lose the data
+            stream.getChannel().force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        changed = false;
+    }
+}
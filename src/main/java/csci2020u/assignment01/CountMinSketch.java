@@ -0,0 +1,95 @@
+package csci2020u.assignment01;
+
+/*
+ * CountMinSketch counts, for every word, how many ham and spam files contained it, in a fixed
+ * amount of memory and without storing the words themselves.
+
+ * Each class has DEPTH rows of int counters. A word is hashed to one counter per row, adding to a
+ * word adds to all of them, and its count is the smallest of them. Words sharing a counter can only
+ * raise each other's counts, so a count is never too low, and with DEPTH independent rows it is
+ * rarely much too high. Because counts are only ever added, removing a file that was added before
+ * restores the sketch exactly.
+
+ * Words are identified by their 31-bit key (see key()), which is all SketchModel passes around
+ * as a word ID. A CountMinSketch is not thread-safe; SketchModel copies it before every change.
+ */
+final class CountMinSketch {
+    static final int DEPTH = 4;
+    static final int MIN_BYTES = 1024;
+
+    // Hash seeds of the rows
+    private static final int[] SEEDS = {0x2545F491, 0x7FEB352D, 0x846CA68B, 0x1B873593};
+
+    private final int width;
+    private final int[] hamCounts;  // DEPTH rows of width counters, row after row
+    private final int[] spamCounts;
+
+    /*
+     * @param sizeInBytes Memory for the counters of both classes, at least MIN_BYTES.
+     */
+
+    CountMinSketch(int sizeInBytes) {
+        width = sizeInBytes / (2 * DEPTH * Integer.BYTES);
+        hamCounts = new int[DEPTH * width];
+        spamCounts = new int[DEPTH * width];
+    }
+
+    private CountMinSketch(CountMinSketch source) {
+        width = source.width;
+        hamCounts = source.hamCounts.clone();
+        spamCounts = source.spamCounts.clone();
+    }
+
+    CountMinSketch copy() {
+        return new CountMinSketch(this);
+    }
+
+    // The key of a word with the given String.hashCode(); keys are never negative
+    static int key(int hash) {
+        return hash & Integer.MAX_VALUE;
+    }
+
+    void add(int key, int ham, int spam) {
+        for (int row = 0; row < DEPTH; row++) {
+            int cell = cell(key, row);
+            hamCounts[cell] += ham;
+            spamCounts[cell] += spam;
+        }
+    }
+
+    // Adds the counts of every word of a vocabulary
+    void addAll(Vocabulary counts) {
+        for (int id = 0; id < counts.size(); id++) {
+            add(key(counts.hash(id)), counts.hamCount(id), counts.spamCount(id));
+        }
+    }
+
+    int hamCount(int key) {
+        return estimate(hamCounts, key);
+    }
+
+    int spamCount(int key) {
+        return estimate(spamCounts, key);
+    }
+
+    int sizeInBytes() {
+        return (hamCounts.length + spamCounts.length) * Integer.BYTES;
+    }
+
+    private int estimate(int[] counts, int key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counts[cell(key, row)]);
+        }
+        return min;
+    }
+
+    // Index of the counter of a key in one row: a per-row mix of the key scaled to the row width
+    private int cell(int key, int row) {
+        int h = (key ^ SEEDS[row]) * 0x9E3779B9;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return row * width + (int) (((h & 0xFFFFFFFFL) * width) >>> 32);
+    }
+}
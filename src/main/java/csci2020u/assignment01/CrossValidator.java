@@ -0,0 +1,418 @@
+package csci2020u.assignment01;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ * CrossValidator runs stratified k-fold cross-validation of the classifier over a TokenizedCorpus
+ * for a grid of configurations (see EvaluationResult), in parallel.
+
+ * The corpus is tokenized once. Word counts are kept per fold, so the counts of a fold's training
+ * set are the corpus totals minus that fold's own, and no email is read again. The work is split
+ * in two rounds:
+ * 1. For each smoothing factor, clamp and fold, estimate the word weights from the other folds and
+ *    sum them for every email of the fold. This is the only step that touches the word IDs.
+ * 2. For each smoothing factor, clamp and length exponent, turn the sums into spam probabilities
+ *    and compute ROC-AUC and the metrics at every threshold.
+ * Both rounds run as independent tasks on a ForkJoinPool.
+
+ * Scoring matches SpamDetector: words not seen in training are ignored but still count in the
+ * email's length, and an email without words scores 0.5.
+ */
+public final class CrossValidator {
+    private final TokenizedCorpus corpus;
+    private final int folds;
+    private final int parallelism;
+    private final int emails;
+    private final int words;
+
+    // The fold of each email, and the number of ham and spam emails of each fold containing each word
+    private final int[] foldOf;
+    private final int[][] foldHamCounts;
+    private final int[][] foldSpamCounts;
+    private final int[] foldHamFiles;
+    private final int[] foldSpamFiles;
+
+    // Word counts over the whole corpus
+    private final int[] hamCounts;
+    private final int[] spamCounts;
+    private final int hamFiles;
+    private final int spamFiles;
+
+    /*
+     * Assigns the emails of a corpus to folds and counts their words. Emails added to the corpus
+     * afterwards are not included.
+     *
+     * @param corpus      The emails to evaluate on.
+     * @param folds       Number of folds, at least 2; each fold is scored by a model trained on the others.
+     * @param seed        Seed for shuffling the emails into folds, so runs can be repeated.
+     * @param parallelism Number of threads to evaluate on.
+     */
+
+    public CrossValidator(TokenizedCorpus corpus, int folds, long seed, int parallelism) {
+        if (folds < 2 || folds > corpus.size()) {
+            throw new IllegalArgumentException("Folds must be between 2 and the corpus size (" + corpus.size() + "): " + folds);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.corpus = corpus;
+        this.folds = folds;
+        this.parallelism = parallelism;
+        this.emails = corpus.size();
+        this.words = corpus.wordCount();
+        this.foldOf = assignFolds(corpus, emails, folds, seed);
+
+        foldHamCounts = new int[folds][words];
+        foldSpamCounts = new int[folds][words];
+        foldHamFiles = new int[folds];
+        foldSpamFiles = new int[folds];
+        hamCounts = new int[words];
+        spamCounts = new int[words];
+        int[] ids = corpus.wordIds();
+        for (int email = 0; email < emails; email++) {
+            int fold = foldOf[email];
+            boolean spam = corpus.isSpam(email);
+            int[] counts = spam ? foldSpamCounts[fold] : foldHamCounts[fold];
+            int[] totals = spam ? spamCounts : hamCounts;
+            for (int i = corpus.start(email); i < corpus.end(email); i++) {
+                counts[ids[i]]++;
+                totals[ids[i]]++;
+            }
+            if (spam) {
+                foldSpamFiles[fold]++;
+            } else {
+                foldHamFiles[fold]++;
+            }
+        }
+        hamFiles = Arrays.stream(foldHamFiles).sum();
+        spamFiles = Arrays.stream(foldSpamFiles).sum();
+    }
+
+    // Stratified: ham and spam are shuffled separately and dealt out in turn, so every fold has the corpus's spam ratio
+    private static int[] assignFolds(TokenizedCorpus corpus, int emails, int folds, long seed) {
+        Random random = new Random(seed);
+        int[] foldOf = new int[emails];
+        for (boolean spam : new boolean[]{false, true}) {
+            int[] members = new int[emails];
+            int count = 0;
+            for (int email = 0; email < emails; email++) {
+                if (corpus.isSpam(email) == spam) {
+                    members[count++] = email;
+                }
+            }
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = members[i];
+                members[i] = members[j];
+                members[j] = swap;
+            }
+            for (int i = 0; i < count; i++) {
+                foldOf[members[i]] = i % folds;
+            }
+        }
+        return foldOf;
+    }
+
+    /*
+     * Evaluates every combination of the given parameter values.
+     *
+     * @return One result per combination, ordered by smoothing factor, then clamp, length exponent and threshold,
+     *         each in the order given.
+     */
+
+    public List<EvaluationResult> sweep(double[] smoothingFactors, double[] clamps, double[] lengthExponents,
+                                        double[] thresholds) {
+        for (double smoothingFactor : smoothingFactors) {
+            if (!(smoothingFactor >= 0)) {
+                throw new IllegalArgumentException("Smoothing factor must be non-negative: " + smoothingFactor);
+            }
+        }
+        for (double clamp : clamps) {
+            if (!(clamp >= 0 && clamp < 0.5)) {
+                throw new IllegalArgumentException("Clamp must be between 0 and 0.5: " + clamp);
+            }
+        }
+
+        // Round 1: summed word weights of every email, per smoothing factor and clamp
+        int weightings = smoothingFactors.length * clamps.length;
+        double[][] sums = new double[weightings][emails];
+        List<Callable<Void>> sumTasks = new ArrayList<>();
+        for (int w = 0; w < weightings; w++) {
+            double smoothingFactor = smoothingFactors[w / clamps.length];
+            double clamp = clamps[w % clamps.length];
+            double[] weightingSums = sums[w];
+            for (int fold = 0; fold < folds; fold++) {
+                int testFold = fold;
+                sumTasks.add(() -> {
+                    sumFold(testFold, smoothingFactor, clamp, weightingSums);
+                    return null;
+                });
+            }
+        }
+
+        // Round 2: probabilities and metrics, per weighting and length exponent
+        EvaluationResult[] results = new EvaluationResult[weightings * lengthExponents.length * thresholds.length];
+        List<Callable<Void>> metricTasks = new ArrayList<>();
+        for (int w = 0; w < weightings; w++) {
+            for (int e = 0; e < lengthExponents.length; e++) {
+                int weighting = w;
+                int exponent = e;
+                metricTasks.add(() -> {
+                    double[] probabilities = probabilities(sums[weighting], lengthExponents[exponent]);
+                    double rocAuc = rocAuc(probabilities);
+                    int first = (weighting * lengthExponents.length + exponent) * thresholds.length;
+                    for (int t = 0; t < thresholds.length; t++) {
+                        results[first + t] = evaluate(probabilities, rocAuc, smoothingFactors[weighting / clamps.length],
+                                clamps[weighting % clamps.length], lengthExponents[exponent], thresholds[t]);
+                    }
+                    return null;
+                });
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            runAll(pool, sumTasks);
+            runAll(pool, metricTasks);
+        } finally {
+            pool.shutdown();
+        }
+        return List.of(results);
+    }
+
+    private static void runAll(ForkJoinPool pool, List<Callable<Void>> tasks) {
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException("Evaluation failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Evaluation interrupted", e);
+            }
+        }
+    }
+
+    /*
+     * Estimates the word weights from every fold but one, as SpamDetector.train() would,
+     * and sums them for each email of that fold.
+     */
+
+    private void sumFold(int testFold, double smoothingFactor, double clamp, double[] sums) {
+        int trainingHamFiles = hamFiles - foldHamFiles[testFold];
+        int trainingSpamFiles = spamFiles - foldSpamFiles[testFold];
+        int[] testHamCounts = foldHamCounts[testFold];
+        int[] testSpamCounts = foldSpamCounts[testFold];
+
+        double[] weights = new double[words];
+        for (int word = 0; word < words; word++) {
+            int ham = hamCounts[word] - testHamCounts[word];
+            int spam = spamCounts[word] - testSpamCounts[word];
+            // Words only in the test fold are unknown to the model and weigh nothing
+            if (ham + spam > 0) {
+                double p = SpamModel.estimateSpamProbability(spam, ham, trainingSpamFiles, trainingHamFiles, smoothingFactor);
+                weights[word] = SpamModel.weightOf(p, clamp);
+            }
+        }
+
+        int[] ids = corpus.wordIds();
+        for (int email = 0; email < emails; email++) {
+            if (foldOf[email] == testFold) {
+                double sum = 0.0;
+                for (int i = corpus.start(email); i < corpus.end(email); i++) {
+                    sum += weights[ids[i]];
+                }
+                sums[email] = sum;
+            }
+        }
+    }
+
+    private double[] probabilities(double[] sums, double lengthExponent) {
+        double[] probabilities = new double[emails];
+        for (int email = 0; email < emails; email++) {
+            int wordCount = corpus.end(email) - corpus.start(email);
+            if (wordCount == 0) {
+                probabilities[email] = 0.5;
+                continue;
+            }
+            double length = lengthExponent == 0.5 ? Math.sqrt(wordCount) : Math.pow(wordCount, lengthExponent);
+            probabilities[email] = 1 / (1 + Math.exp(sums[email] / length));
+        }
+        return probabilities;
+    }
+
+    // Mann-Whitney estimate: the share of (spam, ham) pairs in which the spam email scores higher, ties counting half
+    private double rocAuc(double[] probabilities) {
+        double[] spamScores = new double[spamFiles];
+        double[] hamScores = new double[hamFiles];
+        int spam = 0;
+        int ham = 0;
+        for (int email = 0; email < emails; email++) {
+            if (corpus.isSpam(email)) {
+                spamScores[spam++] = probabilities[email];
+            } else {
+                hamScores[ham++] = probabilities[email];
+            }
+        }
+        if (spam == 0 || ham == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(spamScores);
+        Arrays.sort(hamScores);
+
+        // For each spam score, in increasing order, count the ham scores below it and equal to it
+        double pairs = 0;
+        int below = 0;
+        for (double score : spamScores) {
+            while (below < ham && hamScores[below] < score) {
+                below++;
+            }
+            int equal = 0;
+            while (below + equal < ham && hamScores[below + equal] == score) {
+                equal++;
+            }
+            pairs += below + equal / 2.0;
+        }
+        return pairs / ((double) spam * ham);
+    }
+
+    private EvaluationResult evaluate(double[] probabilities, double rocAuc, double smoothingFactor, double clamp,
+                                      double lengthExponent, double threshold) {
+        int truePositives = 0;
+        int falsePositives = 0;
+        int falseNegatives = 0;
+        for (int email = 0; email < emails; email++) {
+            boolean predictedSpam = probabilities[email] > threshold;
+            boolean actualSpam = corpus.isSpam(email);
+            if (predictedSpam && actualSpam) {
+                truePositives++;
+            } else if (predictedSpam) {
+                falsePositives++;
+            } else if (actualSpam) {
+                falseNegatives++;
+            }
+        }
+        double accuracy = (double) (emails - falsePositives - falseNegatives) / emails;
+        double precision = truePositives + falsePositives == 0 ? 0.0 : (double) truePositives / (truePositives + falsePositives);
+        double recall = truePositives + falseNegatives == 0 ? 0.0 : (double) truePositives / (truePositives + falseNegatives);
+        return new EvaluationResult(smoothingFactor, clamp, lengthExponent, threshold, accuracy, precision, recall, rocAuc);
+    }
+
+    /*
+     * Cross-validates a grid of configurations from the command line and prints the best ones by F1,
+     * the best by ROC-AUC and SpamDetector's default configuration.
+     *
+     * Usage: CrossValidator ham=<directory or mbox>... spam=<directory or mbox>... [folds=10] [seed=1]
+     *        [smoothing=1,10,100,500,1000] [clamp=0.01,0.05,0.1,0.2,0.3] [exponent=0,0.5,1]
+     *        [threshold=0.1,0.3,0.5,0.7,0.9] [tokenization=PLAIN|MIME] [threads=<cores>] [top=20]
+     */
+
+    public static void main(String[] args) throws Exception {
+        int folds = 10;
+        long seed = 1;
+        double[] smoothingFactors = {1, 10, 100, 500, 1000};
+        double[] clamps = {0.01, 0.05, 0.1, 0.2, 0.3};
+        double[] lengthExponents = {0, 0.5, 1};
+        double[] thresholds = {0.1, 0.3, 0.5, 0.7, 0.9};
+        Tokenization tokenization = Tokenization.PLAIN;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int top = 20;
+        List<String[]> sources = new ArrayList<>();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                System.err.println("Expected key=value: " + arg);
+                System.exit(2);
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "ham", "spam" -> sources.add(new String[]{key, value});
+                case "folds" -> folds = Integer.parseInt(value);
+                case "seed" -> seed = Long.parseLong(value);
+                case "smoothing" -> smoothingFactors = parseList(value);
+                case "clamp" -> clamps = parseList(value);
+                case "exponent" -> lengthExponents = parseList(value);
+                case "threshold" -> thresholds = parseList(value);
+                case "tokenization" -> tokenization = Tokenization.valueOf(value.toUpperCase());
+                case "threads" -> threads = Integer.parseInt(value);
+                case "top" -> top = Integer.parseInt(value);
+                default -> {
+                    System.err.println("Unknown option: " + key);
+                    System.exit(2);
+                }
+            }
+        }
+        if (sources.isEmpty()) {
+            System.err.println("Usage: CrossValidator ham=<directory or mbox>... spam=<directory or mbox>... [folds=10] [seed=1] "
+                    + "[smoothing=...] [clamp=...] [exponent=...] [threshold=...] [tokenization=PLAIN|MIME] [threads=N] [top=20]");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        TokenizedCorpus corpus = new TokenizedCorpus(tokenization);
+        for (String[] source : sources) {
+            Label label = source[0].equals("spam") ? Label.SPAM : Label.HAM;
+            Path path = Paths.get(source[1]);
+            if (Files.isDirectory(path)) {
+                corpus.addDirectory(path, label);
+            } else {
+                corpus.addMbox(path, label);
+            }
+        }
+        System.out.printf("Tokenized %d emails (%d spam, %d distinct words) in %d ms%n", corpus.size(),
+                corpus.spamCount(), corpus.wordCount(), (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        CrossValidator validator = new CrossValidator(corpus, folds, seed, threads);
+        List<EvaluationResult> results = validator.sweep(smoothingFactors, clamps, lengthExponents, thresholds);
+        System.out.printf("Evaluated %d configurations with %d-fold cross-validation on %d threads in %d ms%n%n",
+                results.size(), folds, threads, (System.nanoTime() - start) / 1_000_000);
+
+        List<EvaluationResult> byF1 = new ArrayList<>(results);
+        byF1.sort(Comparator.comparingDouble(EvaluationResult::getF1).thenComparingDouble(EvaluationResult::getRocAuc).reversed());
+        printHeader();
+        for (EvaluationResult result : byF1.subList(0, Math.min(top, byF1.size()))) {
+            printRow(result);
+        }
+
+        System.out.println();
+        System.out.println("Best ROC-AUC:");
+        printRow(results.stream().max(Comparator.comparingDouble(EvaluationResult::getRocAuc)).orElseThrow());
+        System.out.println("SpamDetector defaults (smoothing 500, clamp 0.1, exponent 0.5, threshold 0.5):");
+        results.stream()
+                .filter(r -> r.getSmoothingFactor() == 500 && r.getClamp() == 0.1 && r.getLengthExponent() == 0.5 && r.getThreshold() == 0.5)
+                .findFirst()
+                .ifPresentOrElse(CrossValidator::printRow, () -> System.out.println("  (not in the grid)"));
+    }
+
+    private static double[] parseList(String values) {
+        return Arrays.stream(values.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    private static void printHeader() {
+        System.out.printf("%10s %6s %8s %9s %9s %9s %9s %9s %9s%n",
+                "smoothing", "clamp", "exponent", "threshold", "accuracy", "precision", "recall", "f1", "roc-auc");
+    }
+
+    private static void printRow(EvaluationResult result) {
+        System.out.printf("%10s %6s %8s %9s %9.4f %9.4f %9.4f %9.4f %9.4f%n", result.getSmoothingFactor(),
+                result.getClamp(), result.getLengthExponent(), result.getThreshold(), result.getAccuracy(),
+                result.getPrecision(), result.getRecall(), result.getF1(), result.getRocAuc());
+    }
+}
@@ -0,0 +1,83 @@
+package csci2020u.assignment01;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+
+/*
+ * DetectorEvents are the Java Flight Recorder events SpamDetector emits for each phase of
+ * training and classification. They show up in JDK Mission Control under "Spam Detector".
+
+ * Events are off unless a recording enables them (e.g. java -XX:StartFlightRecording ...); while off,
+ * begin() and commit() do nothing measurable. Each event is one per directory or batch, never per message.
+ * The label annotation is written out in full because this package has its own Label.
+ */
+final class DetectorEvents {
+
+    private DetectorEvents() {
+    }
+
+    @Name("csci2020u.assignment01.TrainDirectory")
+    @jdk.jfr.Label("Train Directory")
+    @Category("Spam Detector")
+    @Description("Reading and counting the words of one directory of training emails")
+    static final class TrainDirectory extends Event {
+        @jdk.jfr.Label("Directory")
+        String directory;
+
+        @jdk.jfr.Label("Spam")
+        boolean spam;
+
+        @jdk.jfr.Label("Files")
+        int files;
+
+        @jdk.jfr.Label("Parallelism")
+        int parallelism;
+    }
+
+    @Name("csci2020u.assignment01.BuildModel")
+    @jdk.jfr.Label("Build Model")
+    @Category("Spam Detector")
+    @Description("Building a new model from word counts and computing its probabilities")
+    static final class BuildModel extends Event {
+        @jdk.jfr.Label("Model Type")
+        String modelType;
+
+        @jdk.jfr.Label("Words")
+        @Description("Words in the new model, -1 for a count sketch")
+        int words;
+
+        @jdk.jfr.Label("Sketch Size")
+        @DataAmount
+        long sketchBytes;
+    }
+
+    @Name("csci2020u.assignment01.ClassifyDirectory")
+    @jdk.jfr.Label("Classify Directory")
+    @Category("Spam Detector")
+    @Description("Classifying one directory of test emails")
+    static final class ClassifyDirectory extends Event {
+        @jdk.jfr.Label("Directory")
+        String directory;
+
+        @jdk.jfr.Label("Files")
+        int files;
+
+        @jdk.jfr.Label("Classified as Spam")
+        int spamFiles;
+    }
+
+    @Name("csci2020u.assignment01.ClassifyBatch")
+    @jdk.jfr.Label("Classify Batch")
+    @Category("Spam Detector")
+    @Description("Classifying a batch of emails with classifyAll()")
+    static final class ClassifyBatch extends Event {
+        @jdk.jfr.Label("Files")
+        int files;
+
+        @jdk.jfr.Label("Classified as Spam")
+        int spamFiles;
+    }
+}
@@ -0,0 +1,46 @@
+package csci2020u.assignment01;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * DetectorMetrics holds the counters SpamDetector updates on its hot paths.
+
+ * Counters are LongAdders, so threads training or scoring at the same time do not contend on a
+ * shared cache line, and a record call costs a few nanoseconds; timing a message adds two
+ * System.nanoTime() calls. That keeps the metrics cheap enough to stay on in production.
+ * Reading them (MetricsSnapshot) sums the adders and may miss updates in progress.
+ */
+final class DetectorMetrics {
+    // Email files read for training or classification
+    final LongAdder filesRead = new LongAdder();
+    final LongAdder bytesRead = new LongAdder();
+    final LongAdder readErrors = new LongAdder();
+    // Distinct words extracted from the files read
+    final LongAdder tokensProduced = new LongAdder();
+
+    final LongAdder trainingFiles = new LongAdder();
+    final LongAdder trainingNanos = new LongAdder();
+
+    // Messages scored (cache hits are not scored), with their distinct words and how many the model knew
+    final LongAdder knownTokens = new LongAdder();
+    final LongAdder unknownTokens = new LongAdder();
+    final LatencyHistogram scoringLatency = new LatencyHistogram();
+
+    private final long createdNanos = System.nanoTime();
+
+    void recordFile(long bytes, int tokens) {
+        filesRead.increment();
+        bytesRead.add(bytes);
+        tokensProduced.add(tokens);
+    }
+
+    void recordScore(SpamScore score, long startNanos) {
+        scoringLatency.record(System.nanoTime() - startNanos);
+        knownTokens.add(score.getKnownWordCount());
+        unknownTokens.add(score.getWordCount() - score.getKnownWordCount());
+    }
+
+    long uptimeNanos() {
+        return System.nanoTime() - createdNanos;
+    }
+}
@@ -0,0 +1,70 @@
+package csci2020u.assignment01;
+
+/*
+ * DetectorMonitor is the MXBean SpamDetector.registerMBean() registers: each attribute is read
+ * from a new snapshot of the detector's metrics.
+ */
+final class DetectorMonitor implements SpamDetectorMXBean {
+    private final SpamDetector detector;
+
+    DetectorMonitor(SpamDetector detector) {
+        this.detector = detector;
+    }
+
+    @Override
+    public long getFilesRead() { return detector.getMetrics().getFilesRead(); }
+
+    @Override
+    public long getBytesRead() { return detector.getMetrics().getBytesRead(); }
+
+    @Override
+    public long getReadErrors() { return detector.getMetrics().getReadErrors(); }
+
+    @Override
+    public long getTokensProduced() { return detector.getMetrics().getTokensProduced(); }
+
+    @Override
+    public long getTrainingFiles() { return detector.getMetrics().getTrainingFiles(); }
+
+    @Override
+    public double getTrainingFilesPerSecond() { return detector.getMetrics().getTrainingFilesPerSecond(); }
+
+    @Override
+    public long getMessagesScored() { return detector.getMetrics().getMessagesScored(); }
+
+    @Override
+    public double getUnknownTokenRate() { return detector.getMetrics().getUnknownTokenRate(); }
+
+    @Override
+    public double getScoringMicrosP50() { return detector.getMetrics().getScoringNanosP50() / 1e3; }
+
+    @Override
+    public double getScoringMicrosP99() { return detector.getMetrics().getScoringNanosP99() / 1e3; }
+
+    @Override
+    public double getScoringMicrosMax() { return detector.getMetrics().getScoringNanosMax() / 1e3; }
+
+    @Override
+    public double getScoringMicrosMean() { return detector.getMetrics().getScoringNanosMean() / 1e3; }
+
+    @Override
+    public int getModelWords() { return detector.getMetrics().getModelWords(); }
+
+    @Override
+    public int getModelHamFiles() { return detector.getMetrics().getModelHamFiles(); }
+
+    @Override
+    public int getModelSpamFiles() { return detector.getMetrics().getModelSpamFiles(); }
+
+    @Override
+    public long getScoreCacheHits() { return detector.getScoreCacheStats().getHits(); }
+
+    @Override
+    public long getScoreCacheMisses() { return detector.getScoreCacheStats().getMisses(); }
+
+    @Override
+    public long getScoreCacheEvictions() { return detector.getScoreCacheStats().getEvictions(); }
+
+    @Override
+    public int getScoreCacheSize() { return detector.getScoreCacheStats().getSize(); }
+}
@@ -0,0 +1,67 @@
+package csci2020u.assignment01;
+
+/*
+ * EvaluationResult is how well one configuration of the classifier did in a cross-validation
+ * (see CrossValidator). The metrics are computed over the out-of-fold predictions of all emails,
+ * each scored by the model trained without its fold.
+
+ * Configuration:
+ * - smoothingFactor: added to the file counts when estimating word probabilities (SpamDetector default 500).
+ * - clamp: word probabilities are clamped to [clamp, 1 - clamp] (default 0.1).
+ * - lengthExponent: the summed word weights are divided by wordCount^lengthExponent (default 0.5, sqrt).
+ * - threshold: an email is classified as spam if its spam probability is above this (default 0.5).
+ * Spam is the positive class. ROC-AUC does not depend on the threshold.
+ */
+public final class EvaluationResult {
+    private final double smoothingFactor;
+    private final double clamp;
+    private final double lengthExponent;
+    private final double threshold;
+    private final double accuracy;
+    private final double precision;
+    private final double recall;
+    private final double rocAuc;
+
+    public EvaluationResult(double smoothingFactor, double clamp, double lengthExponent, double threshold,
+                            double accuracy, double precision, double recall, double rocAuc) {
+        this.smoothingFactor = smoothingFactor;
+        this.clamp = clamp;
+        this.lengthExponent = lengthExponent;
+        this.threshold = threshold;
+        this.accuracy = accuracy;
+        this.precision = precision;
+        this.recall = recall;
+        this.rocAuc = rocAuc;
+    }
+
+    public double getSmoothingFactor() { return smoothingFactor; }
+
+    public double getClamp() { return clamp; }
+
+    public double getLengthExponent() { return lengthExponent; }
+
+    public double getThreshold() { return threshold; }
+
+    public double getAccuracy() { return accuracy; }
+
+    // Share of the emails classified as spam that are spam, 0 if none were
+    public double getPrecision() { return precision; }
+
+    // Share of the spam emails classified as spam
+    public double getRecall() { return recall; }
+
+    // Harmonic mean of precision and recall
+    public double getF1() {
+        return precision + recall == 0 ? 0.0 : 2 * precision * recall / (precision + recall);
+    }
+
+    // Probability that a random spam email scores higher than a random ham email
+    public double getRocAuc() { return rocAuc; }
+
+    @Override
+    public String toString() {
+        return String.format("smoothing=%s clamp=%s exponent=%s threshold=%s: accuracy=%.4f precision=%.4f "
+                        + "recall=%.4f f1=%.4f auc=%.4f", smoothingFactor, clamp, lengthExponent, threshold,
+                accuracy, precision, recall, getF1(), rocAuc);
+    }
+}
@@ -0,0 +1,104 @@
+package csci2020u.assignment01;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/*
+ * FeatureHasher turns an email into the distinct slots of HashedFeatureModel's table that its
+ * features (see NGramFeatures) hash to. No feature is ever stored as text: each is hashed as the
+ * tokenizer reports words, and only the slot numbers are kept.
+
+ * Each kind of feature is hashed with its own seed, so a word and a character n-gram with the same
+ * characters land in unrelated slots. Repeated features are dropped as they arrive, so the slots
+ * kept grow with the distinct features of an email, at most the table size, however long it is.
+ * A FeatureHasher is not thread-safe.
+ */
+final class FeatureHasher implements WordTokenizer.TokenSink {
+    private static final int WORD_SEED = 0x2545F491;
+    private static final int BIGRAM_SEED = 0x6C078965;
+    private static final int CHAR_SEED = 0x5851F42D;
+
+    private final MessageTokenizer tokenizer;
+    private final boolean bigrams;
+    private final int charNGramLength;
+    private final int mask;
+
+    // One bit per table slot, set for the slots of the email being hashed
+    private final long[] seen;
+    private int[] slots = new int[4096];
+    private int count;
+    private int previousHash;
+    private boolean hasPrevious;
+
+    FeatureHasher(NGramFeatures features, Tokenization tokenization) {
+        this.tokenizer = tokenization.newTokenizer();
+        this.bigrams = features.usesBigrams();
+        this.charNGramLength = features.getCharNGramLength();
+        this.mask = features.getTableSize() - 1;
+        this.seen = new long[(mask >>> 6) + 1];
+    }
+
+    /*
+     * Hashes the features of an email. The stream is not closed.
+     *
+     * @return The number of distinct slots, which slots() holds in ascending order.
+     */
+
+    int hash(InputStream message) throws IOException {
+        // Clearing only the previous email's slots keeps this proportional to its features, not the table
+        for (int i = 0; i < count; i++) {
+            seen[slots[i] >>> 6] = 0;
+        }
+        count = 0;
+        hasPrevious = false;
+        tokenizer.tokenize(message, this);
+        Arrays.sort(slots, 0, count);
+        return count;
+    }
+
+    // Slots of the last email hashed, the first hash() result of them valid
+    int[] slots() {
+        return slots;
+    }
+
+    @Override
+    public void token(byte[] token, int length, int hash) {
+        add(hash ^ WORD_SEED);
+        if (length == 0) {
+            return; // the empty word takes no part in bigrams or n-grams
+        }
+        if (bigrams) {
+            if (hasPrevious) {
+                add((previousHash * 0x9E3779B1 + hash) ^ BIGRAM_SEED);
+            }
+            previousHash = hash;
+            hasPrevious = true;
+        }
+        // Words no longer than n are features already
+        int n = charNGramLength;
+        if (n > 0 && length > n) {
+            for (int start = 0; start + n <= length; start++) {
+                int nGramHash = 0;
+                for (int i = start; i < start + n; i++) {
+                    nGramHash = 31 * nGramHash + (token[i] & 0xFF);
+                }
+                add(nGramHash ^ CHAR_SEED);
+            }
+        }
+    }
+
+    // Keeps each slot once, as the word model counts each word once per file
+    private void add(int hash) {
+        int slot = TokenTable.spread(hash) & mask;
+        long bit = 1L << slot;
+        if ((seen[slot >>> 6] & bit) != 0) {
+            return;
+        }
+        seen[slot >>> 6] |= bit;
+        if (count == slots.length) {
+            slots = Arrays.copyOf(slots, count * 2);
+        }
+        slots[count++] = slot;
+    }
+}
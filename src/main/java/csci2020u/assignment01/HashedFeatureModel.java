@@ -0,0 +1,130 @@
+package csci2020u.assignment01;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * HashedFeatureModel is a Naive Bayes spam classifier over hashed features: words and, optionally,
+ * word bigrams and character n-grams (see NGramFeatures). It uses the hashing trick, so the
+ * features are never stored; each one is counted in the table slot its hash selects. Memory is
+ * fixed by the table size, and a lookup is one array read with no string key. The cost is that
+ * features sharing a slot share their counts.
+
+ * Training and scoring follow SpamDetector: a feature's spam probability comes from the number of
+ * ham and spam files containing it (SpamModel.estimateSpamProbability()), and an email's score is
+ * the sigmoid of its summed feature weights divided by the square root of its feature count.
+ * With unigrams only and a table without collisions, scores equal SpamDetector's up to rounding.
+
+ * Training is not thread-safe. Once trained, score() may be called from any number of threads.
+ */
+public final class HashedFeatureModel {
+    private final NGramFeatures features;
+    private final Tokenization tokenization;
+    private final double smoothingFactor;
+    private final int[] hamCounts;
+    private final int[] spamCounts;
+    // Weight of every slot (SpamModel.weightOf() of its probability), 0 for slots no file has used
+    private final double[] weights;
+    private int numHamFiles;
+    private int numSpamFiles;
+    private final ThreadLocal<FeatureHasher> hashers;
+
+    public HashedFeatureModel(NGramFeatures features, Tokenization tokenization, double smoothingFactor) {
+        this.features = features;
+        this.tokenization = tokenization;
+        this.smoothingFactor = smoothingFactor;
+        this.hamCounts = new int[features.getTableSize()];
+        this.spamCounts = new int[features.getTableSize()];
+        this.weights = new double[features.getTableSize()];
+        this.hashers = ThreadLocal.withInitial(() -> new FeatureHasher(features, tokenization));
+    }
+
+    public NGramFeatures getFeatures() {
+        return features;
+    }
+
+    public Tokenization getTokenization() {
+        return tokenization;
+    }
+
+    // Bytes taken by the counts and weights, which do not grow with training
+    public long getTableBytes() {
+        return 16L * features.getTableSize();
+    }
+
+    /*
+     * Trains on a training directory the way SpamDetector.train(File) does, then recomputes the weights.
+     *
+     * @param trainDir The directory containing 'ham' and 'spam' subfolders.
+     */
+
+    public void train(File trainDir) {
+        FeatureHasher hasher = hashers.get();
+        numHamFiles += trainDirectory(new File(trainDir, "ham"), hamCounts, hasher);
+        numSpamFiles += trainDirectory(new File(trainDir, "spam"), spamCounts, hasher);
+        computeWeights();
+    }
+
+    private static int trainDirectory(File directory, int[] counts, FeatureHasher hasher) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int counted = 0;
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            // Count the slots only once the whole file is read, so an unreadable file is skipped
+            int slotCount;
+            try (InputStream in = new FileInputStream(file)) {
+                slotCount = hasher.hash(in);
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + file.getName());
+                continue;
+            }
+            int[] slots = hasher.slots();
+            for (int i = 0; i < slotCount; i++) {
+                counts[slots[i]]++;
+            }
+            counted++;
+        }
+        return counted;
+    }
+
+    private void computeWeights() {
+        for (int slot = 0; slot < weights.length; slot++) {
+            if (hamCounts[slot] != 0 || spamCounts[slot] != 0) {
+                weights[slot] = SpamModel.weightOf(SpamModel.estimateSpamProbability(
+                        spamCounts[slot], hamCounts[slot], numSpamFiles, numHamFiles, smoothingFactor));
+            }
+        }
+    }
+
+    /*
+     * Scores one email. The stream is not closed.
+     *
+     * @return The score; its word counts are counts of distinct feature slots.
+     */
+
+    public SpamScore score(InputStream message) throws IOException {
+        FeatureHasher hasher = hashers.get();
+        int slotCount = hasher.hash(message);
+        if (slotCount == 0) return new SpamScore(0.5, 0, 0); // Neutral probability for empty emails
+
+        int[] slots = hasher.slots();
+        double sum = 0;
+        int known = 0;
+        for (int i = 0; i < slotCount; i++) {
+            int slot = slots[i];
+            if (hamCounts[slot] != 0 || spamCounts[slot] != 0) {
+                sum += weights[slot];
+                known++;
+            }
+        }
+        double eta = sum / Math.sqrt(slotCount);
+        return new SpamScore(1 / (1 + Math.exp(eta)), slotCount, known);
+    }
+}
@@ -0,0 +1,20 @@
+package csci2020u.assignment01;
+
+/*
+ * Label is the class of an email: ham (legitimate) or spam.
+ */
+public enum Label {
+    HAM("Ham"),
+    SPAM("Spam");
+
+    // Name used for the actual class of a TestFile
+    private final String className;
+
+    Label(String className) {
+        this.className = className;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+}
@@ -0,0 +1,94 @@
+package csci2020u.assignment01;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * LatencyHistogram counts durations in logarithmic buckets, so recording is a few arithmetic
+ * operations and one LongAdder increment, safe and cheap from any number of threads.
+
+ * Each power of two is split into 4 buckets, so a percentile read from the histogram is at most
+ * 25% above the true value. Percentiles report the upper bound of their bucket.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[bucket(value)].increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    long totalNanos() {
+        return total.sum();
+    }
+
+    long maxNanos() {
+        return max.get();
+    }
+
+    /*
+     * Returns the duration below which the given share of recorded durations fall, or 0 if none were recorded.
+     *
+     * @param quantile Between 0 and 1, e.g. 0.99 for the 99th percentile.
+     */
+
+    long percentileNanos(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos());
+            }
+        }
+        return 0;
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above, each power of two gets SUB_BUCKETS buckets
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,315 @@
+package csci2020u.assignment01;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * MailboxModels personalizes filtering for many mailboxes on top of one shared SpamDetector.
+
+ * Every mailbox is an OverlayModel layered over the shared detector's model: it holds only the words
+ * whose counts the mailbox's own learn() and unlearn() calls changed, and finds every other word in
+ * the shared model. Scoring for a mailbox looks a word up in its overlay first and then in the shared
+ * model, so a mailbox costs memory in proportion to what it learned, not to the vocabulary.
+
+ * Overlays are loaded from their files in the mailbox directory when a mailbox is first used, and
+ * the least recently used ones are written back and dropped whenever the loaded overlays exceed the
+ * memory budget. An overlay that cannot be written is kept loaded, over the budget if need be, and
+ * written again on the next eviction; failed writes are counted in getStats() and reported by flush(),
+ * never by the scoring or learning that happened to evict it.
+ * Mailboxes that learned nothing have no file and cost only their entry. A mailbox's
+ * file keeps its changes, not its counts, so when the shared detector is retrained or learns,
+ * every overlay is layered over the new model the next time its mailbox is used.
+
+ * Scoring uses the shared detector's tokenization, limits and rules, and reports to its metrics.
+ * The shared detector must keep one tokenization and a word table model (not a count sketch).
+ * A MailboxModels is thread-safe. Loading, writing and updating overlays happen under one lock;
+ * scoring runs outside it.
+
+ * Mailbox files are TrainingPartial files named after the URL-encoded mailbox ID, with counts and
+ * file totals that may be negative where a mailbox unlearned shared training files.
+ */
+public final class MailboxModels {
+    private static final String FILE_SUFFIX = ".overlay";
+    // Estimated bytes of a loaded mailbox besides its overlay: map entry, Mailbox object and ID
+    private static final long ENTRY_BYTES = 160;
+
+    private final SpamDetector shared;
+    private final Tokenization tokenization;
+    private final Path directory;
+    private final long memoryBudget;
+
+    private final Object lock = new Object();
+    // Loaded mailboxes, least recently used first
+    private final LinkedHashMap<String, Mailbox> loaded = new LinkedHashMap<>(64, 0.75f, true);
+    // The same mailboxes, for looking one up without counting it as a use, which would reorder loaded
+    private final HashMap<String, Mailbox> index = new HashMap<>();
+    private long loadedBytes;
+    private long hits;
+    private long misses;
+    private long loads;
+    private long writes;
+    private long writeFailures;
+    private long evictions;
+
+    private static final class Mailbox {
+        OverlayModel overlay; // null while the mailbox has no changes
+        long bytes;
+        boolean dirty;
+        boolean writeFailed; // the last write failed; reported once, not on every retry
+    }
+
+    /*
+     * @param shared       The detector whose model every mailbox is layered over.
+     * @param directory    Where mailbox overlay files are read from and written to; created if missing.
+     * @param memoryBudget Estimated bytes the loaded overlays may take before the least recently used
+     *                     are evicted. The mailbox in use is kept even if it alone exceeds the budget.
+     */
+
+    public MailboxModels(SpamDetector shared, Path directory, long memoryBudget) throws IOException {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudget);
+        }
+        if (shared.model() instanceof SketchModel) {
+            throw new IllegalArgumentException("A count sketch model has no word IDs to overlay");
+        }
+        this.shared = shared;
+        this.tokenization = shared.getTokenization();
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+        Files.createDirectories(directory);
+    }
+
+    /*
+     * Scores one email for a mailbox, with the shared model and the mailbox's changes.
+     *
+     * @param mailbox The mailbox ID.
+     * @param message The raw email, UTF-8 encoded. The stream is not closed.
+     * @throws IOException If the email or the mailbox's overlay file cannot be read.
+     */
+
+    public SpamScore score(String mailbox, InputStream message) throws IOException {
+        return shared.score(message, modelOf(mailbox));
+    }
+
+    public SpamScore score(String mailbox, byte[] message) throws IOException {
+        return score(mailbox, new ByteArrayInputStream(message));
+    }
+
+    /*
+     * Adds one email to a mailbox's counts only; the shared model and other mailboxes are unchanged.
+     *
+     * @param mailbox The mailbox ID.
+     * @param message The raw email, UTF-8 encoded. The stream is not closed.
+     * @param label   The class of the email.
+     * @throws IOException If the email or the mailbox's overlay file cannot be read; nothing is learned.
+     */
+
+    public void learn(String mailbox, InputStream message, Label label) throws IOException {
+        update(mailbox, shared.extractWords(message), label, 1);
+    }
+
+    /*
+     * Removes an email from a mailbox's counts, for example after the user reclassifies it. The email
+     * may be one the mailbox learned or one of the shared training files.
+     *
+     * @throws IllegalArgumentException If the counts cannot contain the email with that label.
+     */
+
+    public void unlearn(String mailbox, InputStream message, Label label) throws IOException {
+        update(mailbox, shared.extractWords(message), label, -1);
+    }
+
+    /*
+     * Returns the model scoring uses for a mailbox: its overlay, or the shared model if it has no changes.
+     */
+
+    public SpamModel modelOf(String mailbox) throws IOException {
+        synchronized (lock) {
+            Mailbox entry = lookUp(mailbox);
+            return entry.overlay != null ? current(mailbox, entry) : shared.model();
+        }
+    }
+
+    /*
+     * Writes the overlays of all loaded mailboxes changed since they were loaded or last written,
+     * including those eviction failed to write.
+     *
+     * @throws IOException The first overlay that could not be written, with any others suppressed.
+     *                     Every other overlay is written all the same.
+     */
+
+    public void flush() throws IOException {
+        synchronized (lock) {
+            IOException failure = null;
+            for (Map.Entry<String, Mailbox> entry : loaded.entrySet()) {
+                try {
+                    write(entry.getKey(), entry.getValue());
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    // Estimated bytes a mailbox takes while loaded, or 0 if it is not loaded
+    public long memoryOf(String mailbox) {
+        synchronized (lock) {
+            Mailbox entry = index.get(mailbox);
+            return entry != null ? entry.bytes : 0;
+        }
+    }
+
+    // Estimated bytes of every loaded mailbox, least recently used first
+    public Map<String, Long> memoryByMailbox() {
+        synchronized (lock) {
+            Map<String, Long> memory = new LinkedHashMap<>();
+            for (Map.Entry<String, Mailbox> entry : loaded.entrySet()) {
+                memory.put(entry.getKey(), entry.getValue().bytes);
+            }
+            return memory;
+        }
+    }
+
+    public MailboxStats getStats() {
+        synchronized (lock) {
+            return new MailboxStats(hits, misses, loads, writes, writeFailures, evictions, loaded.size(), loadedBytes,
+                    memoryBudget);
+        }
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    private void update(String mailbox, TokenTable words, Label label, int change) throws IOException {
+        synchronized (lock) {
+            Mailbox entry = lookUp(mailbox);
+            OverlayModel overlay = entry.overlay != null ? current(mailbox, entry) : OverlayModel.layeredOver(shared.model());
+            entry.overlay = overlay.withFile(words, label, change);
+            entry.dirty = true;
+            resize(mailbox, entry);
+        }
+    }
+
+    // Finds a mailbox in memory or loads it, then evicts others down to the budget
+    private Mailbox lookUp(String mailbox) throws IOException {
+        if (mailbox.isEmpty()) {
+            throw new IllegalArgumentException("Mailbox ID must not be empty");
+        }
+        Mailbox entry = loaded.get(mailbox);
+        if (entry != null) {
+            hits++;
+            return entry;
+        }
+        misses++;
+        entry = new Mailbox();
+        Path file = fileOf(mailbox);
+        if (Files.exists(file)) {
+            TrainingPartial changes = TrainingPartial.read(file);
+            if (changes.getTokenization() != tokenization) {
+                throw new IOException(file + " was learned with " + changes.getTokenization()
+                        + " tokenization, not " + tokenization);
+            }
+            entry.overlay = OverlayModel.layeredOver(shared.model(), changes.counts(),
+                    changes.getNumHamFiles(), changes.getNumSpamFiles());
+            loads++;
+        }
+        loaded.put(mailbox, entry);
+        index.put(mailbox, entry);
+        resize(mailbox, entry);
+        return entry;
+    }
+
+    // The mailbox's overlay, layered again over the shared model first if that has changed
+    private OverlayModel current(String mailbox, Mailbox entry) {
+        if (shared.getTokenization() != tokenization) {
+            throw new IllegalStateException("The shared detector's tokenization changed from " + tokenization
+                    + " to " + shared.getTokenization());
+        }
+        SpamModel sharedModel = shared.model();
+        OverlayModel overlay = entry.overlay;
+        if (overlay.base() != sharedModel) {
+            entry.overlay = OverlayModel.layeredOver(sharedModel, overlay.changes(),
+                    overlay.numHamFiles() - overlay.base().numHamFiles(),
+                    overlay.numSpamFiles() - overlay.base().numSpamFiles());
+            resize(mailbox, entry);
+        }
+        return entry.overlay;
+    }
+
+    private void resize(String mailbox, Mailbox entry) {
+        long bytes = ENTRY_BYTES + 2L * mailbox.length() + (entry.overlay != null ? entry.overlay.deltaBytes() : 0);
+        loadedBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+        evictOverBudget(entry);
+    }
+
+    private void evictOverBudget(Mailbox inUse) {
+        Iterator<Map.Entry<String, Mailbox>> eldest = loaded.entrySet().iterator();
+        while (loadedBytes > memoryBudget && eldest.hasNext()) {
+            Map.Entry<String, Mailbox> entry = eldest.next();
+            if (entry.getValue() == inUse) {
+                continue;
+            }
+            try {
+                write(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                // Keep the changes in memory rather than lose them; the next eviction or flush() tries again.
+                // The failure is counted; it is not the error of the mailbox being scored or learned.
+                continue;
+            }
+            eldest.remove();
+            index.remove(entry.getKey());
+            loadedBytes -= entry.getValue().bytes;
+            evictions++;
+        }
+    }
+
+    private void write(String mailbox, Mailbox entry) throws IOException {
+        if (!entry.dirty) {
+            return;
+        }
+        Path file = fileOf(mailbox);
+        OverlayModel overlay = entry.overlay;
+        Vocabulary changes = overlay.changes();
+        int hamFileChange = overlay.numHamFiles() - overlay.base().numHamFiles();
+        int spamFileChange = overlay.numSpamFiles() - overlay.base().numSpamFiles();
+        try {
+            if (changes.size() == 0 && hamFileChange == 0 && spamFileChange == 0) {
+                Files.deleteIfExists(file); // everything learned was unlearned again
+            } else {
+                new TrainingPartial(tokenization, changes, hamFileChange, spamFileChange).write(file);
+            }
+        } catch (IOException e) {
+            writeFailures++;
+            if (!entry.writeFailed) {
+                System.err.println("Error writing file: " + file);
+                entry.writeFailed = true;
+            }
+            throw e;
+        }
+        entry.writeFailed = false;
+        entry.dirty = false;
+        writes++;
+    }
+
+    private Path fileOf(String mailbox) {
+        return directory.resolve(URLEncoder.encode(mailbox, StandardCharsets.UTF_8) + FILE_SUFFIX);
+    }
+}
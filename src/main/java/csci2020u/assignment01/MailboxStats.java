@@ -0,0 +1,76 @@
+package csci2020u.assignment01;
+
+/*
+ * MailboxStats is a snapshot of the counters of MailboxModels, for sizing its memory budget.
+ * Counters start at 0 when the MailboxModels is created.
+
+ * - hits / misses: lookups of a mailbox that found its overlay in memory, or had to look for its file.
+ *   Mailboxes with no changes count too, as they are remembered like loaded overlays.
+ * - loads: overlay files read. writes: overlay files written, on eviction or flush().
+ * - writeFailures: overlay files that could not be written. Their mailboxes stay loaded with their
+ *   changes, over the budget if need be, and are written again on the next eviction or flush().
+ * - evictions: mailboxes dropped to stay within the budget. Many evictions with a low hit rate mean
+ *   the budget is too small for the mailboxes in use.
+ * - loadedBytes: estimated heap size of the loaded overlays; the shared model is not counted.
+ */
+public final class MailboxStats {
+    private final long hits;
+    private final long misses;
+    private final long loads;
+    private final long writes;
+    private final long writeFailures;
+    private final long evictions;
+    private final int loadedMailboxes;
+    private final long loadedBytes;
+    private final long memoryBudget;
+
+    public MailboxStats(long hits, long misses, long loads, long writes, long writeFailures, long evictions,
+                        int loadedMailboxes, long loadedBytes, long memoryBudget) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loads = loads;
+        this.writes = writes;
+        this.writeFailures = writeFailures;
+        this.evictions = evictions;
+        this.loadedMailboxes = loadedMailboxes;
+        this.loadedBytes = loadedBytes;
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+
+    public long getLoads() { return loads; }
+
+    public long getWrites() { return writes; }
+
+    public long getWriteFailures() { return writeFailures; }
+
+    public long getEvictions() { return evictions; }
+
+    public int getLoadedMailboxes() { return loadedMailboxes; }
+
+    public long getLoadedBytes() { return loadedBytes; }
+
+    public long getMemoryBudget() { return memoryBudget; }
+
+    // Share of lookups answered from memory, 0 before the first lookup
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    // Average estimated size of a loaded mailbox in bytes, 0 if none is loaded
+    public long getBytesPerMailbox() {
+        return loadedMailboxes == 0 ? 0 : loadedBytes / loadedMailboxes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MailboxStats[hits=%d, misses=%d, hitRate=%.4f, loads=%d, writes=%d, writeFailures=%d, "
+                        + "evictions=%d, mailboxes=%d, bytes=%d/%d]",
+                hits, misses, getHitRate(), loads, writes, writeFailures, evictions, loadedMailboxes, loadedBytes,
+                memoryBudget);
+    }
+}
@@ -0,0 +1,408 @@
+package csci2020u.assignment01;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * MappedModel is a SpamModel read straight out of a memory-mapped model file.
+
+ * Opening a model only maps the file and checks its header; words are looked up by probing the
+ * hash table stored in the file, so nothing is deserialized into heap maps. Pages are loaded by
+ * the operating system on first use and, because the mapping is read-only, are shared by every
+ * process on the host that maps the same file.
+
+ * File format (version 3, little-endian, every section starts on an 8-byte boundary):
+ * - Header: magic "SPDM", version, numHamFiles, numSpamFiles, smoothingFactor (double),
+ *   word count, slot count (a power of two), key byte count, tokenization (Tokenization ordinal).
+ * - int[slotCount]   hash table slots holding word ID + 1, 0 = empty (linear probing)
+ * - int[words]       word hashes (String.hashCode())
+ * - int[words + 1]   start of each word in the key bytes
+ * - int[words]       ham file counts
+ * - int[words]       spam file counts
+ * - double[words]    spam probabilities
+ * - double[words]    word weights (SpamModel.weightOf() of the probabilities)
+ * - byte[keyBytes]   the words, ISO-8859-1 encoded
+ * Version 2 files have no weights section; their weights are computed from the probabilities on lookup.
+ * Version 1 files are version 2 with 0 (padding) in place of the tokenization; they are read as PLAIN.
+ */
+public final class MappedModel implements SpamModel {
+    private static final int MAGIC = 0x4D445053; // "SPDM" when read little-endian
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 40;
+
+    private final ByteBuffer buffer;
+    private final int numHamFiles;
+    private final int numSpamFiles;
+    private final double smoothingFactor;
+    private final Tokenization tokenization;
+    private final int size;
+    private final int slotMask;
+
+    // Byte offsets of the sections within the file
+    private final int slotsAt;
+    private final int hashesAt;
+    private final int offsetsAt;
+    private final int hamCountsAt;
+    private final int spamCountsAt;
+    private final int probabilitiesAt;
+    private final int weightsAt; // -1 in files written before weights were stored
+    private final int keyBytesAt;
+
+    private MappedModel(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a spam model file");
+        }
+        int version = buffer.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported spam model version " + version + " (expected " + VERSION + ")");
+        }
+        numHamFiles = buffer.getInt(8);
+        numSpamFiles = buffer.getInt(12);
+        smoothingFactor = buffer.getDouble(16);
+        size = buffer.getInt(24);
+        int slotCount = buffer.getInt(28);
+        int keyByteCount = buffer.getInt(32);
+        int tokenizationOrdinal = buffer.getInt(36);
+        if (size < 0 || slotCount <= size || Integer.bitCount(slotCount) != 1 || keyByteCount < 0
+                || tokenizationOrdinal < 0 || tokenizationOrdinal >= Tokenization.values().length) {
+            throw new IOException("Corrupt spam model header");
+        }
+        tokenization = Tokenization.values()[tokenizationOrdinal];
+        slotMask = slotCount - 1;
+
+        slotsAt = HEADER_BYTES;
+        hashesAt = align(slotsAt + 4L * slotCount);
+        offsetsAt = align(hashesAt + 4L * size);
+        hamCountsAt = align(offsetsAt + 4L * (size + 1));
+        spamCountsAt = align(hamCountsAt + 4L * size);
+        probabilitiesAt = align(spamCountsAt + 4L * size);
+        weightsAt = version >= 3 ? align(probabilitiesAt + 8L * size) : -1;
+        keyBytesAt = align(version >= 3 ? weightsAt + 8L * size : probabilitiesAt + 8L * size);
+        if ((long) keyBytesAt + keyByteCount != buffer.capacity()) {
+            throw new IOException("Spam model file has the wrong length: " + buffer.capacity());
+        }
+    }
+
+    /*
+     * Maps a model file written by write().
+     *
+     * @param file The model file.
+     * @return The mapped model.
+     * @throws IOException If the file cannot be read or is not a valid model file.
+     */
+
+    public static MappedModel open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Spam model file is too large to map: " + channel.size() + " bytes");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedModel(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /*
+     * Writes a model to a file in the format open() reads.
+     * The file is written under a temporary name, forced to disk and then moved into place, so
+     * processes that have the previous version mapped keep a consistent view, and a crash leaves
+     * either the old file or the whole new one.
+     *
+     * @param file  The model file to create or replace.
+     * @param model The model to write.
+     */
+
+    public static void write(Path file, SpamModel model) throws IOException {
+        write(file, model, Tokenization.PLAIN);
+    }
+
+    /*
+     * Writes a model to a file in the format open() reads, recording the tokenization it was trained with.
+     *
+     * @param file         The model file to create or replace.
+     * @param model        The model to write.
+     * @param tokenization The tokenization the model was trained with.
+     */
+
+    public static void write(Path file, SpamModel model, Tokenization tokenization) throws IOException {
+        int size = model.size();
+        int slotCount = 16;
+        while (slotCount < size * 2) {
+            slotCount <<= 1;
+        }
+
+        byte[][] words = new byte[size][];
+        int[] hashes = new int[size];
+        int[] slots = new int[slotCount];
+        long keyByteCount = 0;
+        for (int id = 0; id < size; id++) {
+            String word = model.word(id);
+            words[id] = word.getBytes(StandardCharsets.ISO_8859_1);
+            hashes[id] = word.hashCode();
+            keyByteCount += words[id].length;
+
+            int slot = TokenTable.spread(hashes[id]) & (slotCount - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[slot] = id + 1;
+        }
+        if (keyByteCount > Integer.MAX_VALUE) {
+            throw new IOException("Spam model is too large for the model file format");
+        }
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionWriter out = new SectionWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(model.numHamFiles());
+            out.putInt(model.numSpamFiles());
+            out.putDouble(model.smoothingFactor());
+            out.putInt(size);
+            out.putInt(slotCount);
+            out.putInt((int) keyByteCount);
+            out.putInt(tokenization.ordinal());
+            out.align();
+
+            for (int slot : slots) out.putInt(slot);
+            out.align();
+            for (int hash : hashes) out.putInt(hash);
+            out.align();
+            int offset = 0;
+            out.putInt(offset);
+            for (byte[] word : words) {
+                offset += word.length;
+                out.putInt(offset);
+            }
+            out.align();
+            for (int id = 0; id < size; id++) out.putInt(model.hamCount(id));
+            out.align();
+            for (int id = 0; id < size; id++) out.putInt(model.spamCount(id));
+            out.align();
+            for (int id = 0; id < size; id++) out.putDouble(model.spamProbability(id));
+            out.align();
+            for (int id = 0; id < size; id++) out.putDouble(model.weight(id));
+            out.align();
+            for (byte[] word : words) out.putBytes(word);
+            out.flush();
+            // On disk before the rename, so a crash cannot leave the new name on an unwritten file
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // How the emails of this model were split into words
+    public Tokenization tokenization() {
+        return tokenization;
+    }
+
+    @Override
+    public int numHamFiles() {
+        return numHamFiles;
+    }
+
+    @Override
+    public int numSpamFiles() {
+        return numSpamFiles;
+    }
+
+    @Override
+    public double smoothingFactor() {
+        return smoothingFactor;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int find(String word) {
+        int hash = word.hashCode();
+        for (int slot = TokenTable.spread(hash) & slotMask; ; slot = (slot + 1) & slotMask) {
+            int id = buffer.getInt(slotsAt + 4 * slot) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (buffer.getInt(hashesAt + 4 * id) == hash && equalsWord(id, word)) {
+                return id;
+            }
+        }
+    }
+
+    @Override
+    public int find(byte[] token, int length, int hash) {
+        return find(token, 0, length, hash);
+    }
+
+    @Override
+    public int find(TokenTable words, int wordId) {
+        return find(words.keyBytes(), words.start(wordId), words.length(wordId), words.hash(wordId));
+    }
+
+    @Override
+    public String word(int id) {
+        int start = wordStart(id);
+        byte[] bytes = new byte[wordStart(id + 1) - start];
+        buffer.get(keyBytesAt + start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public int hamCount(int id) {
+        return buffer.getInt(hamCountsAt + 4 * id);
+    }
+
+    @Override
+    public int spamCount(int id) {
+        return buffer.getInt(spamCountsAt + 4 * id);
+    }
+
+    @Override
+    public double spamProbability(int id) {
+        return buffer.getDouble(probabilitiesAt + 8 * id);
+    }
+
+    @Override
+    public double weight(int id) {
+        return weightsAt >= 0 ? buffer.getDouble(weightsAt + 8 * id) : SpamModel.weightOf(spamProbability(id));
+    }
+
+    @Override
+    public void addCountsTo(Vocabulary counts) {
+        byte[] word = new byte[64];
+        for (int id = 0; id < size; id++) {
+            int start = wordStart(id);
+            int length = wordStart(id + 1) - start;
+            if (length > word.length) {
+                word = new byte[Math.max(length, word.length * 2)];
+            }
+            buffer.get(keyBytesAt + start, word, 0, length);
+            counts.addCounts(counts.intern(word, length, buffer.getInt(hashesAt + 4 * id)), hamCount(id), spamCount(id));
+        }
+    }
+
+    private int find(byte[] bytes, int offset, int length, int hash) {
+        for (int slot = TokenTable.spread(hash) & slotMask; ; slot = (slot + 1) & slotMask) {
+            int id = buffer.getInt(slotsAt + 4 * slot) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (buffer.getInt(hashesAt + 4 * id) == hash && equalsBytes(id, bytes, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+    private int wordStart(int id) {
+        return buffer.getInt(offsetsAt + 4 * id);
+    }
+
+    private boolean equalsBytes(int id, byte[] bytes, int offset, int length) {
+        int start = wordStart(id);
+        if (wordStart(id + 1) - start != length) {
+            return false;
+        }
+        int at = keyBytesAt + start;
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(at + i) != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalsWord(int id, String word) {
+        int start = wordStart(id);
+        int length = wordStart(id + 1) - start;
+        if (word.length() != length) {
+            return false;
+        }
+        int at = keyBytesAt + start;
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != (buffer.get(at + i) & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int align(long position) throws IOException {
+        long aligned = (position + 7) & ~7L;
+        if (aligned > Integer.MAX_VALUE) {
+            throw new IOException("Spam model file is too large to map");
+        }
+        return (int) aligned;
+    }
+
+    /*
+     * Buffers little-endian values and writes them to a channel in large blocks.
+     */
+
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer block = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            block.putInt(value);
+            position += 4;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            block.putDouble(value);
+            position += 8;
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int from = 0; from < bytes.length; ) {
+                ensure(1);
+                int n = Math.min(block.remaining(), bytes.length - from);
+                block.put(bytes, from, n);
+                from += n;
+                position += n;
+            }
+        }
+
+        // Pads with zeros up to the next 8-byte boundary
+        void align() throws IOException {
+            while ((position & 7) != 0) {
+                ensure(1);
+                block.put((byte) 0);
+                position++;
+            }
+        }
+
+        void flush() throws IOException {
+            block.flip();
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+            block.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (block.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package csci2020u.assignment01;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/*
+ * MboxReader splits an mbox file into its messages, one at a time.
+
+ * Every line starting with "From " begins a new message and is not part of it. Body lines escaped
+ * as ">From ", ">>From ", ... (mboxrd) lose one '>'. The blank line mbox puts before each separator
+ * is dropped. Text before the first separator, if any, is returned as a message of its own, so a
+ * plain RFC-822 file reads as a single message.
+
+ * Only the current message is held in memory.
+ */
+public final class MboxReader implements Closeable {
+    private static final byte[] FROM = {'F', 'r', 'o', 'm', ' '};
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[64 * 1024];
+    private int bufferPosition;
+    private int bufferLimit;
+
+    private byte[] line = new byte[1024];
+    private int lineLength;
+
+    private byte[] message = new byte[64 * 1024];
+    private int messageLength;
+
+    // A separator line has been read whose message has not been returned yet
+    private boolean messagePending;
+
+    public MboxReader(InputStream in) {
+        this.in = in;
+    }
+
+    /*
+     * Returns the next message, or null at the end of the file.
+     */
+
+    public byte[] next() throws IOException {
+        messageLength = 0;
+        boolean started = messagePending;
+        messagePending = false;
+
+        while (readLine()) {
+            if (startsWith(line, 0, lineLength, FROM)) {
+                if (started || messageLength > 0) {
+                    messagePending = true;
+                    return finishMessage();
+                }
+                started = true;
+                continue;
+            }
+            appendLine();
+        }
+        return started || messageLength > 0 ? finishMessage() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private byte[] finishMessage() {
+        // Drop the blank line that separates messages in mbox
+        if (messageLength >= 2 && message[messageLength - 1] == '\n' && message[messageLength - 2] == '\n') {
+            messageLength--;
+        } else if (messageLength >= 4 && message[messageLength - 1] == '\n' && message[messageLength - 2] == '\r'
+                && message[messageLength - 3] == '\n' && message[messageLength - 4] == '\r') {
+            messageLength -= 2;
+        }
+        return Arrays.copyOf(message, messageLength);
+    }
+
+    // Appends the current line to the message, undoing mboxrd ">From " quoting
+    private void appendLine() {
+        int from = 0;
+        int quotes = 0;
+        while (quotes < lineLength && line[quotes] == '>') {
+            quotes++;
+        }
+        if (quotes > 0 && startsWith(line, quotes, lineLength, FROM)) {
+            from = 1;
+        }
+        int length = lineLength - from;
+        if (messageLength + length > message.length) {
+            message = Arrays.copyOf(message, Math.max(message.length * 2, messageLength + length));
+        }
+        System.arraycopy(line, from, message, messageLength, length);
+        messageLength += length;
+    }
+
+    // Reads the next line, including its '\n', into line; returns false at the end of the input
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            if (bufferPosition == bufferLimit) {
+                bufferLimit = in.read(buffer, 0, buffer.length);
+                bufferPosition = 0;
+                if (bufferLimit <= 0) {
+                    bufferLimit = 0;
+                    return lineLength > 0;
+                }
+            }
+            byte b = buffer[bufferPosition++];
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, lineLength * 2);
+            }
+            line[lineLength++] = b;
+            if (b == '\n') {
+                return true;
+            }
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length, byte[] prefix) {
+        if (length - offset < prefix.length) {
+            return false;
+        }
+        return Arrays.equals(bytes, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+}
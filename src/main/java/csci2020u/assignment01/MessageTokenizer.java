@@ -0,0 +1,36 @@
+package csci2020u.assignment01;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * MessageTokenizer turns a raw email into the words SpamDetector counts and scores.
+ * Words are reported to a WordTokenizer.TokenSink as bytes plus String.hashCode() of the word.
+
+ * Implementations: WordTokenizer (the whole file as plain text) and MimeTokenizer (headers and
+ * MIME parts handled separately). Instances are not thread-safe and are meant to be reused.
+ */
+public interface MessageTokenizer {
+
+    /*
+     * Tokenizes a UTF-8 encoded stream until end of input. The stream is not closed.
+     */
+    default void tokenize(InputStream in, WordTokenizer.TokenSink sink) throws IOException {
+        tokenize(in, Long.MAX_VALUE, sink);
+    }
+
+    /*
+     * Tokenizes at most maxBytes bytes of a UTF-8 encoded stream. The stream is not closed.
+     */
+    void tokenize(InputStream in, long maxBytes, WordTokenizer.TokenSink sink) throws IOException;
+
+    /*
+     * Tokenizes a message that is already in memory.
+     */
+    void tokenize(CharSequence text, WordTokenizer.TokenSink sink);
+
+    /*
+     * Called by a sink to end the current tokenize() call; no further words are reported.
+     */
+    void stop();
+}
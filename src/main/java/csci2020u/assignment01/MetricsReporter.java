@@ -0,0 +1,47 @@
+package csci2020u.assignment01;
+
+import java.io.PrintStream;
+
+/*
+ * MetricsReporter receives SpamDetector metrics at a fixed interval (see SpamDetector.startMetricsReporter()),
+ * to forward them to a log, a monitoring system or a dashboard.
+
+ * Reporters run on the detector's reporting thread, one call at a time, and should return quickly.
+ */
+@FunctionalInterface
+public interface MetricsReporter {
+
+    void report(MetricsSnapshot snapshot);
+
+    /*
+     * Stops a reporter started with SpamDetector.startMetricsReporter(); it is not called again.
+     */
+    interface Handle extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /*
+     * Returns a reporter that prints one line per interval: the throughput since the previous
+     * report, then the totals of the snapshot.
+     */
+    static MetricsReporter printingTo(PrintStream out) {
+        return new MetricsReporter() {
+            private MetricsSnapshot previous;
+
+            @Override
+            public void report(MetricsSnapshot snapshot) {
+                if (previous != null) {
+                    double seconds = (snapshot.getUptimeNanos() - previous.getUptimeNanos()) / 1e9;
+                    out.printf("spam-detector: files/s=%.1f MB/s=%.2f scored/s=%.1f %s%n",
+                            (snapshot.getFilesRead() - previous.getFilesRead()) / seconds,
+                            (snapshot.getBytesRead() - previous.getBytesRead()) / seconds / 1e6,
+                            (snapshot.getMessagesScored() - previous.getMessagesScored()) / seconds, snapshot);
+                } else {
+                    out.println("spam-detector: " + snapshot);
+                }
+                previous = snapshot;
+            }
+        };
+    }
+}
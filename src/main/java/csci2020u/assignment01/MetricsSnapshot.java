@@ -0,0 +1,105 @@
+package csci2020u.assignment01;
+
+/*
+ * MetricsSnapshot is a point-in-time copy of a SpamDetector's metrics (see SpamDetector.getMetrics()).
+
+ * Counters are totals since the detector was created; a reporter turns them into rates by comparing
+ * two snapshots (see getUptimeNanos()). Token counts are distinct words per message. Scoring counts
+ * only messages that were actually scored, not score cache hits, and latencies include tokenizing.
+ */
+public final class MetricsSnapshot {
+    private final long uptimeNanos;
+    private final long filesRead;
+    private final long bytesRead;
+    private final long readErrors;
+    private final long tokensProduced;
+    private final long trainingFiles;
+    private final long trainingNanos;
+    private final long messagesScored;
+    private final long knownTokens;
+    private final long unknownTokens;
+    private final long scoringNanosP50;
+    private final long scoringNanosP99;
+    private final long scoringNanosMax;
+    private final long scoringNanosTotal;
+    private final int modelWords;
+    private final int modelHamFiles;
+    private final int modelSpamFiles;
+    private final CacheStats scoreCache;
+
+    MetricsSnapshot(DetectorMetrics metrics, SpamModel model, CacheStats scoreCache) {
+        uptimeNanos = metrics.uptimeNanos();
+        filesRead = metrics.filesRead.sum();
+        bytesRead = metrics.bytesRead.sum();
+        readErrors = metrics.readErrors.sum();
+        tokensProduced = metrics.tokensProduced.sum();
+        trainingFiles = metrics.trainingFiles.sum();
+        trainingNanos = metrics.trainingNanos.sum();
+        messagesScored = metrics.scoringLatency.count();
+        knownTokens = metrics.knownTokens.sum();
+        unknownTokens = metrics.unknownTokens.sum();
+        scoringNanosP50 = metrics.scoringLatency.percentileNanos(0.50);
+        scoringNanosP99 = metrics.scoringLatency.percentileNanos(0.99);
+        scoringNanosMax = metrics.scoringLatency.maxNanos();
+        scoringNanosTotal = metrics.scoringLatency.totalNanos();
+        modelWords = model instanceof SketchModel ? -1 : model.size();
+        modelHamFiles = model.numHamFiles();
+        modelSpamFiles = model.numSpamFiles();
+        this.scoreCache = scoreCache;
+    }
+
+    // Time since the detector was created, the period the counters cover
+    public long getUptimeNanos() { return uptimeNanos; }
+
+    public long getFilesRead() { return filesRead; }
+
+    public long getBytesRead() { return bytesRead; }
+
+    // Files that could not be read; they are skipped in training and score 0.5 when classified
+    public long getReadErrors() { return readErrors; }
+
+    public long getTokensProduced() { return tokensProduced; }
+
+    public long getTrainingFiles() { return trainingFiles; }
+
+    // Training speed over all train() calls, 0 before the first one
+    public double getTrainingFilesPerSecond() {
+        return trainingNanos == 0 ? 0.0 : trainingFiles * 1e9 / trainingNanos;
+    }
+
+    public long getMessagesScored() { return messagesScored; }
+
+    // Share of the distinct words of scored messages that the model did not know, 0 before the first message
+    public double getUnknownTokenRate() {
+        long tokens = knownTokens + unknownTokens;
+        return tokens == 0 ? 0.0 : (double) unknownTokens / tokens;
+    }
+
+    public long getScoringNanosP50() { return scoringNanosP50; }
+
+    public long getScoringNanosP99() { return scoringNanosP99; }
+
+    public long getScoringNanosMax() { return scoringNanosMax; }
+
+    public double getScoringNanosMean() {
+        return messagesScored == 0 ? 0.0 : (double) scoringNanosTotal / messagesScored;
+    }
+
+    // Words in the model, or -1 for a count sketch model, which does not store words
+    public int getModelWords() { return modelWords; }
+
+    public int getModelHamFiles() { return modelHamFiles; }
+
+    public int getModelSpamFiles() { return modelSpamFiles; }
+
+    public CacheStats getScoreCache() { return scoreCache; }
+
+    @Override
+    public String toString() {
+        return String.format("filesRead=%d, bytesRead=%d, readErrors=%d, tokens=%d, trainingFiles/s=%.1f, "
+                        + "scored=%d, p50=%.1fus, p99=%.1fus, max=%.1fus, unknownTokenRate=%.4f, modelWords=%d, cacheHitRate=%.4f",
+                filesRead, bytesRead, readErrors, tokensProduced, getTrainingFilesPerSecond(), messagesScored,
+                scoringNanosP50 / 1e3, scoringNanosP99 / 1e3, scoringNanosMax / 1e3, getUnknownTokenRate(),
+                modelWords, scoreCache.getHitRate());
+    }
+}
@@ -0,0 +1,745 @@
+package csci2020u.assignment01;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Locale;
+
+/*
+ * MimeTokenizer reads an RFC 822 email as headers plus MIME parts instead of as one block of text.
+
+ * - Headers: words of Subject, From, To, Cc, Reply-To, Sender, X-Mailer and User-Agent are reported with
+ *   the lowercase header name as prefix ("subject:free"); RFC 2047 encoded words are decoded first.
+ *   Routing headers (Received, Message-Id, Date, ...) are skipped.
+ * - Every leaf part is summarized by one word with its content type ("part:image/gif").
+ * - Text parts are decoded (quoted-printable or base64) and their words reported as WordTokenizer splits them;
+ *   HTML parts have tags, entities and script/style content removed first; the host names of links
+ *   and images inside tags are kept as "url:" words.
+ * - Other parts (images, attachments) are skipped without decoding.
+ * - multipart/* parts are followed to any depth, and message/rfc822 parts are read as emails.
+ * A file that does not start with headers is read as plain text. The empty word "" is never reported.
+
+ * Parsing is line by line in one pass over the stream, so memory does not grow with the email size.
+ * A MimeTokenizer is not thread-safe; use one instance per thread and reuse it across messages.
+ */
+public final class MimeTokenizer implements MessageTokenizer {
+    // Headers whose words are kept, prefixed with the header name
+    private static final String[] WORD_HEADERS = {
+            "subject", "from", "to", "cc", "reply-to", "sender", "x-mailer", "user-agent"};
+
+    // Longer lines are processed in pieces of this size, e.g. base64 without line breaks
+    static final int MAX_LINE = 64 * 1024;
+
+    private static final int STATE_HEADERS = 0;
+    private static final int STATE_TEXT = 1;
+    private static final int STATE_SKIP = 2;
+
+    private static final int ENCODING_NONE = 0;
+    private static final int ENCODING_QUOTED_PRINTABLE = 1;
+    private static final int ENCODING_BASE64 = 2;
+
+    private static final byte[] LINE_FEED = {'\n'};
+
+    // Value of every base64 digit, -1 for every other byte
+    private static final byte[] BASE64 = new byte[256];
+
+    static {
+        Arrays.fill(BASE64, (byte) -1);
+        String digits = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < digits.length(); i++) {
+            BASE64[digits.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final WordTokenizer words = new WordTokenizer();
+    private final byte[] readBuffer = new byte[16 * 1024];
+    private byte[] line = new byte[256];
+    private byte[] header = new byte[256];
+    private byte[] decoded = new byte[256];
+    private byte[] text = new byte[256];
+    private final BodySink bodySink = new BodySink();
+    private final PrefixSink[] headerSinks = new PrefixSink[WORD_HEADERS.length];
+    private final PrefixSink urlSink = new PrefixSink();
+
+    // Boundary lines ("--" + boundary) of the enclosing multipart parts, innermost first
+    private final Deque<byte[]> boundaries = new ArrayDeque<>();
+
+    private WordTokenizer.TokenSink sink;
+    private boolean stopped;
+
+    public MimeTokenizer() {
+        for (int i = 0; i < WORD_HEADERS.length; i++) {
+            headerSinks[i] = new PrefixSink();
+            headerSinks[i].setPrefix(WORD_HEADERS[i]);
+        }
+        urlSink.setPrefix("url");
+    }
+
+    private int lineLength;
+    private int headerLength;
+    private int state;
+    private boolean firstLine;       // no line of the current header block has been read yet
+
+    // The part whose headers or body are being read
+    private String contentType;
+    private byte[] boundary;
+    private int encoding;
+
+    // Decoding state of the current text part
+    private boolean html;
+    private int base64Bits;
+    private int base64BitCount;
+    private boolean inTag;
+    private boolean tagNameDone;
+    private int tagNameLength;
+    private final byte[] tagName = new byte[8];
+    private int urlProgress;         // characters of "://" matched inside the current tag, 3 = reading a host
+    private final byte[] host = new byte[64];
+    private int hostLength;
+    private final byte[] entity = new byte[10]; // '&' and the name of a possible HTML entity, held back until ';'
+    private int entityLength;        // bytes of entity held back, 0 = not in an entity
+    private boolean inScript;        // inside <script> or <style>
+
+    @Override
+    public void tokenize(InputStream in, long maxBytes, WordTokenizer.TokenSink sink) throws IOException {
+        begin(sink);
+        try {
+            long remaining = maxBytes;
+            int n;
+            while (!stopped && remaining > 0
+                    && (n = in.read(readBuffer, 0, (int) Math.min(readBuffer.length, remaining))) > 0) {
+                remaining -= n;
+                acceptBytes(n);
+            }
+            end();
+        } finally {
+            this.sink = null;
+        }
+    }
+
+    @Override
+    public void tokenize(CharSequence text, WordTokenizer.TokenSink sink) {
+        try {
+            tokenize(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by a ByteArrayInputStream
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        words.stop();
+    }
+
+    private void begin(WordTokenizer.TokenSink sink) {
+        this.sink = sink;
+        stopped = false;
+        lineLength = 0;
+        boundaries.clear();
+        startHeaders();
+    }
+
+    private void end() {
+        if (stopped) {
+            return;
+        }
+        if (lineLength > 0) {
+            processLine(false);
+        }
+        if (state == STATE_HEADERS) {
+            processHeader();
+        } else if (state == STATE_TEXT) {
+            words.finish();
+        }
+    }
+
+    // Splits the read buffer into lines, carrying an unfinished line over to the next read
+    private void acceptBytes(int n) {
+        int from = 0;
+        while (from < n && !stopped) {
+            int lineEnd = from;
+            while (lineEnd < n && readBuffer[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            appendToLine(from, lineEnd);
+            if (lineEnd == n) {
+                return;
+            }
+            if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                lineLength--;
+            }
+            processLine(true);
+            lineLength = 0;
+            from = lineEnd + 1;
+        }
+    }
+
+    private void appendToLine(int from, int to) {
+        while (from < to) {
+            if (lineLength == line.length) {
+                if (lineLength == MAX_LINE) {
+                    processLine(false);
+                    lineLength = 0;
+                } else {
+                    line = Arrays.copyOf(line, Math.min(lineLength * 2, MAX_LINE));
+                }
+            }
+            int n = Math.min(to - from, line.length - lineLength);
+            System.arraycopy(readBuffer, from, line, lineLength, n);
+            lineLength += n;
+            from += n;
+        }
+    }
+
+    private void processLine(boolean terminated) {
+        if (state == STATE_HEADERS) {
+            headerLine();
+            return;
+        }
+        if (isBoundaryLine()) {
+            return;
+        }
+        if (state == STATE_TEXT) {
+            decodeLine(terminated);
+        }
+    }
+
+    // Headers
+
+    private void startHeaders() {
+        state = STATE_HEADERS;
+        firstLine = true;
+        headerLength = 0;
+        contentType = "text/plain";
+        boundary = null;
+        encoding = ENCODING_NONE;
+    }
+
+    private void headerLine() {
+        boolean first = firstLine;
+        firstLine = false;
+        if (lineLength == 0) {
+            processHeader();
+            startBody();
+            return;
+        }
+        if (line[0] == ' ' || line[0] == '\t') {
+            appendToHeader(line, 0, lineLength); // folded continuation of the previous header
+            return;
+        }
+        if (nameLength(line, lineLength) < 0) {
+            if (first && startsWith(line, lineLength, "From ")) {
+                return; // mbox envelope line
+            }
+            // Not a header: the part has no (more) headers and this line is already body text
+            processHeader();
+            startBody();
+            if (state == STATE_TEXT) {
+                decodeLine(true);
+            }
+            return;
+        }
+        processHeader();
+        appendToHeader(line, 0, lineLength);
+    }
+
+    private void appendToHeader(byte[] bytes, int offset, int length) {
+        if (headerLength + length > header.length) {
+            header = Arrays.copyOf(header, Math.max(header.length * 2, headerLength + length));
+        }
+        System.arraycopy(bytes, offset, header, headerLength, length);
+        headerLength += length;
+    }
+
+    private void processHeader() {
+        if (headerLength == 0) {
+            return;
+        }
+        int nameLength = nameLength(header, headerLength);
+        if (nameLength < 0) {
+            headerLength = 0; // continuation lines without a header before them
+            return;
+        }
+        int valueStart = nameLength + 1;
+        int valueEnd = headerLength;
+        headerLength = 0;
+
+        if (headerNameIs(nameLength, "content-type")) {
+            parseContentType(valueStart, valueEnd);
+        } else if (headerNameIs(nameLength, "content-transfer-encoding")) {
+            String value = new String(header, valueStart, valueEnd - valueStart,
+                    StandardCharsets.ISO_8859_1).trim().toLowerCase(Locale.ROOT);
+            encoding = value.equals("quoted-printable") ? ENCODING_QUOTED_PRINTABLE
+                    : value.equals("base64") ? ENCODING_BASE64 : ENCODING_NONE;
+        } else {
+            for (int i = 0; i < WORD_HEADERS.length; i++) {
+                if (headerNameIs(nameLength, WORD_HEADERS[i])) {
+                    if (stopped) {
+                        return; // starting the word tokenizer again would undo the stop
+                    }
+                    words.start(headerSinks[i]);
+                    int length = decodeHeaderValue(valueStart, valueEnd);
+                    words.accept(decoded, 0, length);
+                    words.finish();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Compares the name of the current header, ignoring case, with a lowercase name
+    private boolean headerNameIs(int nameLength, String name) {
+        if (nameLength != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            int c = header[i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Length of the header name before ':', or -1 if the line does not start with a header name
+    private static int nameLength(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b == ':') {
+                return i > 0 ? i : -1;
+            }
+            if (b <= ' ' || b >= 127) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void parseContentType(int from, int to) {
+        String value = new String(header, from, to - from, StandardCharsets.ISO_8859_1);
+        String[] parameters = value.split(";");
+        contentType = parameters[0].trim().toLowerCase(Locale.ROOT);
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).trim().equalsIgnoreCase("boundary")) {
+                String name = parameter.substring(equals + 1).trim();
+                if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+                    name = name.substring(1, name.length() - 1);
+                }
+                if (!name.isEmpty()) {
+                    boundary = ("--" + name).getBytes(StandardCharsets.ISO_8859_1);
+                }
+            }
+        }
+    }
+
+    /*
+     * Decodes RFC 2047 encoded words (=?charset?B?...?= and =?charset?Q?...?=) of a header value
+     * into the decoded buffer; other bytes are copied unchanged.
+     */
+    private int decodeHeaderValue(int from, int to) {
+        ensureDecoded(to - from);
+        int length = 0;
+        int i = from;
+        while (i < to) {
+            int end = header[i] == '=' && i + 1 < to && header[i + 1] == '?' ? encodedWordEnd(i, to) : -1;
+            if (end < 0) {
+                decoded[length++] = header[i++];
+                continue;
+            }
+            int charsetEnd = indexOf(header, '?', i + 2, end);
+            byte kind = header[charsetEnd + 1];
+            int textStart = charsetEnd + 3;
+            int textEnd = end - 2;
+            if (kind == 'B' || kind == 'b') {
+                int bits = 0;
+                int bitCount = 0;
+                for (int j = textStart; j < textEnd; j++) {
+                    int digit = BASE64[header[j] & 0xFF];
+                    if (digit >= 0) {
+                        bits = (bits << 6) | digit;
+                        bitCount += 6;
+                        if (bitCount >= 8) {
+                            bitCount -= 8;
+                            decoded[length++] = (byte) (bits >> bitCount);
+                        }
+                    }
+                }
+            } else {
+                for (int j = textStart; j < textEnd; j++) {
+                    byte b = header[j];
+                    if (b == '_') {
+                        decoded[length++] = ' ';
+                    } else if (b == '=' && j + 2 < textEnd && hex(header[j + 1]) >= 0 && hex(header[j + 2]) >= 0) {
+                        decoded[length++] = (byte) (hex(header[j + 1]) << 4 | hex(header[j + 2]));
+                        j += 2;
+                    } else {
+                        decoded[length++] = b;
+                    }
+                }
+            }
+            decoded[length++] = ' ';
+            i = end;
+        }
+        return length;
+    }
+
+    // End (exclusive) of the encoded word starting at from, or -1 if it is not a well-formed encoded word
+    private int encodedWordEnd(int from, int to) {
+        int charsetEnd = indexOf(header, '?', from + 2, to);
+        if (charsetEnd < 0 || charsetEnd + 2 >= to || header[charsetEnd + 2] != '?') {
+            return -1;
+        }
+        byte kind = header[charsetEnd + 1];
+        if (kind != 'B' && kind != 'b' && kind != 'Q' && kind != 'q') {
+            return -1;
+        }
+        for (int i = charsetEnd + 3; i + 1 < to; i++) {
+            if (header[i] == '?' && header[i + 1] == '=') {
+                return i + 2;
+            }
+        }
+        return -1;
+    }
+
+    // Bodies
+
+    private void startBody() {
+        if (stopped) {
+            return; // starting the word tokenizer again would undo the stop
+        }
+        if (contentType.startsWith("multipart/") && boundary != null) {
+            boundaries.push(boundary);
+            state = STATE_SKIP; // preamble before the first part
+        } else if (contentType.equals("message/rfc822")) {
+            startHeaders(); // an attached email, read like the outer one
+        } else {
+            reportPartType();
+            if (contentType.startsWith("text/")) {
+                state = STATE_TEXT;
+                html = contentType.contains("html");
+                base64Bits = 0;
+                base64BitCount = 0;
+                inTag = false;
+                entityLength = 0;
+                inScript = false;
+                words.start(bodySink);
+            } else {
+                state = STATE_SKIP;
+            }
+        }
+    }
+
+    private void reportPartType() {
+        byte[] token = ("part:" + contentType).getBytes(StandardCharsets.ISO_8859_1);
+        if (!stopped) {
+            sink.token(token, token.length, new String(token, StandardCharsets.ISO_8859_1).hashCode());
+        }
+    }
+
+    /*
+     * Handles a line that starts or ends a part of an enclosing multipart part.
+     * Returns false if the line is not a boundary line.
+     */
+    private boolean isBoundaryLine() {
+        if (boundaries.isEmpty() || lineLength < 3 || line[0] != '-' || line[1] != '-') {
+            return false;
+        }
+        int depth = 0;
+        for (byte[] candidate : boundaries) {
+            if (lineLength >= candidate.length && Arrays.equals(line, 0, candidate.length, candidate, 0, candidate.length)) {
+                boolean closing = lineLength >= candidate.length + 2
+                        && line[candidate.length] == '-' && line[candidate.length + 1] == '-';
+                if (state == STATE_TEXT) {
+                    words.finish();
+                }
+                for (int i = 0; i < depth; i++) {
+                    boundaries.pop(); // parts whose closing boundary was missing
+                }
+                if (closing) {
+                    boundaries.pop();
+                    state = STATE_SKIP; // epilogue, up to the next boundary of an enclosing part
+                } else {
+                    startHeaders();
+                }
+                return true;
+            }
+            depth++;
+        }
+        return false;
+    }
+
+    // Decodes one body line of a text part and passes the text on to the word tokenizer
+    private void decodeLine(boolean terminated) {
+        if (stopped) {
+            return;
+        }
+        ensureDecoded(lineLength + 1);
+        int length = 0;
+        switch (encoding) {
+            case ENCODING_QUOTED_PRINTABLE -> {
+                boolean softBreak = false;
+                for (int i = 0; i < lineLength; i++) {
+                    byte b = line[i];
+                    if (b == '=') {
+                        if (i == lineLength - 1) {
+                            softBreak = true;
+                            continue;
+                        }
+                        if (i + 2 < lineLength && hex(line[i + 1]) >= 0 && hex(line[i + 2]) >= 0) {
+                            decoded[length++] = (byte) (hex(line[i + 1]) << 4 | hex(line[i + 2]));
+                            i += 2;
+                            continue;
+                        }
+                    }
+                    decoded[length++] = b;
+                }
+                if (terminated && !softBreak) {
+                    decoded[length++] = '\n';
+                }
+            }
+            case ENCODING_BASE64 -> {
+                for (int i = 0; i < lineLength; i++) {
+                    byte b = line[i];
+                    int digit = BASE64[b & 0xFF];
+                    if (digit >= 0) {
+                        base64Bits = (base64Bits << 6) | digit;
+                        base64BitCount += 6;
+                        if (base64BitCount >= 8) {
+                            base64BitCount -= 8;
+                            decoded[length++] = (byte) (base64Bits >> base64BitCount);
+                        }
+                    } else if (b == '=') {
+                        base64BitCount = 0; // padding ends a group
+                    }
+                }
+            }
+            default -> {
+                if (!html) {
+                    // Nothing to decode: pass the line on without copying it
+                    words.accept(line, 0, lineLength);
+                    if (terminated) {
+                        words.accept(LINE_FEED, 0, 1);
+                    }
+                    return;
+                }
+                System.arraycopy(line, 0, decoded, 0, lineLength);
+                length = lineLength;
+                if (terminated) {
+                    decoded[length++] = '\n';
+                }
+            }
+        }
+
+        if (html) {
+            length = stripHtml(length);
+            words.accept(text, 0, length);
+        } else {
+            words.accept(decoded, 0, length);
+        }
+    }
+
+    // Copies the visible text of decoded HTML into the text buffer, replacing markup by spaces
+    private int stripHtml(int length) {
+        if (text.length < length + entity.length) {
+            text = new byte[Math.max(text.length * 2, length + entity.length)];
+        }
+        int out = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = decoded[i];
+            if (inTag) {
+                if (urlProgress == 3) {
+                    if (WORD_CHARS[b & 0xFF] || b == '.' || b == '-' || b == '_') {
+                        if (hostLength < host.length) {
+                            host[hostLength++] = (byte) Character.toLowerCase(b);
+                        }
+                        continue;
+                    }
+                    reportHost();
+                }
+                urlProgress = b == ':' ? 1 : b == '/' && (urlProgress == 1 || urlProgress == 2) ? urlProgress + 1 : 0;
+                if (b == '>') {
+                    inTag = false;
+                    endTag();
+                } else if (!tagNameDone) {
+                    if (tagNameLength < tagName.length && (b == '/' || WORD_CHARS[b & 0xFF])) {
+                        tagName[tagNameLength++] = (byte) Character.toLowerCase(b);
+                    } else {
+                        tagNameDone = true;
+                    }
+                }
+                continue;
+            }
+            if (entityLength > 0) {
+                if (b == ';' && entityLength > 1) {
+                    entityLength = 0;
+                    text[out++] = ' '; // an entity such as &nbsp; or &#39;
+                    continue;
+                }
+                if ((WORD_CHARS[b & 0xFF] || b == '#' && entityLength == 1) && entityLength < entity.length) {
+                    entity[entityLength++] = b;
+                    continue;
+                }
+                // Not an entity, as in "AT&T": keep the text unchanged
+                System.arraycopy(entity, 0, text, out, entityLength);
+                out += entityLength;
+                entityLength = 0;
+            }
+            if (b == '<') {
+                inTag = true;
+                tagNameDone = false;
+                tagNameLength = 0;
+                urlProgress = 0;
+                hostLength = 0;
+                text[out++] = ' ';
+                continue;
+            }
+            if (inScript) {
+                continue;
+            }
+            if (b == '&') {
+                entity[0] = b;
+                entityLength = 1;
+                continue;
+            }
+            text[out++] = b;
+        }
+        return out;
+    }
+
+    // Reports each word of a link target's host name inside a tag as "url:word"
+    private void reportHost() {
+        urlProgress = 0;
+        int start = 0;
+        for (int i = 0; i <= hostLength; i++) {
+            if (i == hostLength || !WORD_CHARS[host[i] & 0xFF]) {
+                if (i > start && !stopped) {
+                    urlSink.report(host, start, i - start);
+                }
+                start = i + 1;
+            }
+        }
+        hostLength = 0;
+    }
+
+    private void endTag() {
+        if (tagNameIs("script") || tagNameIs("style")) {
+            inScript = true;
+        } else if (tagNameIs("/script") || tagNameIs("/style")) {
+            inScript = false;
+        }
+    }
+
+    private boolean tagNameIs(String name) {
+        if (tagNameLength != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < tagNameLength; i++) {
+            if (tagName[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Helpers
+
+    // ASCII letters and digits
+    private static final boolean[] WORD_CHARS = new boolean[256];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) WORD_CHARS[c] = true;
+        for (int c = 'A'; c <= 'Z'; c++) WORD_CHARS[c] = true;
+        for (int c = '0'; c <= '9'; c++) WORD_CHARS[c] = true;
+    }
+
+    private void ensureDecoded(int length) {
+        if (decoded.length < length) {
+            decoded = new byte[Math.max(decoded.length * 2, length)];
+        }
+    }
+
+    private static int hex(byte b) {
+        if (b >= '0' && b <= '9') return b - '0';
+        if (b >= 'A' && b <= 'F') return b - 'A' + 10;
+        if (b >= 'a' && b <= 'f') return b - 'a' + 10;
+        return -1;
+    }
+
+    private static int indexOf(byte[] bytes, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, String prefix) {
+        if (length < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Passes body words on, leaving out the empty word
+    private final class BodySink implements WordTokenizer.TokenSink {
+        @Override
+        public void token(byte[] token, int length, int hash) {
+            if (length > 0) {
+                sink.token(token, length, hash);
+            }
+        }
+    }
+
+    // Passes header words on as "name:word"
+    private final class PrefixSink implements WordTokenizer.TokenSink {
+        private byte[] buffer = new byte[64];
+        private int prefixLength;
+        private int prefixHash;
+
+        void setPrefix(String name) {
+            prefixLength = name.length() + 1;
+            if (buffer.length < prefixLength) {
+                buffer = new byte[prefixLength * 2];
+            }
+            String prefix = name + ":";
+            System.arraycopy(prefix.getBytes(StandardCharsets.ISO_8859_1), 0, buffer, 0, prefixLength);
+            prefixHash = prefix.hashCode();
+        }
+
+        @Override
+        public void token(byte[] token, int length, int hash) {
+            if (length > 0) {
+                report(token, 0, length);
+            }
+        }
+
+        void report(byte[] word, int offset, int length) {
+            if (buffer.length < prefixLength + length) {
+                buffer = Arrays.copyOf(buffer, (prefixLength + length) * 2);
+            }
+            System.arraycopy(word, offset, buffer, prefixLength, length);
+            int combined = prefixHash;
+            for (int i = offset; i < offset + length; i++) {
+                combined = 31 * combined + word[i];
+            }
+            sink.token(buffer, prefixLength + length, combined);
+        }
+    }
+}
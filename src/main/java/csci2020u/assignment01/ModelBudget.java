@@ -0,0 +1,68 @@
+package csci2020u.assignment01;
+
+/*
+ * ModelBudget bounds how much memory SpamDetector's model may take as training data grows.
+
+ * - minCount: words in fewer training files (ham and spam together) are left out of the model.
+ *   Most words of raw emails occur once, so 2 already removes the bulk of the vocabulary.
+ * - maxWords: at most this many words are kept, the ones in the most training files.
+ * - sketchBytes: instead of a word table, the ham and spam counts are kept in a count-min sketch
+ *   of this many bytes. Memory then stays the same however much is trained, at the cost of counts
+ *   that may be overestimated when words share sketch cells. Pruning does not apply to a sketch.
+ * A value of 0 for maxWords or sketchBytes, and 1 for minCount, turns the respective bound off.
+ * UNLIMITED keeps every word, as training always has.
+ */
+public final class ModelBudget {
+    public static final ModelBudget UNLIMITED = new ModelBudget(1, 0, 0);
+
+    private final int minCount;
+    private final int maxWords;
+    private final int sketchBytes;
+
+    /*
+     * @param minCount    Minimum number of training files a word must be in to be kept (at least 1).
+     * @param maxWords    Number of most frequent words to keep, or 0 for all words.
+     * @param sketchBytes Size of the count-min sketch in bytes, or 0 to keep a word table.
+     */
+
+    public ModelBudget(int minCount, int maxWords, int sketchBytes) {
+        if (minCount < 1) {
+            throw new IllegalArgumentException("Minimum count must be at least 1: " + minCount);
+        }
+        if (maxWords < 0) {
+            throw new IllegalArgumentException("Word limit must not be negative: " + maxWords);
+        }
+        if (sketchBytes != 0 && sketchBytes < CountMinSketch.MIN_BYTES) {
+            throw new IllegalArgumentException("Sketch must be at least " + CountMinSketch.MIN_BYTES + " bytes: " + sketchBytes);
+        }
+        this.minCount = minCount;
+        this.maxWords = maxWords;
+        this.sketchBytes = sketchBytes;
+    }
+
+    // Keeps words in at least minCount files, up to maxWords of them
+    public static ModelBudget pruned(int minCount, int maxWords) {
+        return new ModelBudget(minCount, maxWords, 0);
+    }
+
+    // Keeps the counts in a count-min sketch of a fixed size
+    public static ModelBudget sketch(int sketchBytes) {
+        return new ModelBudget(1, 0, sketchBytes);
+    }
+
+    public int getMinCount() { return minCount; }
+
+    public int getMaxWords() { return maxWords; }
+
+    public int getSketchBytes() { return sketchBytes; }
+
+    // Whether training leaves words out of the model
+    public boolean isPruning() { return minCount > 1 || maxWords > 0; }
+
+    public boolean usesSketch() { return sketchBytes > 0; }
+
+    @Override
+    public String toString() {
+        return "ModelBudget[minCount=" + minCount + ", maxWords=" + maxWords + ", sketchBytes=" + sketchBytes + "]";
+    }
+}
@@ -0,0 +1,53 @@
+package csci2020u.assignment01;
+
+/*
+ * NGramFeatures chooses which features HashedFeatureModel extracts from an email, and how large its
+ * feature table is.
+
+ * - Words (unigrams) are always features, as in SpamDetector's model.
+ * - bigrams: every pair of consecutive words is a feature too, so "click here" counts apart from
+ *   "click" and "here".
+ * - charNGramLength: every run of this many characters inside a longer word is a feature, which
+ *   matches obfuscated spellings such as "v1agra" to "viagra" through the shared "agra".
+ *   0 turns character n-grams off.
+ * - tableBits: features are hashed into a table of 2^tableBits slots with no word stored, so the model
+ *   takes 16 bytes per slot however much is trained. Features that share a slot share their counts.
+ */
+public final class NGramFeatures {
+    public static final NGramFeatures UNIGRAMS = new NGramFeatures(false, 0, 20);
+
+    private final boolean bigrams;
+    private final int charNGramLength;
+    private final int tableBits;
+
+    /*
+     * @param bigrams         Whether pairs of consecutive words are features.
+     * @param charNGramLength Length of the character n-grams taken from words, or 0 for none.
+     * @param tableBits       Log2 of the number of table slots, from 10 to 28.
+     */
+
+    public NGramFeatures(boolean bigrams, int charNGramLength, int tableBits) {
+        if (charNGramLength < 0) {
+            throw new IllegalArgumentException("Character n-gram length must not be negative: " + charNGramLength);
+        }
+        if (tableBits < 10 || tableBits > 28) {
+            throw new IllegalArgumentException("Table bits must be from 10 to 28: " + tableBits);
+        }
+        this.bigrams = bigrams;
+        this.charNGramLength = charNGramLength;
+        this.tableBits = tableBits;
+    }
+
+    public boolean usesBigrams() { return bigrams; }
+
+    public int getCharNGramLength() { return charNGramLength; }
+
+    public int getTableBits() { return tableBits; }
+
+    public int getTableSize() { return 1 << tableBits; }
+
+    @Override
+    public String toString() {
+        return "NGramFeatures[bigrams=" + bigrams + ", charNGramLength=" + charNGramLength + ", tableBits=" + tableBits + "]";
+    }
+}
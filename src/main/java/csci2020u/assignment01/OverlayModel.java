@@ -0,0 +1,351 @@
+package csci2020u.assignment01;
+
+/*
+ * OverlayModel is a SpamModel made of an unchanging base model plus the words whose counts
+ * changed after the base was built, for example by learning or unlearning single messages.
+
+ * An overlay is immutable. Applying a message returns a new overlay that shares the base, so the
+ * cost of a message never depends on the size of the base. Threads holding an older overlay keep
+ * a consistent view.
+
+ * The changed words are kept in two tables. Settled words are shared, unchanged, by every overlay
+ * derived from this one; recent words, those changed since the last settling, are copied by each
+ * message. Once the recent words outnumber RECENT_WORDS_PER_SQRT times the square root of the
+ * settled words, they are folded into a new settled table. A message therefore copies
+ * O(sqrt(changed words)) entries, and the O(changed words) settling happens only every
+ * O(sqrt(changed words)) words learned.
+
+ * Word IDs below the base size are base words the overlay has not changed, followed by the settled
+ * and then the recent words. Changed words carry their full counts, and a recent word hides its
+ * settled entry, so a word's counts are always read from one place.
+
+ * Weights are read, not computed, on the scoring path. A word's weight is its log count ratio
+ * log(ham + 1) - log(spam + 1) plus a term of the file totals, clamped like SpamModel.weightOf().
+ * Changed words store the ratio; unchanged base words take the base weight, corrected by the change
+ * of the file total term, and only base words clamped in the base are computed from their counts.
+ */
+public final class OverlayModel implements SpamModel {
+    // Recent words allowed per square root of the settled words before they are settled
+    private static final int RECENT_WORDS_PER_SQRT = 16;
+    private static final int MIN_RECENT_WORDS = 1024;
+    // Largest weight magnitude, that of a probability clamped to 0.1 or 0.9
+    private static final double MAX_WEIGHT = SpamModel.weightOf(0.1);
+
+    private final SpamModel base;
+    private final int baseSize;
+    private final Vocabulary settled;
+    private final double[] settledRatios; // log count ratio of every settled word, shared like the table
+    private final int settledEnd;         // baseSize + settled.size(): first ID of the recent words
+    private final Vocabulary recent;
+    private final double[] recentRatios;
+    private final int numHamFiles;
+    private final int numSpamFiles;
+    // File total term of the weights, and its change from the base
+    private final double totalsTerm;
+    private final double totalsTermChange;
+    private final boolean baseTotals;
+
+    private OverlayModel(SpamModel base, Vocabulary settled, double[] settledRatios, Vocabulary recent,
+                         int numHamFiles, int numSpamFiles) {
+        this.base = base;
+        this.baseSize = base.size();
+        this.settled = settled;
+        this.settledRatios = settledRatios;
+        this.settledEnd = baseSize + settled.size();
+        this.recent = recent;
+        this.recentRatios = logCountRatios(recent);
+        this.numHamFiles = numHamFiles;
+        this.numSpamFiles = numSpamFiles;
+        double smoothing = base.smoothingFactor();
+        this.totalsTerm = totalsTerm(numHamFiles, numSpamFiles, smoothing);
+        this.totalsTermChange = totalsTerm - totalsTerm(base.numHamFiles(), base.numSpamFiles(), smoothing);
+        this.baseTotals = numHamFiles == base.numHamFiles() && numSpamFiles == base.numSpamFiles();
+    }
+
+    private OverlayModel(SpamModel base, Vocabulary settled, int numHamFiles, int numSpamFiles) {
+        this(base, settled, logCountRatios(settled), new Vocabulary(16), numHamFiles, numSpamFiles);
+    }
+
+    /*
+     * Returns an overlay with no changes on top of a model, or the model itself if it already is an overlay.
+     * Sketch models cannot be overlaid; they learn with SketchModel.withFile().
+     */
+
+    public static OverlayModel over(SpamModel model) {
+        if (model instanceof OverlayModel overlay) {
+            return overlay;
+        }
+        return layeredOver(model);
+    }
+
+    /*
+     * Returns an empty overlay on top of a model, even if the model is an overlay itself. This keeps
+     * changes such as those of one mailbox (see MailboxModels) apart from the changes of the model below.
+     */
+
+    static OverlayModel layeredOver(SpamModel model) {
+        if (model instanceof SketchModel) {
+            throw new IllegalArgumentException("A count sketch model has no word IDs to overlay");
+        }
+        return new OverlayModel(model, new Vocabulary(16), model.numHamFiles(), model.numSpamFiles());
+    }
+
+    /*
+     * Applies changes made by changes() to a model, which may differ from the one they were made over,
+     * for example after the model was retrained. Counts and file totals that would fall below 0 are 0.
+     *
+     * @param changes         Per word, the ham and spam counts to add to the model's.
+     * @param hamFileChange   Number of ham files to add to the model's total.
+     * @param spamFileChange  Number of spam files to add to the model's total.
+     */
+
+    static OverlayModel layeredOver(SpamModel model, Vocabulary changes, int hamFileChange, int spamFileChange) {
+        if (model instanceof SketchModel) {
+            throw new IllegalArgumentException("A count sketch model has no word IDs to overlay");
+        }
+        Vocabulary delta = new Vocabulary(changes.size());
+        TokenTable words = changes.words();
+        for (int i = 0; i < changes.size(); i++) {
+            int baseId = model.find(words, i);
+            int ham = (baseId >= 0 ? model.hamCount(baseId) : 0) + changes.hamCount(i);
+            int spam = (baseId >= 0 ? model.spamCount(baseId) : 0) + changes.spamCount(i);
+            delta.setCounts(delta.intern(words, i), Math.max(ham, 0), Math.max(spam, 0));
+        }
+        return new OverlayModel(model, delta, Math.max(model.numHamFiles() + hamFileChange, 0),
+                Math.max(model.numSpamFiles() + spamFileChange, 0));
+    }
+
+    /*
+     * Returns a new overlay in which one file is added to (learned) or removed from (unlearned) the counts.
+     * This copies the recent words, and every so often settles them (see the class comment).
+     *
+     * @param fileWords The distinct words of the file.
+     * @param label     The class of the file.
+     * @param change    +1 to learn the file, -1 to unlearn it.
+     * @throws IllegalArgumentException If unlearning would make a count negative, i.e. the file was never learned.
+     */
+
+    public OverlayModel withFile(TokenTable fileWords, Label label, int change) {
+        if (change != 1 && change != -1) {
+            throw new IllegalArgumentException("Change must be +1 or -1: " + change);
+        }
+        boolean spam = label == Label.SPAM;
+        if ((spam ? numSpamFiles : numHamFiles) + change < 0) {
+            throw new IllegalArgumentException("The model contains no " + label.getClassName() + " files to unlearn");
+        }
+
+        Vocabulary changed = recent.copy();
+        for (int i = 0; i < fileWords.size(); i++) {
+            int id = changed.find(fileWords, i);
+            if (id < 0) {
+                id = changed.intern(fileWords, i);
+                int settledId = settled.find(fileWords, i);
+                if (settledId >= 0) {
+                    changed.setCounts(id, settled.hamCount(settledId), settled.spamCount(settledId));
+                } else {
+                    int baseId = base.find(fileWords, i);
+                    if (baseId >= 0) {
+                        changed.setCounts(id, base.hamCount(baseId), base.spamCount(baseId));
+                    }
+                }
+            }
+            if ((spam ? changed.spamCount(id) : changed.hamCount(id)) + change < 0) {
+                throw new IllegalArgumentException("Word \"" + fileWords.token(i) + "\" is in no "
+                        + label.getClassName() + " file to unlearn");
+            }
+            changed.addCounts(id, spam ? 0 : change, spam ? change : 0);
+        }
+        int hamFiles = numHamFiles + (spam ? 0 : change);
+        int spamFiles = numSpamFiles + (spam ? change : 0);
+
+        int maxRecent = Math.max(MIN_RECENT_WORDS, (int) Math.sqrt(settled.size()) * RECENT_WORDS_PER_SQRT);
+        if (changed.size() <= maxRecent) {
+            return new OverlayModel(base, settled, settledRatios, changed, hamFiles, spamFiles);
+        }
+        return new OverlayModel(base, merged(settled, changed), hamFiles, spamFiles);
+    }
+
+    /*
+     * Folds the changes into a new in-heap model, recomputing every word probability.
+     */
+
+    public VocabularyModel compact() {
+        Vocabulary counts = new Vocabulary(settledEnd + recent.size());
+        addCountsTo(counts);
+        return VocabularyModel.train(counts, numHamFiles, numSpamFiles, base.smoothingFactor());
+    }
+
+    // Number of changed word entries; a word changed both before and after the last settling counts twice
+    public int deltaSize() {
+        return settled.size() + recent.size();
+    }
+
+    public SpamModel base() {
+        return base;
+    }
+
+    // Per changed word, its counts minus the base counts; words whose counts are back to the base are left out
+    Vocabulary changes() {
+        Vocabulary delta = merged(settled, recent);
+        Vocabulary changes = new Vocabulary(delta.size());
+        TokenTable words = delta.words();
+        for (int id = 0; id < delta.size(); id++) {
+            int baseId = base.find(words, id);
+            int ham = delta.hamCount(id) - (baseId >= 0 ? base.hamCount(baseId) : 0);
+            int spam = delta.spamCount(id) - (baseId >= 0 ? base.spamCount(baseId) : 0);
+            if (ham != 0 || spam != 0) {
+                changes.setCounts(changes.intern(words, id), ham, spam);
+            }
+        }
+        return changes;
+    }
+
+    // Approximate heap size of the changed words in bytes; the base is shared and not counted
+    long deltaBytes() {
+        return settled.estimatedBytes() + recent.estimatedBytes()
+                + 8L * (settledRatios.length + recentRatios.length) + 32;
+    }
+
+    @Override
+    public int numHamFiles() {
+        return numHamFiles;
+    }
+
+    @Override
+    public int numSpamFiles() {
+        return numSpamFiles;
+    }
+
+    @Override
+    public double smoothingFactor() {
+        return base.smoothingFactor();
+    }
+
+    @Override
+    public int size() {
+        return settledEnd + recent.size();
+    }
+
+    @Override
+    public int find(String word) {
+        int id = recent.find(word);
+        if (id >= 0) {
+            return usedId(recent, id, settledEnd);
+        }
+        id = settled.find(word);
+        return id >= 0 ? usedId(settled, id, baseSize) : base.find(word);
+    }
+
+    @Override
+    public int find(byte[] token, int length, int hash) {
+        int id = recent.find(token, length, hash);
+        if (id >= 0) {
+            return usedId(recent, id, settledEnd);
+        }
+        id = settled.find(token, length, hash);
+        return id >= 0 ? usedId(settled, id, baseSize) : base.find(token, length, hash);
+    }
+
+    @Override
+    public int find(TokenTable words, int wordId) {
+        int id = recent.find(words, wordId);
+        if (id >= 0) {
+            return usedId(recent, id, settledEnd);
+        }
+        id = settled.find(words, wordId);
+        return id >= 0 ? usedId(settled, id, baseSize) : base.find(words, wordId);
+    }
+
+    @Override
+    public String word(int id) {
+        if (id < baseSize) return base.word(id);
+        return id < settledEnd ? settled.word(id - baseSize) : recent.word(id - settledEnd);
+    }
+
+    @Override
+    public int hamCount(int id) {
+        if (id < baseSize) return base.hamCount(id);
+        return id < settledEnd ? settled.hamCount(id - baseSize) : recent.hamCount(id - settledEnd);
+    }
+
+    @Override
+    public int spamCount(int id) {
+        if (id < baseSize) return base.spamCount(id);
+        return id < settledEnd ? settled.spamCount(id - baseSize) : recent.spamCount(id - settledEnd);
+    }
+
+    @Override
+    public double spamProbability(int id) {
+        // Base probabilities stay valid only while the file totals are those of the base
+        if (id < baseSize && baseTotals) {
+            return base.spamProbability(id);
+        }
+        return SpamModel.estimateSpamProbability(spamCount(id), hamCount(id), numSpamFiles, numHamFiles, smoothingFactor());
+    }
+
+    @Override
+    public double weight(int id) {
+        if (id < baseSize) {
+            double baseWeight = base.weight(id);
+            if (baseTotals) {
+                return baseWeight;
+            }
+            // A clamped base weight has lost its log count ratio
+            if (Math.abs(baseWeight) < MAX_WEIGHT) {
+                return clamp(baseWeight + totalsTermChange);
+            }
+            return SpamModel.weightOf(spamProbability(id));
+        }
+        double ratio = id < settledEnd ? settledRatios[id - baseSize] : recentRatios[id - settledEnd];
+        return clamp(ratio + totalsTerm);
+    }
+
+    @Override
+    public void addCountsTo(Vocabulary counts) {
+        base.addCountsTo(counts);
+        Vocabulary delta = merged(settled, recent);
+        TokenTable words = delta.words();
+        for (int id = 0; id < delta.size(); id++) {
+            int baseId = base.find(words, id);
+            int baseHam = baseId >= 0 ? base.hamCount(baseId) : 0;
+            int baseSpam = baseId >= 0 ? base.spamCount(baseId) : 0;
+            counts.addCounts(counts.intern(words, id), delta.hamCount(id) - baseHam, delta.spamCount(id) - baseSpam);
+        }
+    }
+
+    // Words unlearned down to zero counts are treated as unknown, as after retraining without them
+    private static int usedId(Vocabulary table, int id, int firstId) {
+        return table.hamCount(id) == 0 && table.spamCount(id) == 0 ? -1 : firstId + id;
+    }
+
+    // The settled words with the recent counts applied
+    private static Vocabulary merged(Vocabulary settled, Vocabulary recent) {
+        Vocabulary merged = settled.copy();
+        for (int id = 0; id < recent.size(); id++) {
+            merged.setCounts(merged.intern(recent.words(), id), recent.hamCount(id), recent.spamCount(id));
+        }
+        return merged;
+    }
+
+    /*
+     * The weight SpamModel.weightOf(estimateSpamProbability()) gives a word is
+     * log((ham + 1) / (numHamFiles + smoothing)) - log((spam + 1) / (numSpamFiles + smoothing)),
+     * clamped: a log count ratio plus a term that depends only on the file totals.
+     */
+
+    private static double[] logCountRatios(Vocabulary words) {
+        double[] ratios = new double[words.size()];
+        for (int id = 0; id < ratios.length; id++) {
+            ratios[id] = Math.log(words.hamCount(id) + 1.0) - Math.log(words.spamCount(id) + 1.0);
+        }
+        return ratios;
+    }
+
+    private static double totalsTerm(int numHamFiles, int numSpamFiles, double smoothing) {
+        return Math.log(numSpamFiles + smoothing) - Math.log(numHamFiles + smoothing);
+    }
+
+    private static double clamp(double weight) {
+        return Math.max(-MAX_WEIGHT, Math.min(MAX_WEIGHT, weight));
+    }
+}
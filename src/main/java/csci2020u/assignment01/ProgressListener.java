@@ -0,0 +1,30 @@
+package csci2020u.assignment01;
+
+/*
+ * ProgressListener follows a long-running SpamDetector operation (train, classifyTestEmails) file by file,
+ * e.g. to drive a progress bar or show results while the rest are still being scored.
+
+ * Training calls progress() from its worker threads when trainingParallelism is above 1, so a
+ * listener must be thread-safe. A listener stops the operation by throwing an unchecked exception,
+ * usually a CancellationException; the detector is then left as it was before the call.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    // Listener for callers that do not follow progress
+    ProgressListener NONE = (done, total) -> { };
+
+    /*
+     * Called after each file.
+     *
+     * @param done  Files processed so far, including this one.
+     * @param total Files the operation will process in all.
+     */
+    void progress(int done, int total);
+
+    /*
+     * Called by classifyTestEmails() with each email as soon as it is classified, before progress().
+     */
+    default void classified(TestFile email) {
+    }
+}
@@ -0,0 +1,114 @@
+package csci2020u.assignment01;
+
+import java.util.Arrays;
+
+/*
+ * RuleMatcher runs SpamRules over the words of an email as the tokenizer reports them, passing
+ * every word on to the sink that scores it. The email is therefore read and tokenized once for
+ * both the word model and the rules.
+
+ * MIME tokenization reports some words with a prefix ("subject:free", "url:www.bad-site.example").
+ * Such words are matched as the words after the prefix, split like email text, so rules apply to
+ * subject lines and link hosts as well.
+
+ * A RuleMatcher is not thread-safe; SpamDetector keeps one per thread with its scoring buffers.
+ */
+final class RuleMatcher implements WordTokenizer.TokenSink {
+    // Lowercase word bytes, as WordTokenizer defines them
+    private static final boolean[] WORD_BYTES = new boolean[256];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) WORD_BYTES[c] = true;
+        for (int c = '0'; c <= '9'; c++) WORD_BYTES[c] = true;
+        WORD_BYTES['_'] = true;
+    }
+
+    private SpamRules rules;
+    private WordTokenizer.TokenSink next;
+    private int state;
+    private double weight;
+    private int matchCount;
+
+    // matchedIn[rule] == email when the rule has matched the current email
+    private int[] matchedIn = new int[0];
+    private int email;
+
+    /*
+     * Starts matching a new email.
+     *
+     * @param rules The rules to match.
+     * @param next  Receives every word of the email.
+     * @return This matcher, to pass to the tokenizer.
+     */
+
+    RuleMatcher begin(SpamRules rules, WordTokenizer.TokenSink next) {
+        this.rules = rules;
+        this.next = next;
+        state = 0;
+        weight = 0.0;
+        matchCount = 0;
+        if (matchedIn.length < rules.size()) {
+            matchedIn = new int[rules.size()];
+        }
+        if (++email == 0) {
+            Arrays.fill(matchedIn, 0);
+            email = 1;
+        }
+        return this;
+    }
+
+    // Summed weights of the distinct rules the email has matched so far
+    double weight() {
+        return weight;
+    }
+
+    // Number of distinct rules the email has matched so far
+    int matchCount() {
+        return matchCount;
+    }
+
+    @Override
+    public void token(byte[] token, int length, int hash) {
+        next.token(token, length, hash);
+        if (length == 0) {
+            return; // punctuation at a line start does not break a phrase
+        }
+
+        int firstOther = 0;
+        while (firstOther < length && WORD_BYTES[token[firstOther] & 0xFF]) {
+            firstOther++;
+        }
+        if (firstOther == length) {
+            step(rules.symbol(token, 0, length, hash));
+            return;
+        }
+
+        // Match the words after the prefix one at a time; no rule word holds other characters
+        int start = token[firstOther] == ':' ? firstOther + 1 : 0;
+        while (start < length) {
+            if (!WORD_BYTES[token[start] & 0xFF]) {
+                start++;
+                continue;
+            }
+            int end = start;
+            int wordHash = 0;
+            while (end < length && WORD_BYTES[token[end] & 0xFF]) {
+                wordHash = 31 * wordHash + token[end];
+                end++;
+            }
+            step(rules.symbol(token, start, end - start, wordHash));
+            start = end;
+        }
+    }
+
+    private void step(int symbol) {
+        state = rules.next(state, symbol);
+        for (int rule : rules.outputs(state)) {
+            if (matchedIn[rule] != email) {
+                matchedIn[rule] = email;
+                weight += rules.weight(rule);
+                matchCount++;
+            }
+        }
+    }
+}
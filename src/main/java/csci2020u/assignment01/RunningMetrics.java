@@ -0,0 +1,70 @@
+package csci2020u.assignment01;
+
+/*
+ * RunningMetrics keeps accuracy and precision counters up to date while emails are being classified,
+ * without keeping the classified emails themselves. Emails without an actual class count as
+ * processed but are left out of accuracy and precision.
+
+ * Safe to read from any thread while another thread records results.
+ */
+public final class RunningMetrics {
+    private long processed;
+    private long labeled;
+    private long correctPredictions;
+    private long truePositives;  // Spam emails classified as spam
+    private long falsePositives; // Ham emails classified as spam
+    private long predictedSpam;
+
+    /*
+     * Adds one classified email to the counters.
+     *
+     * @param email The classified email; its actual class may be null if unknown.
+     */
+
+    public synchronized void record(TestFile email) {
+        processed++;
+        boolean isSpam = email.getSpamProbability() > 0.5; // Same threshold as SpamDetector.computeAccuracy()
+        if (isSpam) {
+            predictedSpam++;
+        }
+        if (email.getActualClass() == null) {
+            return;
+        }
+
+        labeled++;
+        boolean actualSpam = email.getActualClass().equals(Label.SPAM.getClassName());
+        if (isSpam == actualSpam) {
+            correctPredictions++;
+        }
+        if (isSpam) {
+            if (actualSpam) {
+                truePositives++;
+            } else {
+                falsePositives++;
+            }
+        }
+    }
+
+    public synchronized long getProcessed() { return processed; }
+
+    public synchronized long getLabeled() { return labeled; }
+
+    public synchronized long getPredictedSpam() { return predictedSpam; }
+
+    // Accuracy over the labeled emails so far, NaN before the first one
+    public synchronized double getAccuracy() {
+        return (double) correctPredictions / labeled;
+    }
+
+    // Precision over the labeled emails so far, 0 while none was classified as spam
+    public synchronized double getPrecision() {
+        if ((truePositives + falsePositives) == 0) return 0.0;
+        return (double) truePositives / (truePositives + falsePositives);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("processed=%d, predictedSpam=%d, labeled=%d, accuracy=%.5f, precision=%.5f",
+                processed, predictedSpam, labeled, getAccuracy(), getPrecision());
+    }
+}
@@ -0,0 +1,145 @@
+package csci2020u.assignment01;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * ScoreCache remembers the scores of recently scored messages by ContentHash key, so repeated
+ * copies of bulk mail are scored once.
+
+ * The entries are split into shards by key, each a small LRU map behind its own lock, so threads
+ * scoring different messages rarely wait for each other; a lookup holds its shard's lock only for
+ * one map operation. Each shard holds an equal part of the capacity and evicts its own least
+ * recently used entry, which approximates LRU over the whole cache. Counters are lock-free.
+
+ * Scores are only valid for the model and settings they were computed with. Each shard remembers
+ * them, and the first lookup in a shard with a different model snapshot, tokenization, scoring
+ * limits or rules empties it. Because models are immutable and every update publishes a new one,
+ * this invalidates the cache on every train, learn or unlearn.
+ */
+final class ScoreCache {
+    // Shards per available processor, so that two threads rarely want the same shard
+    private static final int SHARDS_PER_PROCESSOR = 4;
+    private static final int MAX_SHARDS = 64;
+
+    private final int capacity;
+    private final Shard[] shards;
+
+    // What the cache was last used with, for counting invalidations once rather than per shard
+    private final AtomicReference<Settings> lastSettings = new AtomicReference<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    // Compared by identity, like the model snapshots they come from
+    private record Settings(SpamModel model, Tokenization tokenization, ScoringLimits limits, SpamRules rules) {
+        boolean matches(SpamModel model, Tokenization tokenization, ScoringLimits limits, SpamRules rules) {
+            return model == this.model && tokenization == this.tokenization && limits == this.limits
+                    && rules == this.rules;
+        }
+    }
+
+    private final class Shard extends LinkedHashMap<ContentHash, SpamScore> {
+        private static final long serialVersionUID = 1L;
+
+        private final int shardCapacity;
+        private transient Settings settings; // what the entries were computed with; guarded by this
+
+        Shard(int shardCapacity) {
+            super(16, 0.75f, true);
+            this.shardCapacity = shardCapacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ContentHash, SpamScore> eldest) {
+            if (size() > shardCapacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    ScoreCache(int capacity) {
+        this.capacity = capacity;
+        int wanted = Math.min(MAX_SHARDS, Runtime.getRuntime().availableProcessors() * SHARDS_PER_PROCESSOR);
+        // A power of two, no more than the capacity, so that every shard holds at least one entry
+        int shardCount = Integer.highestOneBit(Math.min(wanted, capacity));
+        int shardCapacity = (capacity + shardCount - 1) / shardCount;
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(shardCapacity);
+        }
+    }
+
+    /*
+     * Returns the cached score of a message, or null if it has to be scored.
+     */
+
+    SpamScore get(ContentHash key, SpamModel model, Tokenization tokenization, ScoringLimits limits, SpamRules rules) {
+        Shard shard = shardOf(key);
+        SpamScore score;
+        synchronized (shard) {
+            if (shard.settings == null || !shard.settings.matches(model, tokenization, limits, rules)) {
+                shard.clear();
+                shard.settings = settings(model, tokenization, limits, rules);
+            }
+            score = shard.get(key);
+        }
+        if (score == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return score;
+    }
+
+    /*
+     * Caches a score, unless the model or settings changed since the lookup that missed.
+     */
+
+    void put(ContentHash key, SpamModel model, Tokenization tokenization, ScoringLimits limits, SpamRules rules,
+             SpamScore score) {
+        Shard shard = shardOf(key);
+        synchronized (shard) {
+            if (shard.settings != null && shard.settings.matches(model, tokenization, limits, rules)) {
+                shard.put(key, score);
+            }
+        }
+    }
+
+    CacheStats stats() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), size, capacity);
+    }
+
+    private Shard shardOf(ContentHash key) {
+        return shards[key.hashCode() & (shards.length - 1)];
+    }
+
+    // The settings shared by the shards, counting an invalidation the first time they change
+    private Settings settings(SpamModel model, Tokenization tokenization, ScoringLimits limits, SpamRules rules) {
+        while (true) {
+            Settings last = lastSettings.get();
+            if (last != null && last.matches(model, tokenization, limits, rules)) {
+                return last;
+            }
+            Settings next = new Settings(model, tokenization, limits, rules);
+            if (lastSettings.compareAndSet(last, next)) {
+                if (last != null) {
+                    invalidations.increment();
+                }
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package csci2020u.assignment01;
+
+/*
+ * ScoringLimits bounds the work SpamDetector spends on one email, in the style of Graham's
+ * "A Plan for Spam" and Robinson's refinements: only the most informative words are combined,
+ * and reading stops early once the verdict is clear.
+
+ * - maxWords: only the words whose clamped spam probability is furthest from 0.5 are combined.
+ * - exitMargin: once maxWords words have been seen, reading stops as soon as the score of the words
+ *   kept so far is at least this far from 0.5 (e.g. 0.49 stops below 0.01 or above 0.99).
+ * - maxBytes: reading stops after this many bytes of the email.
+ * A value of 0 turns the respective limit off. NONE scores whole emails, as classification always has.
+ */
+public final class ScoringLimits {
+    public static final ScoringLimits NONE = new ScoringLimits(0, 0.0, 0);
+
+    private final int maxWords;
+    private final double exitMargin;
+    private final long maxBytes;
+
+    /*
+     * @param maxWords   Number of most informative words to combine, or 0 for all words.
+     * @param exitMargin Distance of the score from 0.5 at which reading stops, between 0 (off) and 0.5.
+     * @param maxBytes   Number of bytes to read at most, or 0 for the whole email.
+     */
+
+    public ScoringLimits(int maxWords, double exitMargin, long maxBytes) {
+        if (maxWords < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Word and byte limits must not be negative");
+        }
+        if (!(exitMargin >= 0 && exitMargin < 0.5)) {
+            throw new IllegalArgumentException("Exit margin must be between 0 and 0.5: " + exitMargin);
+        }
+        if (exitMargin > 0 && maxWords == 0) {
+            throw new IllegalArgumentException("Early exit needs a word limit");
+        }
+        this.maxWords = maxWords;
+        this.exitMargin = exitMargin;
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxWords() { return maxWords; }
+
+    public double getExitMargin() { return exitMargin; }
+
+    public long getMaxBytes() { return maxBytes; }
+
+    // Whether scoring may skip part of an email
+    public boolean isBounded() { return maxWords > 0 || maxBytes > 0; }
+
+    @Override
+    public String toString() {
+        return "ScoringLimits[maxWords=" + maxWords + ", exitMargin=" + exitMargin + ", maxBytes=" + maxBytes + "]";
+    }
+}
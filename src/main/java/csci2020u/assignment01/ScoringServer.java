@@ -0,0 +1,232 @@
+package csci2020u.assignment01;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * ScoringServer serves a trained SpamDetector over HTTP, so a mail server can score messages
+ * without the GUI. It runs on the JDK's built-in HttpServer and handles every request on its own
+ * virtual thread; all requests share the one detector, whose score() never blocks.
+
+ * Endpoints:
+ * - POST /score with a raw RFC-822 message as the body returns its score as a JSON object:
+ *   {"spamProbability":0.99,"spam":true,"words":120,"knownWords":97,"ruleMatches":1}
+ * - POST /score/batch with an mbox file as the body (each message begins with a "From " line)
+ *   returns a JSON array with one score per message, in order, each with its "index". Messages are
+ *   read and scored one at a time and the response is streamed, so batches of any size are accepted.
+ * - GET /metrics returns the detector's metrics (see MetricsSnapshot) as text.
+
+ * The server exposes no way to change the detector. Rules (see SpamRules) are set on the detector
+ * before the server is created, or with the rules= option of main().
+
+ * Applications that create a ScoringServer themselves should run the JVM with
+ * -Dsun.net.httpserver.nodelay=true, which main() sets; without it every response waits about 40 ms
+ * for the client's delayed ACK. The setting applies to every HttpServer in the JVM, so it is left to them.
+ */
+public final class ScoringServer implements AutoCloseable {
+    // Largest message /score accepts; larger ones get 413 Payload Too Large
+    public static final int MAX_MESSAGE_BYTES = 16 * 1024 * 1024;
+
+    private static final int DEFAULT_PORT = 8080;
+
+    private final SpamDetector detector;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /*
+     * Creates a server for a detector; it accepts connections once start() is called.
+     *
+     * @param detector The trained detector to score with. It may keep learning while the server runs.
+     * @param address  The address to listen on; port 0 picks a free port (see getPort()).
+     */
+
+    public ScoringServer(SpamDetector detector, InetSocketAddress address) throws IOException {
+        this.detector = detector;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/score", exchange -> handle(exchange, "POST", this::score));
+        server.createContext("/score/batch", exchange -> handle(exchange, "POST", this::scoreBatch));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", this::metrics));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /*
+     * Stops accepting requests, waits up to a second for those in progress, then stops the server.
+     */
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    private void score(HttpExchange exchange) throws IOException {
+        byte[] message = exchange.getRequestBody().readNBytes(MAX_MESSAGE_BYTES + 1);
+        if (message.length > MAX_MESSAGE_BYTES) {
+            sendText(exchange, 413, "Message larger than " + MAX_MESSAGE_BYTES + " bytes");
+            return;
+        }
+        if (message.length == 0) {
+            sendText(exchange, 400, "Empty message");
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(96);
+        appendScore(json, -1, detector.score(message));
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void scoreBatch(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0); // chunked: scores are written as they are computed
+
+        StringBuilder json = new StringBuilder(96);
+        try (InputStream in = exchange.getRequestBody();
+             MboxReader reader = new MboxReader(in);
+             Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            out.write('[');
+            int index = 0;
+            for (byte[] message = reader.next(); message != null; message = reader.next()) {
+                json.setLength(0);
+                if (index > 0) {
+                    json.append(",\n");
+                }
+                appendScore(json, index++, detector.score(message));
+                out.append(json);
+            }
+            out.write("]\n");
+        }
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        sendText(exchange, 200, detector.getMetrics().toString());
+    }
+
+    // Appends a score as a JSON object; index is left out if negative
+    private static void appendScore(StringBuilder json, int index, SpamScore score) {
+        json.append('{');
+        if (index >= 0) {
+            json.append("\"index\":").append(index).append(',');
+        }
+        json.append("\"spamProbability\":").append(score.getSpamProbability())
+                .append(",\"spam\":").append(score.isSpam())
+                .append(",\"words\":").append(score.getWordCount())
+                .append(",\"knownWords\":").append(score.getKnownWordCount())
+                .append(",\"ruleMatches\":").append(score.getRuleMatchCount())
+                .append('}');
+    }
+
+    // Body of an endpoint; the exchange is closed by handle()
+    @FunctionalInterface
+    private interface Endpoint {
+        void serve(HttpExchange exchange) throws IOException;
+    }
+
+    /*
+     * Checks the method and exact path of a request, then serves it. An endpoint that fails
+     * before sending its response headers answers 500; HttpServer would otherwise just close
+     * the connection.
+     */
+
+    private static void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                sendText(exchange, 404, "Not found");
+            } else if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendText(exchange, 405, "Use " + method);
+            } else {
+                try {
+                    endpoint.serve(exchange);
+                } catch (RuntimeException e) {
+                    System.err.println("Error handling " + exchange.getRequestURI() + ": " + e);
+                    if (exchange.getResponseCode() == -1) {
+                        sendText(exchange, 500, "Internal error");
+                    }
+                }
+            }
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /*
+     * Starts a server from the command line. The model is a file written by SpamDetector.save(),
+     * or a training directory with 'ham' and 'spam' subfolders to train on at startup.
+     * By default the server only listens on the loopback interface. rules= loads a rule file
+     * (see SpamRules) to score with.
+     *
+     * Usage: ScoringServer <model file or training directory> [port] [bind address] [rules=<rule file>]
+     */
+
+    public static void main(String[] args) throws Exception {
+        Path rulesFile = null;
+        if (args.length > 0 && args[args.length - 1].startsWith("rules=")) {
+            rulesFile = Paths.get(args[args.length - 1].substring("rules=".length()));
+            args = Arrays.copyOf(args, args.length - 1);
+        }
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: ScoringServer <model file or training directory> [port] [bind address] [rules=<rule file>]");
+            System.exit(2);
+        }
+        SpamDetector detector;
+        File model = new File(args[0]);
+        if (model.isDirectory()) {
+            detector = new SpamDetector();
+            detector.train(model);
+        } else {
+            detector = SpamDetector.load(Paths.get(args[0]));
+        }
+        if (rulesFile != null) {
+            detector.setRules(SpamRules.load(rulesFile));
+        }
+        // Without TCP_NODELAY a response body written after its headers waits for the client's delayed ACK,
+        // adding about 40 ms to every request. HttpServer reads the setting once, when it is first used.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        InetAddress bindAddress = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+
+        ScoringServer server = new ScoringServer(detector, new InetSocketAddress(bindAddress, port));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Scoring server listening on http://" + bindAddress.getHostAddress() + ":" + server.getPort());
+    }
+}
@@ -0,0 +1,209 @@
+package csci2020u.assignment01;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * ShardedTrainer trains on a corpus split across several processes, for corpora too large to
+ * read in one JVM in reasonable time. Each worker process counts one shard of the files (see
+ * SpamDetector.countShard()) and writes a TrainingPartial; the partials are then merged and the
+ * model is built from the total counts. The model is the same as SpamDetector.train() on all the
+ * files would build, except that with a ModelBudget limiting the number of words, which of the
+ * words tied at the cut-off are kept may differ.
+
+ * The steps can also be run by hand, for example on different machines, and because merging is
+ * associative, partials can be merged in a tree:
+ *   ShardedTrainer count shard=0 shards=4 out=part0.bin ham=data/train/ham spam=data/train/spam
+ *   ShardedTrainer merge out=part01.bin part0.bin part1.bin
+ *   ShardedTrainer build out=model.bin part01.bin part23.bin
+ * or all at once with local processes:
+ *   ShardedTrainer train processes=4 out=model.bin ham=data/train/ham spam=data/train/spam
+ */
+public final class ShardedTrainer {
+    private ShardedTrainer() {
+    }
+
+    /*
+     * Counts a corpus in worker processes on this machine, one shard each, and merges their partials.
+     * The workers run this class with the same Java executable, class path and heap size limit.
+     *
+     * @param sources       Directories of emails and their labels.
+     * @param processes     The number of worker processes, which is also the number of shards.
+     * @param tokenization  How to split the emails into words.
+     * @param workDirectory Where the workers write their partials; they are deleted once merged.
+     * @return The counts of the whole corpus.
+     * @throws IOException If a worker cannot be started or fails.
+     */
+
+    public static TrainingPartial countInProcesses(Map<Path, Label> sources, int processes, Tokenization tokenization,
+                                                   Path workDirectory) throws IOException, InterruptedException {
+        if (processes < 1) {
+            throw new IllegalArgumentException("At least one process is needed: " + processes);
+        }
+        String java = ProcessHandle.current().info().command()
+                .orElse(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        List<String> jvmOptions = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(option -> option.startsWith("-Xmx"))
+                .toList();
+
+        List<Path> partials = new ArrayList<>();
+        List<Process> workers = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < processes; shard++) {
+                Path partial = workDirectory.resolve("partial-" + shard + ".bin");
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(jvmOptions);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardedTrainer.class.getName());
+                command.add("count");
+                command.add("shard=" + shard);
+                command.add("shards=" + processes);
+                command.add("out=" + partial);
+                command.add("tokenization=" + tokenization);
+                for (Map.Entry<Path, Label> source : sources.entrySet()) {
+                    command.add(source.getValue().name().toLowerCase() + "=" + source.getKey());
+                }
+                workers.add(new ProcessBuilder(command).inheritIO().start());
+                partials.add(partial);
+            }
+            for (int shard = 0; shard < workers.size(); shard++) {
+                int status = workers.get(shard).waitFor();
+                if (status != 0) {
+                    throw new IOException("Worker for shard " + shard + " exited with status " + status);
+                }
+            }
+            return TrainingPartial.merge(partials);
+        } finally {
+            for (Process worker : workers) {
+                worker.destroy();
+            }
+            for (Path partial : partials) {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+
+    /*
+     * Runs one step of sharded training from the command line.
+     *
+     * Usage: ShardedTrainer count shard=<i> shards=<n> out=<partial> ham=<directory>... spam=<directory>...
+     *                             [tokenization=PLAIN|MIME] [threads=1]
+     *        ShardedTrainer merge out=<partial> <partial>...
+     *        ShardedTrainer build out=<model> [smoothing=500] <partial>...
+     *        ShardedTrainer train out=<model> [processes=<cores>] ham=<directory>... spam=<directory>...
+     *                             [tokenization=PLAIN|MIME] [smoothing=500]
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            usage();
+        }
+        Map<Path, Label> sources = new LinkedHashMap<>();
+        List<Path> partials = new ArrayList<>();
+        Path out = null;
+        int shard = -1;
+        int shards = 0;
+        int processes = Runtime.getRuntime().availableProcessors();
+        int threads = 1;
+        double smoothing = 500.0;
+        Tokenization tokenization = Tokenization.PLAIN;
+
+        for (String arg : List.of(args).subList(1, args.length)) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                partials.add(Paths.get(arg));
+                continue;
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "ham" -> sources.put(Paths.get(value), Label.HAM);
+                case "spam" -> sources.put(Paths.get(value), Label.SPAM);
+                case "out" -> out = Paths.get(value);
+                case "shard" -> shard = Integer.parseInt(value);
+                case "shards" -> shards = Integer.parseInt(value);
+                case "processes" -> processes = Integer.parseInt(value);
+                case "threads" -> threads = Integer.parseInt(value);
+                case "smoothing" -> smoothing = Double.parseDouble(value);
+                case "tokenization" -> tokenization = Tokenization.valueOf(value.toUpperCase());
+                default -> {
+                    System.err.println("Unknown option: " + key);
+                    System.exit(2);
+                }
+            }
+        }
+        if (out == null) {
+            usage();
+        }
+
+        long start = System.nanoTime();
+        switch (args[0]) {
+            case "count" -> {
+                if (sources.isEmpty()) {
+                    usage();
+                }
+                SpamDetector detector = new SpamDetector();
+                detector.setTokenization(tokenization);
+                detector.setTrainingParallelism(threads);
+                TrainingPartial partial = detector.countShard(sources, shard, shards);
+                partial.write(out);
+                System.out.printf("Shard %d of %d: %d ham and %d spam files, %d words in %d ms%n", shard, shards,
+                        partial.getNumHamFiles(), partial.getNumSpamFiles(), partial.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            case "merge" -> {
+                if (partials.isEmpty()) {
+                    usage();
+                }
+                TrainingPartial.merge(partials).write(out);
+            }
+            case "build" -> {
+                if (partials.isEmpty()) {
+                    usage();
+                }
+                build(TrainingPartial.merge(partials), smoothing, out);
+            }
+            case "train" -> {
+                if (sources.isEmpty()) {
+                    usage();
+                }
+                Path workDirectory = Files.createTempDirectory(out.toAbsolutePath().getParent(), "partials");
+                try {
+                    build(countInProcesses(sources, processes, tokenization, workDirectory), smoothing, out);
+                } finally {
+                    Files.deleteIfExists(workDirectory);
+                }
+                System.out.printf("Trained %s with %d processes in %d ms%n", out, processes,
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            default -> usage();
+        }
+    }
+
+    private static void build(TrainingPartial partial, double smoothing, Path modelFile) throws IOException {
+        SpamDetector detector = new SpamDetector();
+        detector.setTokenization(partial.getTokenization());
+        detector.setSmoothingFactor(smoothing);
+        detector.train(partial);
+        detector.save(modelFile);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: ShardedTrainer count shard=<i> shards=<n> out=<partial> ham=<dir>... spam=<dir>... "
+                + "[tokenization=PLAIN|MIME] [threads=1]");
+        System.err.println("       ShardedTrainer merge out=<partial> <partial>...");
+        System.err.println("       ShardedTrainer build out=<model> [smoothing=500] <partial>...");
+        System.err.println("       ShardedTrainer train out=<model> [processes=<cores>] ham=<dir>... spam=<dir>... "
+                + "[tokenization=PLAIN|MIME] [smoothing=500]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,135 @@
+package csci2020u.assignment01;
+
+/*
+ * SketchModel is a SpamModel whose word counts come from a count-min sketch, so it takes the same
+ * memory however many words were trained. It is built by SpamDetector when its ModelBudget asks
+ * for a sketch.
+
+ * The model does not know its words, only their hashes: a word ID is the sketch key of the word,
+ * any word whose counters are all 0 is unknown, and probabilities are computed from the estimated
+ * counts on every lookup. word() and addCountsTo() are therefore not supported, and a sketch model
+ * cannot be saved or layered under an OverlayModel; withFile() learns into a copy of the sketch instead.
+
+ * A sketch model is immutable and safe to share between threads.
+ */
+public final class SketchModel implements SpamModel {
+    private final CountMinSketch sketch;
+    private final int numHamFiles;
+    private final int numSpamFiles;
+    private final double smoothingFactor;
+
+    SketchModel(CountMinSketch sketch, int numHamFiles, int numSpamFiles, double smoothingFactor) {
+        this.sketch = sketch;
+        this.numHamFiles = numHamFiles;
+        this.numSpamFiles = numSpamFiles;
+        this.smoothingFactor = smoothingFactor;
+    }
+
+    /*
+     * Returns a new model in which one file is added to (learned) or removed from (unlearned) the counts.
+     * The sketch is copied, so this takes time proportional to the sketch size.
+     *
+     * @param fileWords The distinct words of the file.
+     * @param label     The class of the file.
+     * @param change    +1 to learn the file, -1 to unlearn it.
+     * @throws IllegalArgumentException If the model contains no file of that class to unlearn.
+     */
+
+    public SketchModel withFile(TokenTable fileWords, Label label, int change) {
+        if (change != 1 && change != -1) {
+            throw new IllegalArgumentException("Change must be +1 or -1: " + change);
+        }
+        boolean spam = label == Label.SPAM;
+        if ((spam ? numSpamFiles : numHamFiles) + change < 0) {
+            throw new IllegalArgumentException("The model contains no " + label.getClassName() + " files to unlearn");
+        }
+
+        CountMinSketch changed = sketch.copy();
+        for (int i = 0; i < fileWords.size(); i++) {
+            changed.add(CountMinSketch.key(fileWords.hash(i)), spam ? 0 : change, spam ? change : 0);
+        }
+        return new SketchModel(changed, numHamFiles + (spam ? 0 : change), numSpamFiles + (spam ? change : 0),
+                smoothingFactor);
+    }
+
+    // Same counts, probabilities computed with another smoothing factor
+    SketchModel withSmoothingFactor(double smoothingFactor) {
+        return new SketchModel(sketch, numHamFiles, numSpamFiles, smoothingFactor);
+    }
+
+    // A modifiable copy of the counts
+    CountMinSketch copySketch() {
+        return sketch.copy();
+    }
+
+    public int sizeInBytes() {
+        return sketch.sizeInBytes();
+    }
+
+    @Override
+    public int numHamFiles() {
+        return numHamFiles;
+    }
+
+    @Override
+    public int numSpamFiles() {
+        return numSpamFiles;
+    }
+
+    @Override
+    public double smoothingFactor() {
+        return smoothingFactor;
+    }
+
+    // Word IDs are sketch keys, so every non-negative int may be one
+    @Override
+    public int size() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int find(String word) {
+        return find(word.hashCode());
+    }
+
+    @Override
+    public int find(byte[] token, int length, int hash) {
+        return find(hash);
+    }
+
+    @Override
+    public int find(TokenTable words, int wordId) {
+        return find(words.hash(wordId));
+    }
+
+    private int find(int hash) {
+        int key = CountMinSketch.key(hash);
+        return sketch.hamCount(key) != 0 || sketch.spamCount(key) != 0 ? key : -1;
+    }
+
+    @Override
+    public String word(int id) {
+        throw new UnsupportedOperationException("A count sketch does not store words");
+    }
+
+    @Override
+    public int hamCount(int id) {
+        return sketch.hamCount(id);
+    }
+
+    @Override
+    public int spamCount(int id) {
+        return sketch.spamCount(id);
+    }
+
+    @Override
+    public double spamProbability(int id) {
+        return SpamModel.estimateSpamProbability(sketch.spamCount(id), sketch.hamCount(id),
+                numSpamFiles, numHamFiles, smoothingFactor);
+    }
+
+    @Override
+    public void addCountsTo(Vocabulary counts) {
+        throw new UnsupportedOperationException("A count sketch does not store words");
+    }
+}
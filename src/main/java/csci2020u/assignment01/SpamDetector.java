@@ -1,7 +1,21 @@
 package csci2020u.assignment01;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /*
  * SpamDetector is a classifier that uses a Naive Bayes model
@@ -11,132 +25,863 @@ import java.util.*;
  * - Trains using a dataset of labeled spam/ham emails.
  * - Computes word probabilities based on training data.
  * - Classifies test emails and calculates accuracy & precision.
+
+ * Observability: training and scoring update lock-free counters and a latency histogram, readable
+ * with getMetrics(), over JMX (registerMBean()) or through a MetricsReporter, and emit JFR events
+ * per training directory, model build and classified directory or batch (see DetectorEvents).
+
+ * Thread safety: score() may be called from any number of threads at once. It reads the current
+ * model once and never blocks or modifies the detector; updates (train, learn, unlearn) build a new
+ * immutable model and publish it with a single volatile write. The one exception is the score cache,
+ * off by default: with it on, score(byte[]) takes one of its striped locks for a map lookup.
  */
 
 public class SpamDetector {
-    // Stores word frequencies for ham emails
-    private TreeMap<String, Integer> trainHamFreq;
+    // Learned changes are folded into a fresh model once this many words differ from it
+    private static final int MAX_OVERLAY_WORDS = 8192;
+
+    // The model used for classification: word counts, probabilities and file totals.
+    // Models are immutable; every update publishes a new one, so readers always see a consistent snapshot.
+    private volatile SpamModel model;
+
+    // Serializes model updates (training, learning, recomputing probabilities)
+    private final Object updateLock = new Object();
+
+    // Added to the number of training files when estimating word likelihoods
+    private volatile double smoothingFactor;
+
+    // Number of worker threads used while training (1 = train on the calling thread)
+    private volatile int trainingParallelism;
+
+    // Bounds on the words and bytes considered when scoring one email (NONE = whole email)
+    private volatile ScoringLimits scoringLimits;
+
+    // How emails are split into words, for training and classification alike
+    private volatile Tokenization tokenization;
+
+    // Bounds on the words kept by training, or a fixed-size count sketch (UNLIMITED = every word)
+    private volatile ModelBudget modelBudget;
+
+    // Phrase and blocklist rules matched while scoring (NONE = no rules); replaced as a whole
+    private volatile SpamRules rules;
+
+    // Scores of recently scored messages by content hash, or null if caching is off
+    private volatile ScoreCache scoreCache;
 
-    // Stores word frequencies for spam emails
-    private TreeMap<String, Integer> trainSpamFreq;
+    // Counters and latency histogram updated by training and scoring
+    private final DetectorMetrics metrics = new DetectorMetrics();
 
-    // Stores the probability of a word appearing in a spam email
-    private TreeMap<String, Double> spamWordProbabilities;
+    // List of classified test emails with spam probability, replaced as a whole after each run
+    private volatile List<TestFile> classifiedEmails;
 
-    private int numHamFiles;
-    private int numSpamFiles;
+    // Per-thread tokenizer and word table reused by score()
+    private static final ThreadLocal<ScoringBuffers> SCORING_BUFFERS = ThreadLocal.withInitial(ScoringBuffers::new);
 
-    // List of classified test emails with spam probability
-    private List<TestFile> classifiedEmails;
+    // Buffers lent to virtual threads, which usually score a single message each, so thread-local
+    // buffers would be allocated per message; bounded so an idle detector holds few of them
+    private static final BlockingQueue<ScoringBuffers> VIRTUAL_THREAD_BUFFERS =
+            new ArrayBlockingQueue<>(Math.max(16, 2 * Runtime.getRuntime().availableProcessors()));
 
     /*
-     * Constructor initializes frequency maps and counters.
+     * Constructor initializes an empty model and the default settings.
      */
 
     public SpamDetector() {
-        trainHamFreq = new TreeMap<>();
-        trainSpamFreq = new TreeMap<>();
-        spamWordProbabilities = new TreeMap<>();
-        numHamFiles = 0;
-        numSpamFiles = 0;
+        classifiedEmails = List.of();
+        smoothingFactor = 500.0; // Increase smoothing to significantly reduce extreme values
+        trainingParallelism = 1;
+        scoringLimits = ScoringLimits.NONE;
+        tokenization = Tokenization.PLAIN;
+        modelBudget = ModelBudget.UNLIMITED;
+        scoreCache = null; // off until setScoreCacheSize()
+        rules = SpamRules.NONE;
+        model = VocabularyModel.train(new Vocabulary(16), 0, 0, smoothingFactor);
+    }
+
+    /*
+     * Creates a spam detector that classifies with a model saved by save().
+     * The model file is memory-mapped rather than read into the heap, so this takes
+     * milliseconds regardless of the model size. Learning on the returned detector layers the
+     * changes over the mapped file; training it copies the counts into the heap.
+     *
+     * @param modelFile The model file.
+     * @return A detector ready to classify emails.
+     * @throws IOException If the file cannot be read or is not a valid model file.
+     */
+
+    public static SpamDetector load(Path modelFile) throws IOException {
+        SpamDetector detector = new SpamDetector();
+        MappedModel loaded = MappedModel.open(modelFile);
+        detector.model = loaded;
+        detector.smoothingFactor = loaded.smoothingFactor();
+        detector.tokenization = loaded.tokenization();
+        return detector;
+    }
+
+    /*
+     * Saves the trained model (vocabulary, counts, probabilities, file totals, smoothing factor
+     * and tokenization) to a versioned binary file that load() can map.
+     *
+     * @param modelFile The file to create or replace.
+     * @throws IllegalStateException If the model is a count sketch, which has no words to save.
+     */
+
+    public void save(Path modelFile) throws IOException {
+        SpamModel current = model;
+        if (current instanceof SketchModel) {
+            throw new IllegalStateException("A count sketch model cannot be saved");
+        }
+        if (current instanceof OverlayModel overlay) {
+            current = overlay.compact();
+        }
+        MappedModel.write(modelFile, current, tokenization);
+    }
+
+    /*
+     * Sets the smoothing factor added to the number of training files when word probabilities
+     * are computed. It takes effect the next time probabilities are computed.
+     *
+     * @param smoothingFactor A non-negative smoothing factor (default 500).
+     */
+
+    public void setSmoothingFactor(double smoothingFactor) {
+        if (!(smoothingFactor >= 0)) {
+            throw new IllegalArgumentException("Smoothing factor must be non-negative: " + smoothingFactor);
+        }
+        this.smoothingFactor = smoothingFactor;
+    }
+
+    public double getSmoothingFactor() {
+        return smoothingFactor;
+    }
+
+    /*
+     * Sets how many worker threads train() may use.
+     * With more than one worker, each worker counts words into its own local table
+     * and the tables are merged once all files are processed, so the resulting model
+     * is identical to a sequential run.
+     *
+     * @param parallelism The number of worker threads (at least 1).
+     */
+
+    public void setTrainingParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Training parallelism must be at least 1: " + parallelism);
+        }
+        trainingParallelism = parallelism;
+    }
+
+    public int getTrainingParallelism() {
+        return trainingParallelism;
+    }
+
+    /*
+     * Sets how much of each email score() and classifyTestEmails() look at.
+     * With a word limit, only the most informative words are combined and reading can stop early,
+     * so scoring time depends on the limits rather than on the size of the email.
+     *
+     * @param limits The limits, or ScoringLimits.NONE to score whole emails (the default).
+     */
+
+    public void setScoringLimits(ScoringLimits limits) {
+        scoringLimits = Objects.requireNonNull(limits);
+    }
+
+    public ScoringLimits getScoringLimits() {
+        return scoringLimits;
+    }
+
+    /*
+     * Sets how emails are split into words. MIME tokenization reads headers and MIME parts separately,
+     * decodes text parts and skips attachments, which gives a smaller vocabulary and faster training
+     * and scoring. Words of the two tokenizations differ, so set this before training; a model trained
+     * with one tokenization classifies poorly with the other. load() restores the saved tokenization.
+     *
+     * @param tokenization PLAIN (the default) or MIME.
+     */
+
+    public void setTokenization(Tokenization tokenization) {
+        this.tokenization = Objects.requireNonNull(tokenization);
+    }
+
+    public Tokenization getTokenization() {
+        return tokenization;
+    }
+
+    /*
+     * Sets how much of the training vocabulary the model keeps. It takes effect the next time the
+     * model is built by train() or computeWordProbabilities(). Pruned words score like unknown words,
+     * and unlearning ignores them. Once the model is a count sketch it stays one, with the size it was
+     * created with: later training adds to the sketch.
+     *
+     * @param budget The bounds, or ModelBudget.UNLIMITED to keep every word (the default).
+     */
+
+    public void setModelBudget(ModelBudget budget) {
+        modelBudget = Objects.requireNonNull(budget);
+    }
+
+    public ModelBudget getModelBudget() {
+        return modelBudget;
+    }
+
+    /*
+     * Sets the phrase and blocklist rules matched while emails are scored. The weights of the rules an
+     * email matches are added to its log-odds after its word weights are combined, so a rule counts
+     * the same in a short email as in a long one. The rules are replaced in one step: an email being
+     * scored uses either the old or the new rules, never a mix, and scores cached with the old rules
+     * are not reused.
+     *
+     * @param rules The compiled rules, or SpamRules.NONE (the default) to score with words only.
+     */
+
+    public void setRules(SpamRules rules) {
+        this.rules = Objects.requireNonNull(rules);
+    }
+
+    public SpamRules getRules() {
+        return rules;
+    }
+
+    /*
+     * Sets how many message scores classifyAll() and score(byte[]) remember. Messages are matched
+     * by a SHA-256 digest of their bytes; with MIME tokenization, which does not score them, per-delivery headers
+     * such as Received and Message-ID are left out (see ContentHash), so every copy of a bulk message
+     * gets the score of the first copy scored. A cached score is always the score the message would get.
+     * The cache is emptied whenever the model or the scoring settings change.
+     * Setting the size replaces the cache, resetting its counters.
+     *
+     * The cache is worth turning on for streams with many copies of the same message, such as bulk
+     * mail. It is split into shards with a lock each (see ScoreCache), so concurrent scoring threads
+     * rarely wait for each other, but unlike scoring without it, they may.
+     *
+     * @param entries The number of scores to keep, or 0 (the default) to turn caching off.
+     */
+
+    public void setScoreCacheSize(int entries) {
+        if (entries < 0) {
+            throw new IllegalArgumentException("Score cache size must not be negative: " + entries);
+        }
+        scoreCache = entries > 0 ? new ScoreCache(entries) : null;
+    }
+
+    public int getScoreCacheSize() {
+        ScoreCache cache = scoreCache;
+        return cache != null ? cache.stats().getCapacity() : 0;
+    }
+
+    // Hit, miss and eviction counters of the score cache; all 0 while caching is off
+    public CacheStats getScoreCacheStats() {
+        ScoreCache cache = scoreCache;
+        return cache != null ? cache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    /*
+     * Returns the detector's metrics: files and bytes read, words produced, training speed,
+     * scoring latency percentiles, unknown word rate, model size and score cache counters.
+     * Metrics are always collected; reading them does not block training or scoring.
+     */
+
+    public MetricsSnapshot getMetrics() {
+        return new MetricsSnapshot(metrics, model, getScoreCacheStats());
+    }
+
+    /*
+     * Registers the detector's metrics with the platform MBean server, so JConsole, VisualVM or
+     * a JMX exporter can read them. Unregister the returned name when the detector is discarded.
+     *
+     * @param name Tells detectors in the same JVM apart, e.g. "default".
+     * @return The name the MXBean was registered under, csci2020u.assignment01:type=SpamDetector,name=<name>.
+     * @throws JMException If the name is invalid or already registered.
+     */
+
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("csci2020u.assignment01:type=SpamDetector,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new DetectorMonitor(this), objectName);
+        return objectName;
+    }
+
+    /*
+     * Calls a reporter with a snapshot of the metrics at a fixed interval, on a daemon thread,
+     * until the returned handle is closed. A reporter that throws is logged and keeps being called.
+     *
+     * @param reporter Receives the snapshots, e.g. MetricsReporter.printingTo(System.out).
+     * @param interval Time between reports.
+     */
+
+    public MetricsReporter.Handle startMetricsReporter(MetricsReporter reporter, Duration interval) {
+        Objects.requireNonNull(reporter);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "spam-detector-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                reporter.report(getMetrics());
+            } catch (RuntimeException e) {
+                System.err.println("Metrics reporter failed: " + e);
+            }
+        }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        return executor::shutdownNow;
     }
 
     /*
      * Trains the spam detector using a provided training directory.
      * It reads ham and spam emails, counts word occurrences,
      * and computes the probability of words appearing in spam messages.
+     * The counts are added to those already in the model.
      *
      * @param trainDir The directory containing 'ham' and 'spam' subfolders.
      */
 
     public void train(File trainDir) {
+        train(trainDir, ProgressListener.NONE);
+    }
+
+    /*
+     * Trains the spam detector like train(File), reporting each file read to a listener.
+     * If the listener throws, training stops and the model is left unchanged.
+     *
+     * @param trainDir The directory containing 'ham' and 'spam' subfolders.
+     * @param listener Told how many of the training files have been read.
+     */
+
+    public void train(File trainDir, ProgressListener listener) {
+        Map<Path, Label> sources = new LinkedHashMap<>();
         File hamDir = new File(trainDir, "ham");
         File spamDir = new File(trainDir, "spam");
-
-        // If ham directory exists, process its files
+        // A missing ham or spam directory is skipped
         if (hamDir.exists()) {
-            processTrainingFiles(hamDir, trainHamFreq);
-            numHamFiles = hamDir.listFiles().length;
+            sources.put(hamDir.toPath(), Label.HAM);
         }
-
-        // If spam directory exists, process its files
         if (spamDir.exists()) {
-            processTrainingFiles(spamDir, trainSpamFreq);
-            numSpamFiles = spamDir.listFiles().length;
+            sources.put(spamDir.toPath(), Label.SPAM);
         }
+        train(sources, null, listener);
+    }
 
-        // Compute word probabilities after processing files
-        computeWordProbabilities();
+    /*
+     * Trains the spam detector on any number of labeled directories, for example train/ham,
+     * train/ham2 and train/spam. Every file of a directory counts as one training file of its label;
+     * subdirectories and files that cannot be read are skipped, with or without a cache.
+     * The counts are added to those already in the model.
+     *
+     * With a cache, only files that are new or changed since the cache last saw them are read; the
+     * rest are counted from their cached words, and the cache is updated (call its save() to keep it).
+     * Files are then read on the calling thread, since retraining mostly reads the cache.
+     *
+     * @param sources Directories of emails and their labels, read in iteration order.
+     * @param cache   Words of files read before, or null to read every file.
+     * @throws IllegalArgumentException If a source is not a readable directory.
+     */
+
+    public void train(Map<Path, Label> sources, CorpusCache cache) {
+        train(sources, cache, ProgressListener.NONE);
+    }
+
+    /*
+     * Trains the spam detector like train(Map, CorpusCache), reporting each file read to a listener.
+     * If the listener throws, training stops and the model is left unchanged; the cache keeps the
+     * files read so far.
+     */
+
+    public void train(Map<Path, Label> sources, CorpusCache cache, ProgressListener listener) {
+        // List each directory once, so the progress total and the file counts agree with what is read
+        Map<Path, File[]> listings = listSources(sources);
+        int total = 0;
+        for (File[] files : listings.values()) {
+            total += files.length;
+        }
+        FileProgress progress = new FileProgress(listener, total);
+
+        synchronized (updateLock) {
+            long start = System.nanoTime();
+            SpamModel current = model;
+            Tokenization mode = tokenization;
+            // A sketch model only gets the counts of the new files; they are added to its sketch
+            Vocabulary counts = current instanceof SketchModel ? new Vocabulary() : new Vocabulary(current.size());
+            if (!(current instanceof SketchModel)) {
+                current.addCountsTo(counts);
+            }
+            int numHamFiles = current.numHamFiles();
+            int numSpamFiles = current.numSpamFiles();
+
+            if (cache != null) {
+                FileTotals counted = countCachedFiles(listings, sources, cache, counts, mode, progress);
+                numHamFiles += counted.ham();
+                numSpamFiles += counted.spam();
+            } else {
+                for (Map.Entry<Path, File[]> listing : listings.entrySet()) {
+                    boolean spam = sources.get(listing.getKey()) == Label.SPAM;
+                    int counted = processTrainingFiles(listing.getKey().toFile(), listing.getValue(), counts, spam,
+                            mode, progress);
+                    if (spam) {
+                        numSpamFiles += counted;
+                    } else {
+                        numHamFiles += counted;
+                    }
+                }
+            }
+
+            // Compute word probabilities after processing files
+            model = buildModel(current, counts, numHamFiles, numSpamFiles);
+            metrics.trainingNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * Counts one shard of a corpus without changing the model, for training in several processes
+     * (see ShardedTrainer). Each entry of the source directories belongs to the shard given by the hash
+     * of its absolute path, so shards 0 to shardCount - 1 together count every file exactly once, and
+     * merging their partials and training on the result gives the same model as train(sources, null).
+     *
+     * @param sources    Directories of emails and their labels.
+     * @param shard      The shard to count, from 0 to shardCount - 1.
+     * @param shardCount The number of shards the corpus is split into.
+     * @return The counts of the shard's files, with this detector's tokenization.
+     * @throws IllegalArgumentException If the shard is out of range or a source is not a readable directory.
+     */
+
+    public TrainingPartial countShard(Map<Path, Label> sources, int shard, int shardCount) {
+        if (shardCount < 1 || shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("Shard " + shard + " of " + shardCount + " does not exist");
+        }
+        Tokenization mode = tokenization;
+        Vocabulary counts = new Vocabulary();
+        FileProgress progress = new FileProgress(ProgressListener.NONE, 0);
+        int numHamFiles = 0;
+        int numSpamFiles = 0;
+        for (Map.Entry<Path, File[]> listing : listSources(sources).entrySet()) {
+            File[] files = Arrays.stream(listing.getValue())
+                    .filter(file -> shardOf(file, shardCount) == shard)
+                    .toArray(File[]::new);
+            boolean spam = sources.get(listing.getKey()) == Label.SPAM;
+            int counted = processTrainingFiles(listing.getKey().toFile(), files, counts, spam, mode, progress);
+            if (spam) {
+                numSpamFiles += counted;
+            } else {
+                numHamFiles += counted;
+            }
+        }
+        return new TrainingPartial(mode, counts, numHamFiles, numSpamFiles);
+    }
+
+    // String.hashCode() of the absolute path is the same in every process, unlike the file's identity hash
+    private static int shardOf(File file, int shardCount) {
+        return Math.floorMod(TokenTable.spread(file.getAbsoluteFile().toPath().normalize().toString().hashCode()),
+                shardCount);
+    }
+
+    /*
+     * Adds the counts of a partial, usually the merged partials of every shard, to the model and
+     * recomputes the word probabilities.
+     *
+     * @param partial Counts made by countShard() or merged with TrainingPartial.merge().
+     * @throws IllegalArgumentException If the partial was counted with another tokenization than this detector's.
+     */
+
+    public void train(TrainingPartial partial) {
+        synchronized (updateLock) {
+            if (partial.getTokenization() != tokenization) {
+                throw new IllegalArgumentException("The partial was counted with " + partial.getTokenization()
+                        + " tokenization, but the detector uses " + tokenization);
+            }
+            long start = System.nanoTime();
+            SpamModel current = model;
+            Vocabulary counts;
+            if (current instanceof SketchModel) {
+                counts = new Vocabulary(partial.size()); // only the new counts, added to the sketch
+            } else {
+                counts = new Vocabulary(current.size() + partial.size());
+                current.addCountsTo(counts);
+            }
+            counts.addAll(partial.counts());
+            model = buildModel(current, counts, current.numHamFiles() + partial.getNumHamFiles(),
+                    current.numSpamFiles() + partial.getNumSpamFiles());
+            metrics.trainingNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // Lists each source directory once
+    private static Map<Path, File[]> listSources(Map<Path, Label> sources) {
+        Map<Path, File[]> listings = new LinkedHashMap<>();
+        for (Path directory : sources.keySet()) {
+            File[] files = directory.toFile().listFiles();
+            if (files == null) {
+                throw new IllegalArgumentException("Not a readable directory: " + directory);
+            }
+            listings.put(directory, files);
+        }
+        return listings;
+    }
+
+    /*
+     * Counts the training files through a cache: each file's word IDs come from the cache, which
+     * reads only new or changed files. The files containing each word are counted in arrays indexed
+     * by the cache's word IDs, and each word is added to the vocabulary once at the end.
+     *
+     * @return The number of ham and spam files counted.
+     */
+
+    private FileTotals countCachedFiles(Map<Path, File[]> listings, Map<Path, Label> sources, CorpusCache cache,
+                                  Vocabulary counts, Tokenization mode, FileProgress progress) {
+        MessageTokenizer tokenizer = mode.newTokenizer();
+        CorpusCache.WordReader reader = (file, words) -> extractWordsFromFile(file, tokenizer, words);
+
+        // Look every file up first: reading a new file adds words to the cache's dictionary
+        List<int[]> hamFiles = new ArrayList<>();
+        List<int[]> spamFiles = new ArrayList<>();
+        for (Map.Entry<Path, File[]> listing : listings.entrySet()) {
+            DetectorEvents.TrainDirectory event = new DetectorEvents.TrainDirectory();
+            event.begin();
+            boolean spam = sources.get(listing.getKey()) == Label.SPAM;
+            for (File file : listing.getValue()) {
+                if (file.isFile()) {
+                    int[] wordIds = cache.wordIds(file, mode, reader);
+                    if (wordIds != null) {
+                        (spam ? spamFiles : hamFiles).add(wordIds);
+                    }
+                }
+                progress.fileDone();
+            }
+            metrics.trainingFiles.add(listing.getValue().length);
+            if (event.shouldCommit()) {
+                event.directory = listing.getKey().toString();
+                event.spam = spam;
+                event.files = listing.getValue().length;
+                event.parallelism = 1;
+                event.commit();
+            }
+        }
+
+        TokenTable words = cache.words();
+        int[] hamCounts = new int[words.size()];
+        int[] spamCounts = new int[words.size()];
+        for (int[] wordIds : hamFiles) {
+            for (int id : wordIds) {
+                hamCounts[id]++;
+            }
+        }
+        for (int[] wordIds : spamFiles) {
+            for (int id : wordIds) {
+                spamCounts[id]++;
+            }
+        }
+        for (int id = 0; id < words.size(); id++) {
+            if (hamCounts[id] != 0 || spamCounts[id] != 0) {
+                counts.addCounts(counts.intern(words, id), hamCounts[id], spamCounts[id]);
+            }
+        }
+        return new FileTotals(hamFiles.size(), spamFiles.size());
+    }
+
+    // Numbers of ham and spam training files counted
+    private record FileTotals(int ham, int spam) {
+    }
+
+    /*
+     * Builds the model for a set of counts under the current budget and smoothing factor.
+     *
+     * @param current The model being replaced; if it is a sketch model, the counts are added to its sketch.
+     * @param counts  All word counts, or only the new ones if current is a sketch model.
+     */
+
+    private SpamModel buildModel(SpamModel current, Vocabulary counts, int numHamFiles, int numSpamFiles) {
+        DetectorEvents.BuildModel event = new DetectorEvents.BuildModel();
+        event.begin();
+        ModelBudget budget = modelBudget;
+        CountMinSketch sketch = null;
+        if (current instanceof SketchModel sketchModel) {
+            sketch = sketchModel.copySketch();
+        } else if (budget.usesSketch()) {
+            sketch = new CountMinSketch(budget.getSketchBytes());
+        }
+
+        SpamModel built;
+        if (sketch != null) {
+            sketch.addAll(counts);
+            built = new SketchModel(sketch, numHamFiles, numSpamFiles, smoothingFactor);
+            event.words = -1;
+            event.sketchBytes = sketch.sizeInBytes();
+        } else {
+            if (budget.isPruning()) {
+                counts = counts.pruned(budget.getMinCount(), budget.getMaxWords());
+            }
+            built = VocabularyModel.train(counts, numHamFiles, numSpamFiles, smoothingFactor);
+            event.words = built.size();
+        }
+        event.modelType = built.getClass().getSimpleName();
+        event.commit();
+        return built;
+    }
+
+    /*
+     * Adds one email to the model, as if it had been in the training directory of its class.
+     * Only the counts of the words in the email change, so this takes time proportional to the email size.
+     * Classification running at the same time keeps using the model from before the update.
+     *
+     * @param message The raw email, UTF-8 encoded. The stream is not closed.
+     * @param label   The class of the email.
+     */
+
+    public void learn(InputStream message, Label label) throws IOException {
+        updateModel(extractWords(message), label, 1);
+    }
+
+    public void learn(CharSequence message, Label label) {
+        updateModel(extractWords(message), label, 1);
+    }
+
+    /*
+     * Removes an email previously added by learn() or train() with the same label, for example
+     * after a user reclassifies it.
+     *
+     * @param message The raw email, UTF-8 encoded. The stream is not closed.
+     * @param label   The class the email was learned as.
+     * @throws IllegalArgumentException If the model cannot contain the email with that label.
+     */
+
+    public void unlearn(InputStream message, Label label) throws IOException {
+        updateModel(extractWords(message), label, -1);
+    }
+
+    public void unlearn(CharSequence message, Label label) {
+        updateModel(extractWords(message), label, -1);
+    }
+
+    private void updateModel(TokenTable words, Label label, int change) {
+        synchronized (updateLock) {
+            SpamModel current = model;
+            if (current instanceof SketchModel sketchModel) {
+                model = sketchModel.withFile(words, label, change);
+                return;
+            }
+
+            boolean pruning = modelBudget.isPruning();
+            if (pruning && change < 0) {
+                words = withoutUnknownWords(words, current); // pruned words have no counts to unlearn
+            }
+            OverlayModel updated = OverlayModel.over(current).withFile(words, label, change);
+            if (updated.deltaSize() <= MAX_OVERLAY_WORDS) {
+                model = updated;
+            } else if (pruning) {
+                // Prune again when folding, so learning cannot grow the model past the budget either
+                Vocabulary counts = new Vocabulary(updated.size());
+                updated.addCountsTo(counts);
+                model = buildModel(updated, counts, updated.numHamFiles(), updated.numSpamFiles());
+            } else {
+                model = updated.compact();
+            }
+        }
+    }
+
+    private static TokenTable withoutUnknownWords(TokenTable words, SpamModel model) {
+        TokenTable known = new TokenTable(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            if (model.find(words, i) >= 0) {
+                known.intern(words, i);
+            }
+        }
+        return known;
+    }
+
+    TokenTable extractWords(InputStream message) throws IOException {
+        TokenTable words = new TokenTable(1024);
+        tokenization.newTokenizer().tokenize(message, words::intern);
+        return words;
+    }
+
+    private TokenTable extractWords(CharSequence message) {
+        TokenTable words = new TokenTable(1024);
+        tokenization.newTokenizer().tokenize(message, words::intern);
+        return words;
     }
 
     /*
      * Processes a directory containing training emails (ham/spam),
-     * extracts words from each email, and updates the word frequency map.
+     * extracts words from each email, and updates the ham or spam word counts.
      *
-     * @param directory    The directory containing email files.
-     * @param wordFreqMap  The frequency map to update (ham or spam).
+     * @param directory The directory containing email files.
+     * @param files     The entries of the directory.
+     * @param counts    The word counts to update.
+     * @param spam      Whether the directory holds spam (true) or ham (false) emails.
+     * @param mode      How to split the emails into words.
+     * @param progress  Counts the files read.
+     * @return The number of files counted; entries that are not files or cannot be read are skipped.
      */
 
-    private void processTrainingFiles(File directory, TreeMap<String, Integer> wordFreqMap) {
-        for (File file : directory.listFiles()) {
-            if (file.isFile()) {
-                Set<String> uniqueWords = extractWordsFromFile(file);
-                for (String word : uniqueWords) {
-                    wordFreqMap.put(word, wordFreqMap.getOrDefault(word, 0) + 1);
+    private int processTrainingFiles(File directory, File[] files, Vocabulary counts, boolean spam,
+                                     Tokenization mode, FileProgress progress) {
+        int parallelism = trainingParallelism;
+        DetectorEvents.TrainDirectory event = new DetectorEvents.TrainDirectory();
+        event.begin();
+
+        AtomicInteger counted = new AtomicInteger();
+        if (parallelism == 1) {
+            MessageTokenizer tokenizer = mode.newTokenizer();
+            TokenTable fileWords = new TokenTable(4096);
+            for (File file : files) {
+                if (file.isFile() && extractWordsFromFile(file, tokenizer, fileWords)) {
+                    counts.addFile(fileWords, spam);
+                    counted.incrementAndGet();
+                }
+                progress.fileDone();
+            }
+        } else {
+            // Count on a work-stealing pool, then fold the merged worker tables into the shared counts
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                counts.addAll(pool.invoke(new WordCountTask(files, 0, files.length, spam, mode, progress, counted)));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        metrics.trainingFiles.add(files.length);
+        if (event.shouldCommit()) {
+            event.directory = directory.getPath();
+            event.spam = spam;
+            event.files = files.length;
+            event.parallelism = parallelism;
+            event.commit();
+        }
+        return counted.get();
+    }
+
+    /*
+     * Fork-join task that counts, for a slice of training files, how many files contain each word.
+     * Small slices are counted directly into a task-local vocabulary; larger slices are split in half
+     * and the two partial vocabularies are merged, so no table is ever shared between threads.
+     */
+
+    private class WordCountTask extends RecursiveTask<Vocabulary> {
+        private static final long serialVersionUID = 1L;
+        // Slices at or below this many files are counted without further splitting
+        private static final int SPLIT_THRESHOLD = 32;
+
+        private final File[] files;
+        private final int from;
+        private final int to;
+        private final boolean spam;
+        private final Tokenization mode;
+        private final transient FileProgress progress; // tasks only run in the pool and are never serialized
+        private final AtomicInteger counted;
+
+        WordCountTask(File[] files, int from, int to, boolean spam, Tokenization mode, FileProgress progress,
+                      AtomicInteger counted) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.spam = spam;
+            this.mode = mode;
+            this.progress = progress;
+            this.counted = counted;
+        }
+
+        @Override
+        protected Vocabulary compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                Vocabulary localCounts = new Vocabulary();
+                MessageTokenizer tokenizer = mode.newTokenizer();
+                TokenTable fileWords = new TokenTable(4096);
+                for (int i = from; i < to; i++) {
+                    if (files[i].isFile() && extractWordsFromFile(files[i], tokenizer, fileWords)) {
+                        localCounts.addFile(fileWords, spam);
+                        counted.incrementAndGet();
+                    }
+                    progress.fileDone();
                 }
+                return localCounts;
+            }
+
+            int middle = (from + to) >>> 1;
+            WordCountTask left = new WordCountTask(files, from, middle, spam, mode, progress, counted);
+            left.fork();
+            Vocabulary rightCounts = new WordCountTask(files, middle, to, spam, mode, progress, counted).compute();
+            Vocabulary leftCounts = left.join();
+
+            // Merge the smaller table into the larger one
+            if (leftCounts.size() >= rightCounts.size()) {
+                leftCounts.addAll(rightCounts);
+                return leftCounts;
             }
+            rightCounts.addAll(leftCounts);
+            return rightCounts;
+        }
+    }
+
+    /*
+     * Counts the files an operation has processed and reports each one to its listener.
+     * The count is atomic because training workers report from several threads.
+     */
+
+    private static final class FileProgress {
+        private final ProgressListener listener;
+        private final int total;
+        private final AtomicInteger done = new AtomicInteger();
+
+        FileProgress(ProgressListener listener, int total) {
+            this.listener = Objects.requireNonNull(listener);
+            this.total = total;
+        }
+
+        void classified(TestFile email) {
+            listener.classified(email);
+        }
+
+        void fileDone() {
+            listener.progress(done.incrementAndGet(), total);
         }
     }
 
     /*
      * Extracts unique words from a given file by splitting text into tokens.
      * Non-word characters are used as delimiters, and words are converted to lowercase.
+     * Words are collected as bytes in a reusable table, so no String is created per word.
      *
-     * @param file The file to read.
-     * @return A set of unique words found in the file.
+     * @param file      The file to read.
+     * @param tokenizer The tokenizer to read the file with.
+     * @param words     Cleared, then filled with the unique words of the file in order of first occurrence.
+     * @return false if the file could not be read; words then holds what was read before the error.
      */
 
-    private Set<String> extractWordsFromFile(File file) {
-        Set<String> words = new HashSet<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] tokens = line.toLowerCase().split("\\W+"); // Split on non-word characters
-                words.addAll(Arrays.asList(tokens));
-            }
+    private boolean extractWordsFromFile(File file, MessageTokenizer tokenizer, TokenTable words) {
+        return extractWordsFromFile(file, tokenizer, words, words::intern);
+    }
+
+    // extractWordsFromFile() with the words reported to a sink that interns them into words
+    private boolean extractWordsFromFile(File file, MessageTokenizer tokenizer, TokenTable words,
+                                         WordTokenizer.TokenSink sink) {
+        words.clear();
+        try (InputStream in = new FileInputStream(file)) {
+            tokenizer.tokenize(in, sink);
+            metrics.recordFile(file.length(), words.size());
+            return true;
         } catch (IOException e) {
+            metrics.readErrors.increment();
             System.err.println("Error reading file: " + file.getName());
+            return false;
         }
-        return words;
     }
 
     /*
      * Computes the probability that a word appears in spam emails.
      * Uses Laplace smoothing to handle words not found in the training data.
+     * Probabilities are recomputed from the current counts with the current smoothing factor,
+     * and the words are pruned or moved into a sketch as the current model budget says.
      */
 
     public void computeWordProbabilities() {
-        spamWordProbabilities = new TreeMap<>();
-        double smoothingFactor = 500.0; // Increase smoothing to significantly reduce extreme values
-
-        // Calculate probability for words appearing in spam emails
-        for (String word : trainSpamFreq.keySet()) {
-            double pWiGivenS = (trainSpamFreq.getOrDefault(word, 0) + 1.0) / (numSpamFiles + smoothingFactor);
-            double pWiGivenH = (trainHamFreq.getOrDefault(word, 0) + 1.0) / (numHamFiles + smoothingFactor);
-            double pSiGivenWi = pWiGivenS / (pWiGivenS + pWiGivenH);
-
-            spamWordProbabilities.put(word, pSiGivenWi);
-        }
-
-        // Calculate probability for words appearing only in ham emails
-        for (String word : trainHamFreq.keySet()) {
-            if (!spamWordProbabilities.containsKey(word)) {
-                double pWiGivenS = (0 + 1.0) / (numSpamFiles + smoothingFactor);
-                double pWiGivenH = (trainHamFreq.get(word) + 1.0) / (numHamFiles + smoothingFactor);
-                double pSiGivenWi = pWiGivenS / (pWiGivenS + pWiGivenH);
-
-                spamWordProbabilities.put(word, pSiGivenWi);
+        synchronized (updateLock) {
+            SpamModel current = model;
+            if (current instanceof SketchModel sketchModel) {
+                model = sketchModel.withSmoothingFactor(smoothingFactor);
+                return;
             }
+            Vocabulary counts = new Vocabulary(current.size());
+            current.addCountsTo(counts);
+            model = buildModel(current, counts, current.numHamFiles(), current.numSpamFiles());
         }
     }
 
@@ -148,7 +893,9 @@ public class SpamDetector {
      */
 
     public double getWordProbability(String word) {
-        return spamWordProbabilities.getOrDefault(word, 0.0);
+        SpamModel current = model;
+        int id = current.find(word);
+        return id >= 0 ? current.spamProbability(id) : 0.0;
     }
 
     /*
@@ -158,58 +905,353 @@ public class SpamDetector {
      */
 
     public void classifyTestEmails(File testDir) {
-        classifiedEmails = new ArrayList<>();
+        classifyTestEmails(testDir, ProgressListener.NONE);
+    }
+
+    /*
+     * Classifies test emails like classifyTestEmails(File), handing each result to a listener
+     * as soon as it is ready. If the listener throws, classification stops and the previously
+     * classified emails are kept.
+     *
+     * @param testDir  The directory containing test emails.
+     * @param listener Receives each classified email and how many of the test files are done.
+     */
+
+    public void classifyTestEmails(File testDir, ProgressListener listener) {
+        List<TestFile> results = new ArrayList<>();
         File hamDir = new File(testDir, "ham");
         File spamDir = new File(testDir, "spam");
+        File[] hamFiles = hamDir.exists() ? hamDir.listFiles() : new File[0];
+        File[] spamFiles = spamDir.exists() ? spamDir.listFiles() : new File[0];
+        FileProgress progress = new FileProgress(listener, hamFiles.length + spamFiles.length);
+
+        // Every email of the run is scored against the same model, even if it is updated meanwhile
+        SpamModel snapshot = model;
+        ScoringLimits limits = scoringLimits;
+        Tokenization mode = tokenization;
+        SpamRules ruleSet = rules;
 
         if (hamDir.exists()) {
-            classifyEmailsInDirectory(hamDir, "Ham");
+            classifyEmailsInDirectory(hamDir, hamFiles, "Ham", snapshot, limits, mode, ruleSet, results, progress);
         }
         if (spamDir.exists()) {
-            classifyEmailsInDirectory(spamDir, "Spam");
+            classifyEmailsInDirectory(spamDir, spamFiles, "Spam", snapshot, limits, mode, ruleSet, results, progress);
         }
+
+        classifiedEmails = Collections.unmodifiableList(results);
     }
 
     /*
      * Classifies emails in a given directory by computing spam probability.
      *
      * @param directory   The directory containing email files.
+     * @param files       The entries of the directory.
      * @param actualClass The actual class (Ham/Spam).
+     * @param snapshot    The model to score with.
+     * @param limits      The scoring limits to apply.
+     * @param mode        How to split the emails into words.
+     * @param ruleSet     The rules to match.
+     * @param results     The list the classified emails are added to.
+     * @param progress    Receives each classified email and counts the files done.
      */
 
-    private void classifyEmailsInDirectory(File directory, String actualClass) {
-        for (File file : directory.listFiles()) {
+    private void classifyEmailsInDirectory(File directory, File[] files, String actualClass, SpamModel snapshot,
+                                           ScoringLimits limits, Tokenization mode, SpamRules ruleSet,
+                                           List<TestFile> results, FileProgress progress) {
+        DetectorEvents.ClassifyDirectory event = new DetectorEvents.ClassifyDirectory();
+        event.begin();
+        ScoringBuffers buffers = new ScoringBuffers();
+        MessageTokenizer tokenizer = buffers.tokenizer(mode);
+        for (File file : files) {
             if (file.isFile()) {
-                double spamProbability = computeEmailSpamProbability(file);
-                classifiedEmails.add(new TestFile(file.getName(), spamProbability, actualClass));
+                double spamProbability = limits.isBounded()
+                        ? computeBoundedSpamProbability(file, tokenizer, buffers.boundedScorer, snapshot, limits, ruleSet)
+                        : computeEmailSpamProbability(file, tokenizer, buffers, snapshot, ruleSet);
+                TestFile email = new TestFile(file.getName(), spamProbability, actualClass);
+                results.add(email);
+                progress.classified(email);
+                event.files++;
+                if (spamProbability > 0.5) {
+                    event.spamFiles++;
+                }
             }
+            progress.fileDone();
+        }
+        if (event.shouldCommit()) {
+            event.directory = directory.getPath();
+            event.commit();
+        }
+    }
+
+    /*
+     * Scores one email against the current model without changing the detector.
+     * Safe to call from many threads at once; it never blocks on model updates.
+     *
+     * @param message The raw email, UTF-8 encoded. The stream is not closed.
+     * @return The spam probability and word statistics of the email.
+     */
+
+    public SpamScore score(InputStream message) throws IOException {
+        return score(message, model, tokenization, scoringLimits, rules);
+    }
+
+    // Scores with another model, such as a mailbox overlay (see MailboxModels), under this detector's settings
+    SpamScore score(InputStream message, SpamModel snapshot) throws IOException {
+        return score(message, snapshot, tokenization, scoringLimits, rules);
+    }
+
+    // The current model, for layering per-mailbox changes over it
+    SpamModel model() {
+        return model;
+    }
+
+    /*
+     * Scores one email held in memory, answering from the score cache, if it is on, when a copy of it
+     * was scored with the current model before (see setScoreCacheSize()). Safe to call from many
+     * threads at once.
+     *
+     * @param message The raw email, UTF-8 encoded.
+     * @return The spam probability and word statistics of the email.
+     */
+
+    public SpamScore score(byte[] message) {
+        return scoreCached(message, model, tokenization, scoringLimits, rules);
+    }
+
+    /*
+     * Classifies a batch of emails against one model snapshot. With the score cache on (see
+     * setScoreCacheSize()), copies of the same message are scored once; later copies, in this batch
+     * or an earlier one, come from the cache.
+     * Files that cannot be read are reported on System.err and get a neutral probability of 0.5.
+     *
+     * @param emails The email files.
+     * @return One result per file, in the order given, named by path and with no actual class.
+     */
+
+    public List<TestFile> classifyAll(Collection<Path> emails) {
+        SpamModel snapshot = model;
+        Tokenization mode = tokenization;
+        ScoringLimits limits = scoringLimits;
+        SpamRules ruleSet = rules;
+        DetectorEvents.ClassifyBatch event = new DetectorEvents.ClassifyBatch();
+        event.begin();
+        List<TestFile> results = new ArrayList<>(emails.size());
+        for (Path email : emails) {
+            double spamProbability;
+            try {
+                byte[] content = Files.readAllBytes(email);
+                metrics.filesRead.increment();
+                metrics.bytesRead.add(content.length);
+                spamProbability = scoreCached(content, snapshot, mode, limits, ruleSet).getSpamProbability();
+            } catch (IOException e) {
+                metrics.readErrors.increment();
+                System.err.println("Error reading file: " + email);
+                spamProbability = 0.5;
+            }
+            results.add(new TestFile(email.toString(), spamProbability, null));
+            if (spamProbability > 0.5) {
+                event.spamFiles++;
+            }
+        }
+        event.files = results.size();
+        event.commit();
+        return results;
+    }
+
+    private SpamScore scoreCached(byte[] message, SpamModel snapshot, Tokenization mode, ScoringLimits limits,
+                                  SpamRules ruleSet) {
+        ScoreCache cache = scoreCache;
+        // Trace headers can only be left out where scoring is sure to skip them
+        boolean skipTraceHeaders = mode == Tokenization.MIME && limits.getMaxBytes() == 0;
+        ContentHash key = cache != null ? ContentHash.of(message, skipTraceHeaders) : null;
+        SpamScore score = cache != null ? cache.get(key, snapshot, mode, limits, ruleSet) : null;
+        if (score == null) {
+            try {
+                score = score(new ByteArrayInputStream(message), snapshot, mode, limits, ruleSet);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // reading from memory does not fail
+            }
+            if (cache != null) {
+                cache.put(key, snapshot, mode, limits, ruleSet, score);
+            }
+        }
+        return score;
+    }
+
+    private SpamScore score(InputStream message, SpamModel snapshot, Tokenization mode, ScoringLimits limits,
+                            SpamRules ruleSet) throws IOException {
+        long start = System.nanoTime();
+        ScoringBuffers buffers = acquireBuffers();
+        MessageTokenizer tokenizer = buffers.tokenizer(mode);
+        SpamScore score;
+        try {
+            if (limits.isBounded()) {
+                score = buffers.boundedScorer.score(message, tokenizer, snapshot, limits, ruleSet);
+            } else {
+                buffers.words.clear();
+                tokenizer.tokenize(message, buffers.sink(ruleSet));
+                score = scoreWords(buffers, snapshot, ruleSet);
+            }
+        } finally {
+            releaseBuffers(buffers);
+        }
+        metrics.recordScore(score, start);
+        return score;
+    }
+
+    public SpamScore score(CharSequence message) {
+        long start = System.nanoTime();
+        ScoringBuffers buffers = acquireBuffers();
+        MessageTokenizer tokenizer = buffers.tokenizer(tokenization);
+        ScoringLimits limits = scoringLimits;
+        SpamModel snapshot = model;
+        SpamRules ruleSet = rules;
+        SpamScore score;
+        try {
+            if (limits.isBounded()) {
+                score = buffers.boundedScorer.score(message, tokenizer, snapshot, limits, ruleSet);
+            } else {
+                buffers.words.clear();
+                tokenizer.tokenize(message, buffers.sink(ruleSet));
+                score = scoreWords(buffers, snapshot, ruleSet);
+            }
+        } finally {
+            releaseBuffers(buffers);
+        }
+        metrics.recordScore(score, start);
+        return score;
+    }
+
+    // Platform threads keep their own buffers; virtual threads borrow them from a shared pool
+    private static ScoringBuffers acquireBuffers() {
+        if (!Thread.currentThread().isVirtual()) {
+            return SCORING_BUFFERS.get();
+        }
+        ScoringBuffers buffers = VIRTUAL_THREAD_BUFFERS.poll();
+        return buffers != null ? buffers : new ScoringBuffers();
+    }
+
+    private static void releaseBuffers(ScoringBuffers buffers) {
+        if (Thread.currentThread().isVirtual()) {
+            VIRTUAL_THREAD_BUFFERS.offer(buffers); // dropped if the pool is full
         }
     }
 
     /*
      * Computes the probability that a given email is spam.
-     * Uses a logarithmic approach to prevent floating-point underflow.
      *
-     * @param file The email file.
+     * @param file      The email file.
+     * @param tokenizer The tokenizer to read the file with.
+     * @param buffers   Reusable word table and ID array for this thread.
+     * @param snapshot  The model to score with.
+     * @param ruleSet   The rules to match.
+     * @return The probability that the email is spam.
+     */
+
+    private double computeEmailSpamProbability(File file, MessageTokenizer tokenizer, ScoringBuffers buffers,
+                                               SpamModel snapshot, SpamRules ruleSet) {
+        long start = System.nanoTime();
+        extractWordsFromFile(file, tokenizer, buffers.words, buffers.sink(ruleSet));
+        SpamScore score = scoreWords(buffers, snapshot, ruleSet);
+        metrics.recordScore(score, start);
+        return score.getSpamProbability();
+    }
+
+    /*
+     * Computes the probability that a given email is spam under scoring limits.
+     * Only as much of the file is read as the limits need.
+     *
+     * @param file      The email file.
+     * @param tokenizer The tokenizer to read the file with.
+     * @param scorer    Reusable scorer for this thread.
+     * @param snapshot  The model to score with.
+     * @param limits    The scoring limits to apply.
+     * @param ruleSet   The rules to match.
      * @return The probability that the email is spam.
      */
 
-    private double computeEmailSpamProbability(File file) {
-        Set<String> words = extractWordsFromFile(file);
-        double eta = 0.0;
+    private double computeBoundedSpamProbability(File file, MessageTokenizer tokenizer, BoundedScorer scorer,
+                                                 SpamModel snapshot, ScoringLimits limits, SpamRules ruleSet) {
+        long start = System.nanoTime();
+        try (InputStream in = new FileInputStream(file)) {
+            SpamScore score = scorer.score(in, tokenizer, snapshot, limits, ruleSet);
+            metrics.recordFile(file.length(), score.getWordCount()); // counts the whole file, even if reading stopped early
+            metrics.recordScore(score, start);
+            return score.getSpamProbability();
+        } catch (IOException e) {
+            metrics.readErrors.increment();
+            System.err.println("Error reading file: " + file.getName());
+            return 0.5;
+        }
+    }
+
+    /*
+     * Combines the spam probabilities of the unique words of an email.
+     * Uses a logarithmic approach to prevent floating-point underflow: eta is the sum of the
+     * words' log-odds weights, which the model precomputes, normalized by the square root of the word count.
+     * The words are first resolved to model IDs, then their weights are summed in one pass.
+     *
+     * @param buffers  Holds the unique words of the email in its word table.
+     * @param snapshot The model to score with.
+     * @param ruleSet  The rules the email was matched against while it was tokenized (see ScoringBuffers.sink()).
+     * @return The score of the email.
+     */
+
+    private static SpamScore scoreWords(ScoringBuffers buffers, SpamModel snapshot, SpamRules ruleSet) {
+        TokenTable words = buffers.words;
         int wordCount = words.size();
 
-        if (wordCount == 0) return 0.5; // Neutral probability for empty emails
+        if (wordCount == 0) return new SpamScore(0.5, 0, 0); // Neutral probability for empty emails
 
-        double normalizationFactor = Math.sqrt(wordCount);
+        // Unknown words count as p = 0.5, whose weight is 0, so only known words are summed
+        int[] ids = buffers.wordIds(wordCount);
+        int knownWordCount = 0;
+        for (int i = 0; i < wordCount; i++) {
+            int id = snapshot.find(words, i);
+            if (id >= 0) {
+                ids[knownWordCount++] = id;
+            }
+        }
+        double eta = snapshot.sumWeights(ids, knownWordCount) / Math.sqrt(wordCount);
+        int ruleMatchCount = 0;
+        if (ruleSet.size() > 0) {
+            eta -= buffers.ruleMatcher.weight(); // rule weights are log-odds of spam, eta is log-odds of ham
+            ruleMatchCount = buffers.ruleMatcher.matchCount();
+        }
+
+        double spamProbability = 1 / (1 + Math.exp(eta)); // Convert eta to probability using sigmoid function
+        return new SpamScore(spamProbability, wordCount, knownWordCount, ruleMatchCount);
+    }
+
+    // Scratch space for scoring one message at a time on one thread
+    private static final class ScoringBuffers {
+        final MessageTokenizer[] tokenizers = new MessageTokenizer[Tokenization.values().length];
+        final TokenTable words = new TokenTable(4096);
+        final WordTokenizer.TokenSink wordSink = words::intern;
+        final RuleMatcher ruleMatcher = new RuleMatcher();
+        final BoundedScorer boundedScorer = new BoundedScorer();
+        private int[] wordIds = new int[4096];
 
-        for (String word : words) {
-            double pSgivenWi = spamWordProbabilities.getOrDefault(word, 0.5);
-            pSgivenWi = Math.max(0.1, Math.min(0.9, pSgivenWi));
-            eta += (Math.log(1 - pSgivenWi) - Math.log(pSgivenWi)) / normalizationFactor;
+        int[] wordIds(int count) {
+            if (wordIds.length < count) {
+                wordIds = new int[Math.max(count, wordIds.length * 2)];
+            }
+            return wordIds;
+        }
+
+        // Where the tokenizer reports words: the word table, through the rule matcher if there are rules
+        WordTokenizer.TokenSink sink(SpamRules ruleSet) {
+            return ruleSet.size() > 0 ? ruleMatcher.begin(ruleSet, wordSink) : wordSink;
         }
 
-        return 1 / (1 + Math.exp(eta)); // Convert eta to probability using sigmoid function
+        MessageTokenizer tokenizer(Tokenization mode) {
+            MessageTokenizer tokenizer = tokenizers[mode.ordinal()];
+            if (tokenizer == null) {
+                tokenizer = mode.newTokenizer();
+                tokenizers[mode.ordinal()] = tokenizer;
+            }
+            return tokenizer;
+        }
     }
 
     /*
@@ -226,10 +1268,11 @@ public class SpamDetector {
      * @return The accuracy of the classifier as a value between 0 and 1.
      */
     public double computeAccuracy() {
+        List<TestFile> emails = classifiedEmails;
         int correctPredictions = 0; // Counter for correct classifications
 
         // Iterate over all classified emails
-        for (TestFile email : classifiedEmails) {
+        for (TestFile email : emails) {
             boolean isSpam = email.getSpamProbability() > 0.5; // Our classifier's prediction (threshold = 0.5)
             boolean actualSpam = email.getActualClass().equals("Spam"); // The true classification from dataset
 
@@ -239,7 +1282,7 @@ public class SpamDetector {
         }
 
         // Return accuracy as a fraction of total classified emails
-        return (double) correctPredictions / classifiedEmails.size();
+        return (double) correctPredictions / emails.size();
     }
 
     /*
@@ -257,11 +1300,12 @@ public class SpamDetector {
      * @return The precision of the classifier as a value between 0 and 1.
      */
     public double computePrecision() {
+        List<TestFile> emails = classifiedEmails;
         int truePositives = 0;  // Emails correctly classified as spam
         int falsePositives = 0; // Ham emails incorrectly classified as spam
 
         // Iterate over all classified emails
-        for (TestFile email : classifiedEmails) {
+        for (TestFile email : emails) {
             boolean isSpam = email.getSpamProbability() > 0.5; // Classifier's prediction
             boolean actualSpam = email.getActualClass().equals("Spam"); // The true label from dataset
 
@@ -2,11 +2,12 @@ package csci2020u.assignment01;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /*
  * SpamDetectorGUI is the graphical user interface for the Spam Detector application.
@@ -16,8 +17,14 @@ import java.io.File;
  * - Allows users to train a spam classifier using a dataset.
  * - Allows users to classify test emails and display results.
  * - Computes and displays accuracy and precision metrics.
+
+ * Training and classification run on SwingWorker background threads, so the window stays responsive;
+ * a progress bar follows them file by file and the Cancel button stops them. Classified emails are
+ * added to the table as they are scored.
  */
 public class SpamDetectorGUI extends JFrame {
+    private static final long serialVersionUID = 1L;
+
     public static void main(String[] args) {
         showHomePage();
     }
@@ -115,9 +122,9 @@ public class SpamDetectorGUI extends JFrame {
         headerLabel.setForeground(Color.WHITE);
         mainPanel.add(headerLabel, BorderLayout.NORTH);
 
-        // Table for displaying classification results
-        String[] columnNames = {"Filename", "ActualClass", "Spam Probability"};
-        JTable table = new JTable(new DefaultTableModel(new String[0][3], columnNames));
+        // Table for displaying classification results, filled in while emails are classified
+        ClassifiedEmailsTableModel tableModel = new ClassifiedEmailsTableModel();
+        JTable table = new JTable(tableModel);
         table.setFont(new Font("Arial", Font.PLAIN, 14));
         table.setRowHeight(25);
         JScrollPane sp = new JScrollPane(table);
@@ -161,50 +168,174 @@ public class SpamDetectorGUI extends JFrame {
 
         JButton trainButton = new JButton("Train");
         JButton classifyButton = new JButton("Classify");
+        JButton cancelButton = new JButton("Cancel");
 
         styleButton(trainButton);
         styleButton(classifyButton);
+        styleButton(cancelButton);
+        cancelButton.setEnabled(false); // Only enabled while a task runs
+
+        // Progress of the running train or classify task
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Ready");
+        progressBar.setPreferredSize(new Dimension(200, 40));
 
         topPanel.add(trainButton);
         topPanel.add(classifyButton);
+        topPanel.add(progressBar);
+        topPanel.add(cancelButton);
         mainPanel.add(topPanel, BorderLayout.NORTH);
 
         frame.setVisible(true);
 
-        // Train Button Action
-        trainButton.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                detector.train(trainDirectory);
-                JOptionPane.showMessageDialog(frame, "Training Completed.", "Info", JOptionPane.INFORMATION_MESSAGE);
-            }
+        // Train Button Action: train in the background, the model is only replaced once all files are read
+        trainButton.addActionListener(e -> {
+            DetectorTask<Void> task = new DetectorTask<>() {
+                @Override
+                protected Void doInBackground() {
+                    detector.train(trainDirectory, this);
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    if (succeeded(frame, progressBar, "Training")) {
+                        JOptionPane.showMessageDialog(frame, "Training Completed.", "Info", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                }
+            };
+            runInBackground(task, "Training", progressBar, cancelButton, trainButton, classifyButton);
         });
 
-        // Classify Button Action
-        classifyButton.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                detector.classifyTestEmails(testDirectory);
-
-                double accuracy = detector.computeAccuracy();
-                double precision = detector.computePrecision();
-                accuracyField.setText(String.format("%.5f", accuracy));
-                precisionTextField.setText(String.format("%.5f", precision));
-
-                String[][] data2 = new String[detector.getClassifiedEmails().size()][3];
-                for (int i = 0; i < detector.getClassifiedEmails().size(); i++) {
-                    data2[i][0] = detector.getClassifiedEmails().get(i).getFilename();
-                    data2[i][1] = detector.getClassifiedEmails().get(i).getActualClass();
-                    data2[i][2] = detector.getClassifiedEmails().get(i).getSpamProbRounded();
+        // Classify Button Action: rows are streamed into the table as emails are scored
+        classifyButton.addActionListener(e -> {
+            tableModel.clear();
+            accuracyField.setText("");
+            precisionTextField.setText("");
+
+            ClassifyTask task = new ClassifyTask(detector, testDirectory, tableModel) {
+                @Override
+                protected void done() {
+                    if (succeeded(frame, progressBar, "Classification")) {
+                        accuracyField.setText(String.format("%.5f", detector.computeAccuracy()));
+                        precisionTextField.setText(String.format("%.5f", detector.computePrecision()));
+                    }
                 }
-                DefaultTableModel model = new DefaultTableModel(data2, columnNames);
-                table.setModel(model);
+            };
+            runInBackground(task, "Classification", progressBar, cancelButton, trainButton, classifyButton);
+        });
+
+    }
+
+    /*
+     * A train or classify run on a SwingWorker thread. The task is also the detector's
+     * ProgressListener: it turns the files done into the worker's progress (0-100), and once
+     * the task is cancelled it stops the detector at the next file by throwing.
+
+     * @param <V> The type of the intermediate results the task publishes.
+     */
+    abstract static class DetectorTask<V> extends SwingWorker<Void, V> implements ProgressListener {
 
-                frame.revalidate();
-                frame.repaint();
+        @Override
+        public void progress(int done, int total) {
+            if (isCancelled()) {
+                throw new CancellationException();
             }
-        });
+            setProgress(total == 0 ? 100 : (int) (100L * done / total));
+        }
+
+        /*
+         * Called from done() to report how the task ended. A cancelled or failed task is shown
+         * in the progress bar, a failure also in an error dialog.
+
+         * @return True if the task completed normally.
+         */
+        boolean succeeded(JFrame frame, JProgressBar progressBar, String action) {
+            try {
+                get();
+                progressBar.setString(action + " completed");
+                return true;
+            } catch (CancellationException e) {
+                progressBar.setString(action + " cancelled");
+            } catch (InterruptedException | ExecutionException e) {
+                progressBar.setString(action + " failed");
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                JOptionPane.showMessageDialog(frame, action + " failed: " + cause, "Error", JOptionPane.ERROR_MESSAGE);
+            }
+            return false;
+        }
+    }
 
+    /*
+     * Classifies the test emails, adding each batch of results to the table as it is published.
+     */
+    static class ClassifyTask extends DetectorTask<TestFile> {
+        private final SpamDetector detector;
+        private final File testDirectory;
+        private final ClassifiedEmailsTableModel tableModel;
+
+        ClassifyTask(SpamDetector detector, File testDirectory, ClassifiedEmailsTableModel tableModel) {
+            this.detector = detector;
+            this.testDirectory = testDirectory;
+            this.tableModel = tableModel;
+        }
+
+        @Override
+        protected Void doInBackground() {
+            detector.classifyTestEmails(testDirectory, this);
+            return null;
+        }
+
+        @Override
+        public void classified(TestFile email) {
+            publish(email);
+        }
+
+        @Override
+        protected void process(List<TestFile> emails) {
+            // A cancelled task may still deliver a last batch; it is not part of the results
+            if (!isCancelled()) {
+                tableModel.addRows(emails);
+            }
+        }
+    }
+
+    /*
+     * Starts a task on a background thread. While it runs, the progress bar follows it,
+     * the Cancel button stops it and the buttons that start tasks are disabled.
+
+     * @param task         The task to run.
+     * @param action       Shown in the progress bar, e.g. "Training".
+     * @param progressBar  The bar to show the task's progress in.
+     * @param cancelButton The button that cancels the task.
+     * @param taskButtons  The buttons to disable until the task is done.
+     */
+    private static void runInBackground(DetectorTask<?> task, String action, JProgressBar progressBar,
+                                        JButton cancelButton, JButton... taskButtons) {
+        for (JButton button : taskButtons) {
+            button.setEnabled(false);
+        }
+        ActionListener cancel = e -> task.cancel(false);
+        cancelButton.addActionListener(cancel);
+        cancelButton.setEnabled(true);
+        progressBar.setValue(0);
+        progressBar.setString(action + "... 0%");
+
+        task.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName()) && !task.isDone()) {
+                progressBar.setValue(task.getProgress());
+                progressBar.setString(action + "... " + task.getProgress() + "%");
+            } else if ("state".equals(event.getPropertyName()) && task.isDone()) {
+                // A cancelled task is done at once; its thread stops at the next file
+                cancelButton.removeActionListener(cancel);
+                cancelButton.setEnabled(false);
+                for (JButton button : taskButtons) {
+                    button.setEnabled(true);
+                }
+            }
+        });
+        task.execute();
     }
 
     /*
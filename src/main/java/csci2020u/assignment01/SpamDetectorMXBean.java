@@ -0,0 +1,47 @@
+package csci2020u.assignment01;
+
+/*
+ * SpamDetectorMXBean is the JMX view of a SpamDetector's metrics, registered with
+ * SpamDetector.registerMBean(). Every attribute reads a fresh MetricsSnapshot, so JConsole,
+ * VisualVM or a JMX exporter always see current values.
+ */
+public interface SpamDetectorMXBean {
+
+    long getFilesRead();
+
+    long getBytesRead();
+
+    long getReadErrors();
+
+    long getTokensProduced();
+
+    long getTrainingFiles();
+
+    double getTrainingFilesPerSecond();
+
+    long getMessagesScored();
+
+    double getUnknownTokenRate();
+
+    double getScoringMicrosP50();
+
+    double getScoringMicrosP99();
+
+    double getScoringMicrosMax();
+
+    double getScoringMicrosMean();
+
+    int getModelWords();
+
+    int getModelHamFiles();
+
+    int getModelSpamFiles();
+
+    long getScoreCacheHits();
+
+    long getScoreCacheMisses();
+
+    long getScoreCacheEvictions();
+
+    int getScoreCacheSize();
+}
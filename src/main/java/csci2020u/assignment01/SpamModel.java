@@ -0,0 +1,101 @@
+package csci2020u.assignment01;
+
+/*
+ * SpamModel is a read-only view of a trained spam classifier: the training words with
+ * their ham/spam file counts and spam probabilities, the number of training files per class,
+ * and the smoothing factor the probabilities were computed with.
+
+ * Words are addressed by model-specific IDs between 0 and size() - 1. Implementations keep
+ * the model in heap arrays (VocabularyModel), in a memory-mapped file (MappedModel) or, without
+ * the words themselves, in a fixed-size count-min sketch (SketchModel).
+ */
+public interface SpamModel {
+
+    int numHamFiles();
+
+    int numSpamFiles();
+
+    double smoothingFactor();
+
+    // Number of distinct words in the model
+    int size();
+
+    /*
+     * Returns the ID of a word, or -1 if the model does not contain it.
+     */
+    int find(String word);
+
+    /*
+     * Returns the ID of a token reported by WordTokenizer, or -1 if the model does not contain it.
+     */
+    int find(byte[] token, int length, int hash);
+
+    /*
+     * Returns the ID of a word held in a TokenTable, or -1 if the model does not contain it.
+     */
+    int find(TokenTable words, int wordId);
+
+    String word(int id);
+
+    int hamCount(int id);
+
+    int spamCount(int id);
+
+    /*
+     * Returns the probability that an email containing the word is spam.
+     */
+    double spamProbability(int id);
+
+    /*
+     * Returns what the word adds to the score of an email containing it (see weightOf()).
+     * Models that can precompute the weights override this.
+     */
+    default double weight(int id) {
+        return weightOf(spamProbability(id));
+    }
+
+    /*
+     * Returns the sum of the weights of the words with the given IDs.
+     *
+     * @param ids   Word IDs of this model.
+     * @param count Number of IDs to sum, from the start of the array.
+     */
+    default double sumWeights(int[] ids, int count) {
+        double sum = 0.0;
+        for (int i = 0; i < count; i++) {
+            sum += weight(ids[i]);
+        }
+        return sum;
+    }
+
+    /*
+     * Adds the ham and spam counts of every word in the model to a vocabulary.
+     */
+    void addCountsTo(Vocabulary counts);
+
+    /*
+     * Converts a word's spam probability p into its weight in an email score, the log-odds
+     * log(1 - p) - log(p). p is first clamped to [0.1, 0.9] so no single word decides an email.
+     * Positive weights point to ham, negative ones to spam; a word with p = 0.5 weighs 0.
+     */
+    static double weightOf(double spamProbability) {
+        return weightOf(spamProbability, 0.1);
+    }
+
+    // weightOf() with p clamped to [clamp, 1 - clamp] instead, for evaluating other bounds (see CrossValidator)
+    static double weightOf(double spamProbability, double clamp) {
+        double p = Math.max(clamp, Math.min(1 - clamp, spamProbability));
+        return Math.log(1 - p) - Math.log(p);
+    }
+
+    /*
+     * Estimates the probability that an email containing a word is spam from the number of
+     * spam and ham training files containing it, using Laplace smoothing.
+     */
+    static double estimateSpamProbability(int spamCount, int hamCount,
+                                          int numSpamFiles, int numHamFiles, double smoothingFactor) {
+        double pWiGivenS = (spamCount + 1.0) / (numSpamFiles + smoothingFactor);
+        double pWiGivenH = (hamCount + 1.0) / (numHamFiles + smoothingFactor);
+        return pWiGivenS / (pWiGivenS + pWiGivenH);
+    }
+}
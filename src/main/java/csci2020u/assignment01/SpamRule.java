@@ -0,0 +1,34 @@
+package csci2020u.assignment01;
+
+/*
+ * SpamRule is an operator-defined phrase or blocklist entry (see SpamRules) and how much a
+ * match counts towards spam.
+
+ * The pattern is matched as a sequence of words, split the way WordTokenizer splits email text,
+ * so "Click here!" matches "click here" anywhere in an email and the domain "bad-site.example"
+ * matches the words "bad site example", as in a link to http://www.bad-site.example/offer.
+
+ * The weight is added to the email's log-odds of being spam: 1.0 multiplies the odds by e (about 2.7),
+ * and negative weights count towards ham, for example for a trusted sender's domain.
+ */
+public final class SpamRule {
+    private final String pattern;
+    private final double weight;
+
+    public SpamRule(String pattern, double weight) {
+        if (!Double.isFinite(weight)) {
+            throw new IllegalArgumentException("Rule weight must be finite: " + weight);
+        }
+        this.pattern = pattern;
+        this.weight = weight;
+    }
+
+    public String getPattern() { return pattern; }
+
+    public double getWeight() { return weight; }
+
+    @Override
+    public String toString() {
+        return weight + " " + pattern;
+    }
+}
@@ -0,0 +1,293 @@
+package csci2020u.assignment01;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * SpamRules is a compiled set of SpamRule phrases and blocklist entries, matched while an email is
+ * tokenized for scoring (see SpamDetector.setRules()). The weights of the rules an email matches,
+ * each counted once, are added to its log-odds of being spam after the word weights are combined.
+
+ * All patterns are compiled into one Aho-Corasick automaton over words instead of characters:
+ * every distinct pattern word is a symbol, and the automaton steps once per word of the email,
+ * so any number of rules costs one hash probe per word. A word that occurs in no pattern sends
+ * the automaton back to its start without probing the transitions.
+
+ * A SpamRules is immutable and may be shared by any number of threads; changing the rules means
+ * compiling a new one.
+
+ * Rule files have one rule per line, the weight followed by the pattern; blank lines and lines
+ * starting with '#' are ignored:
+ *   2.5 click here to unsubscribe
+ *   4.0 cheap-pills.example
+ *   -3.0 lists.our-company.example
+ */
+public final class SpamRules {
+    public static final SpamRules NONE = compile(List.of());
+
+    private static final long NO_KEY = -1L;
+
+    private final List<SpamRule> rules;
+    private final double[] weights;
+    // Every distinct pattern word; its ID is its symbol
+    private final TokenTable symbols;
+    // Goto function: open-addressing table from (state << 32 | symbol) to the next state
+    private final long[] transitionKeys;
+    private final int[] transitionStates;
+    private final int transitionMask;
+    // Failure link of every state: the state of its longest proper suffix that is a pattern prefix
+    private final int[] failures;
+    // Rules matched on reaching each state, including those of its failure chain
+    private final int[][] outputs;
+
+    private SpamRules(List<SpamRule> rules, TokenTable symbols, List<int[]> patterns) {
+        this.rules = rules;
+        this.symbols = symbols;
+        this.weights = new double[rules.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = rules.get(i).getWeight();
+        }
+
+        // Build the trie; state 0 is the start
+        int maxStates = 1;
+        for (int[] pattern : patterns) {
+            maxStates += pattern.length;
+        }
+        int slots = 16;
+        while (slots < maxStates * 2) {
+            slots <<= 1;
+        }
+        transitionKeys = new long[slots];
+        Arrays.fill(transitionKeys, NO_KEY);
+        transitionStates = new int[slots];
+        transitionMask = slots - 1;
+
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        stateOutputs.add(new ArrayList<>());
+        for (int rule = 0; rule < patterns.size(); rule++) {
+            int state = 0;
+            for (int symbol : patterns.get(rule)) {
+                int next = transition(state, symbol);
+                if (next < 0) {
+                    next = stateOutputs.size();
+                    stateOutputs.add(new ArrayList<>());
+                    addTransition(state, symbol, next);
+                }
+                state = next;
+            }
+            stateOutputs.get(state).add(rule);
+        }
+
+        // Failure links in breadth-first order, so a state's failure is complete before its children
+        int stateCount = stateOutputs.size();
+        failures = new int[stateCount];
+        outputs = new int[stateCount][];
+        int[][] children = transitionsByState(stateCount);
+        outputs[0] = toArray(stateOutputs.get(0), null);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int slot : children[0]) {
+            queue.add(transitionStates[slot]); // children of the start fail to the start
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = toArray(stateOutputs.get(state), outputs[failures[state]]);
+            for (int slot : children[state]) {
+                int child = transitionStates[slot];
+                int symbol = (int) transitionKeys[slot];
+                int failure = failures[state];
+                int next = transition(failure, symbol);
+                while (next < 0 && failure != 0) {
+                    failure = failures[failure];
+                    next = transition(failure, symbol);
+                }
+                failures[child] = next >= 0 && next != child ? next : 0;
+                queue.add(child);
+            }
+        }
+    }
+
+    /*
+     * Compiles rules into an automaton.
+     *
+     * @throws IllegalArgumentException If a pattern contains no words.
+     */
+
+    public static SpamRules compile(Collection<SpamRule> rules) {
+        List<SpamRule> ruleList = List.copyOf(rules);
+        TokenTable symbols = new TokenTable(Math.max(16, ruleList.size() * 2));
+        List<int[]> patterns = new ArrayList<>(ruleList.size());
+        WordTokenizer tokenizer = new WordTokenizer();
+        PatternWords words = new PatternWords(symbols);
+        for (SpamRule rule : ruleList) {
+            words.length = 0;
+            tokenizer.tokenize(rule.getPattern(), words);
+            if (words.length == 0) {
+                throw new IllegalArgumentException("Rule pattern has no words: \"" + rule.getPattern() + "\"");
+            }
+            patterns.add(Arrays.copyOf(words.symbols, words.length));
+        }
+        return new SpamRules(ruleList, symbols, patterns);
+    }
+
+    // Collects the symbols of a pattern's words, interning new words into the symbol table
+    private static final class PatternWords implements WordTokenizer.TokenSink {
+        private final TokenTable table;
+        private int[] symbols = new int[16];
+        private int length;
+
+        PatternWords(TokenTable table) {
+            this.table = table;
+        }
+
+        @Override
+        public void token(byte[] token, int tokenLength, int hash) {
+            if (tokenLength == 0) {
+                return; // "" stands for punctuation at a line start, which the matcher skips too
+            }
+            if (length == symbols.length) {
+                symbols = Arrays.copyOf(symbols, length * 2);
+            }
+            symbols[length++] = table.intern(token, tokenLength, hash);
+        }
+    }
+
+    /*
+     * Parses rules in the rule file format and compiles them.
+     *
+     * @throws IllegalArgumentException If a line is not a weight followed by a pattern.
+     */
+
+    public static SpamRules parse(CharSequence text) {
+        List<SpamRule> rules = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : text.toString().split("\r?\n|\r")) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] parts = trimmed.split("\\s+", 2);
+            try {
+                if (parts.length < 2) {
+                    throw new IllegalArgumentException("Expected a weight and a pattern");
+                }
+                rules.add(new SpamRule(parts[1], Double.parseDouble(parts[0])));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage() + ": " + line, e);
+            }
+        }
+        return compile(rules);
+    }
+
+    /*
+     * Reads and compiles a rule file (UTF-8).
+     */
+
+    public static SpamRules load(Path file) throws IOException {
+        return parse(Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    public List<SpamRule> getRules() {
+        return rules;
+    }
+
+    // Number of rules
+    public int size() {
+        return rules.size();
+    }
+
+    // Symbol of a word held in token[offset, offset + length), or -1 if no pattern contains it
+    int symbol(byte[] token, int offset, int length, int hash) {
+        return symbols.find(token, offset, length, hash);
+    }
+
+    // State after reading a word in the given state; words of no pattern (symbol -1) lead to the start
+    int next(int state, int symbol) {
+        if (symbol < 0) {
+            return 0;
+        }
+        while (true) {
+            int next = transition(state, symbol);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failures[state];
+        }
+    }
+
+    // Rules that end at a state; not copied
+    int[] outputs(int state) {
+        return outputs[state];
+    }
+
+    double weight(int rule) {
+        return weights[rule];
+    }
+
+    private int transition(int state, int symbol) {
+        long key = (long) state << 32 | symbol;
+        for (int slot = TokenTable.spread(Long.hashCode(key)) & transitionMask; ; slot = (slot + 1) & transitionMask) {
+            if (transitionKeys[slot] == key) {
+                return transitionStates[slot];
+            }
+            if (transitionKeys[slot] == NO_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    private void addTransition(int state, int symbol, int next) {
+        long key = (long) state << 32 | symbol;
+        int slot = TokenTable.spread(Long.hashCode(key)) & transitionMask;
+        while (transitionKeys[slot] != NO_KEY) {
+            slot = (slot + 1) & transitionMask;
+        }
+        transitionKeys[slot] = key;
+        transitionStates[slot] = next;
+    }
+
+    // Slots of the goto table holding the transitions out of each state
+    private int[][] transitionsByState(int stateCount) {
+        int[] counts = new int[stateCount];
+        for (long key : transitionKeys) {
+            if (key != NO_KEY) {
+                counts[(int) (key >>> 32)]++;
+            }
+        }
+        int[][] slots = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            slots[state] = new int[counts[state]];
+            counts[state] = 0;
+        }
+        for (int slot = 0; slot < transitionKeys.length; slot++) {
+            if (transitionKeys[slot] != NO_KEY) {
+                int state = (int) (transitionKeys[slot] >>> 32);
+                slots[state][counts[state]++] = slot;
+            }
+        }
+        return slots;
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        int inheritedLength = inherited == null ? 0 : inherited.length;
+        int[] all = new int[own.size() + inheritedLength];
+        for (int i = 0; i < own.size(); i++) {
+            all[i] = own.get(i);
+        }
+        if (inheritedLength > 0) {
+            System.arraycopy(inherited, 0, all, own.size(), inheritedLength);
+        }
+        return all;
+    }
+}
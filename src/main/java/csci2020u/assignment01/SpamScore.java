@@ -0,0 +1,50 @@
+package csci2020u.assignment01;
+
+import java.text.DecimalFormat;
+
+/*
+ * SpamScore is the result of scoring one email with SpamDetector.score().
+ * It is immutable and does not refer back to the detector or model that produced it.
+ */
+public final class SpamScore {
+    private final double spamProbability;
+    private final int wordCount;
+    private final int knownWordCount;
+    private final int ruleMatchCount;
+
+    public SpamScore(double spamProbability, int wordCount, int knownWordCount) {
+        this(spamProbability, wordCount, knownWordCount, 0);
+    }
+
+    public SpamScore(double spamProbability, int wordCount, int knownWordCount, int ruleMatchCount) {
+        this.spamProbability = spamProbability;
+        this.wordCount = wordCount;
+        this.knownWordCount = knownWordCount;
+        this.ruleMatchCount = ruleMatchCount;
+    }
+
+    public double getSpamProbability() { return spamProbability; }
+
+    // Same decision rule as computeAccuracy() and computePrecision()
+    public boolean isSpam() { return spamProbability > 0.5; }
+
+    // Number of distinct words in the email
+    public int getWordCount() { return wordCount; }
+
+    // Number of distinct words of the email that the model knows
+    public int getKnownWordCount() { return knownWordCount; }
+
+    // Number of distinct rules (see SpamDetector.setRules()) the email matched
+    public int getRuleMatchCount() { return ruleMatchCount; }
+
+    public String getSpamProbRounded() {
+        DecimalFormat df = new DecimalFormat("0.00000");
+        return df.format(spamProbability);
+    }
+
+    @Override
+    public String toString() {
+        return "SpamScore[spamProbability=" + spamProbability + ", wordCount=" + wordCount
+                + ", knownWordCount=" + knownWordCount + ", ruleMatchCount=" + ruleMatchCount + "]";
+    }
+}
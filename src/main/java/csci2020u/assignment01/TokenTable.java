@@ -0,0 +1,270 @@
+package csci2020u.assignment01;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * TokenTable interns tokens produced by WordTokenizer into dense IDs (0, 1, 2, ...).
+
+ * It is an open-addressing hash table with linear probing. The bytes of all tokens live in
+ * one growing array, so looking up or interning a token that is already present allocates nothing.
+ * Token hashes are the ones WordTokenizer reports, which equal String.hashCode() of the token.
+
+ * A TokenTable is not thread-safe.
+ */
+public final class TokenTable {
+    // Slots are kept at most half full so probe sequences stay short
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] slots;      // id + 1 of the token stored in each slot, 0 = empty
+    private int[] hashes;     // hash of each token, by id
+    private int[] offsets;    // start of each token in keyBytes, by id; offsets[size] is the end of the last token
+    private byte[] keyBytes;
+    private int size;
+
+    public TokenTable() {
+        this(MIN_CAPACITY);
+    }
+
+    private TokenTable(TokenTable source) {
+        slots = source.slots.clone();
+        hashes = Arrays.copyOf(source.hashes, Math.max(source.size, 8));
+        offsets = Arrays.copyOf(source.offsets, Math.max(source.size, 8) + 1);
+        keyBytes = Arrays.copyOf(source.keyBytes, Math.max(source.offsets[source.size], 32));
+        size = source.size;
+    }
+
+    /*
+     * Creates a table sized for the given number of tokens.
+     *
+     * @param expectedTokens The number of tokens expected to be interned.
+     */
+
+    public TokenTable(int expectedTokens) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedTokens * 2) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+        hashes = new int[capacity / 2];
+        offsets = new int[capacity / 2 + 1];
+        keyBytes = new byte[capacity * 4];
+        size = 0;
+    }
+
+    /*
+     * Returns the ID of a token, adding it to the table if it is new.
+     *
+     * @param token  Buffer holding the token bytes.
+     * @param length Number of token bytes at the start of the buffer.
+     * @param hash   The token hash reported by WordTokenizer.
+     * @return The ID of the token.
+     */
+
+    public int intern(byte[] token, int length, int hash) {
+        return intern(token, 0, length, hash);
+    }
+
+    /*
+     * Returns the ID in this table of a token stored in another table, adding it if it is new.
+     *
+     * @param source   The table holding the token.
+     * @param sourceId The ID of the token in the source table.
+     */
+
+    public int intern(TokenTable source, int sourceId) {
+        int start = source.offsets[sourceId];
+        return intern(source.keyBytes, start, source.offsets[sourceId + 1] - start, source.hashes[sourceId]);
+    }
+
+    /*
+     * Returns the ID of a token, or -1 if the table does not contain it.
+     *
+     * @param token  Buffer holding the token bytes.
+     * @param length Number of token bytes at the start of the buffer.
+     * @param hash   The token hash reported by WordTokenizer.
+     */
+
+    public int find(byte[] token, int length, int hash) {
+        return find(token, 0, length, hash);
+    }
+
+    /*
+     * Returns the ID in this table of a token stored in another table, or -1 if this table does not contain it.
+     *
+     * @param source   The table holding the token.
+     * @param sourceId The ID of the token in the source table.
+     */
+
+    public int find(TokenTable source, int sourceId) {
+        int start = source.offsets[sourceId];
+        return find(source.keyBytes, start, source.offsets[sourceId + 1] - start, source.hashes[sourceId]);
+    }
+
+    /*
+     * Returns the ID of a word, or -1 if the table does not contain it.
+     *
+     * @param word The word to look up.
+     */
+
+    public int find(String word) {
+        int hash = word.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && equalsWord(id, word)) {
+                return id;
+            }
+        }
+    }
+
+    /*
+     * Returns the token with the given ID as a String.
+     *
+     * @param id A token ID between 0 and size() - 1.
+     */
+
+    public String token(int id) {
+        int start = offsets[id];
+        return new String(keyBytes, start, offsets[id + 1] - start, StandardCharsets.ISO_8859_1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Raw access for tables stored in other layouts, such as MappedModel
+
+    byte[] keyBytes() {
+        return keyBytes;
+    }
+
+    int start(int id) {
+        return offsets[id];
+    }
+
+    int length(int id) {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    int hash(int id) {
+        return hashes[id];
+    }
+
+    // Approximate heap size of the table in bytes, for memory budgets
+    long estimatedBytes() {
+        return 4L * (slots.length + hashes.length + offsets.length) + keyBytes.length + 96;
+    }
+
+    /*
+     * Returns an independent copy of this table; the token IDs are the same in both.
+     */
+
+    public TokenTable copy() {
+        return new TokenTable(this);
+    }
+
+    /*
+     * Removes all tokens while keeping the allocated storage, so the table can be reused.
+     */
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+    }
+
+    private int intern(byte[] buffer, int offset, int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                int id = add(buffer, offset, length, hash);
+                slots[slot] = id + 1;
+                if (size * 2 > slots.length) {
+                    rehash(slots.length * 2);
+                }
+                return id;
+            }
+            if (matches(entry - 1, buffer, offset, length, hash)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    // find() of a token held in buffer[offset, offset + length)
+    int find(byte[] buffer, int offset, int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (matches(entry - 1, buffer, offset, length, hash)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int add(byte[] buffer, int offset, int length, int hash) {
+        int id = size;
+        if (id == hashes.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+            offsets = Arrays.copyOf(offsets, id * 2 + 1);
+        }
+        int start = offsets[id];
+        if (start + length > keyBytes.length) {
+            keyBytes = Arrays.copyOf(keyBytes, Math.max(keyBytes.length * 2, start + length));
+        }
+        System.arraycopy(buffer, offset, keyBytes, start, length);
+        hashes[id] = hash;
+        offsets[id + 1] = start + length;
+        size++;
+        return id;
+    }
+
+    private boolean matches(int id, byte[] buffer, int offset, int length, int hash) {
+        if (hashes[id] != hash) {
+            return false;
+        }
+        int start = offsets[id];
+        return offsets[id + 1] - start == length
+                && Arrays.equals(keyBytes, start, start + length, buffer, offset, offset + length);
+    }
+
+    private boolean equalsWord(int id, String word) {
+        int start = offsets[id];
+        int length = offsets[id + 1] - start;
+        if (word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != (keyBytes[start + i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        int[] newSlots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(hashes[id]) & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = id + 1;
+        }
+        slots = newSlots;
+    }
+
+    // Token hashes are polynomial String hashes, which cluster in the low bits
+    static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
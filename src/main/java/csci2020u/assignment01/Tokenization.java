@@ -0,0 +1,16 @@
+package csci2020u.assignment01;
+
+/*
+ * Tokenization selects how SpamDetector turns emails into words. A model must be trained and used
+ * with the same tokenization, so it is saved in the model file.
+ */
+public enum Tokenization {
+    // The whole file as plain text, split like line.toLowerCase().split("\\W+") (WordTokenizer)
+    PLAIN,
+    // Headers and MIME parts handled separately, attachments skipped (MimeTokenizer)
+    MIME;
+
+    public MessageTokenizer newTokenizer() {
+        return this == MIME ? new MimeTokenizer() : new WordTokenizer();
+    }
+}
@@ -0,0 +1,135 @@
+package csci2020u.assignment01;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * TokenizedCorpus holds a labeled set of emails already split into words, so they can be trained on
+ * and scored many times (see CrossValidator) without being read or tokenized again.
+
+ * Every distinct word of the corpus gets an ID. An email is kept as the IDs of its distinct words,
+ * all emails in one int array, so the corpus takes about 4 bytes per distinct word per email
+ * plus one copy of each word.
+ */
+public final class TokenizedCorpus {
+    private final Tokenization tokenization;
+    private final MessageTokenizer tokenizer;
+    private final TokenTable words = new TokenTable(1 << 16);
+    private final TokenTable fileWords = new TokenTable(4096);
+
+    // The word IDs of email i are wordIds[offsets[i]] up to wordIds[offsets[i + 1]]
+    private int[] wordIds = new int[1 << 16];
+    private int[] offsets = {0};
+    private boolean[] spam = new boolean[0];
+    private int size;
+
+    public TokenizedCorpus(Tokenization tokenization) {
+        this.tokenization = tokenization;
+        this.tokenizer = tokenization.newTokenizer();
+    }
+
+    /*
+     * Adds every regular file below a directory as one email, in path order.
+     */
+
+    public TokenizedCorpus addDirectory(Path root, Label label) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (Path file : files) {
+            try (InputStream in = Files.newInputStream(file)) {
+                fileWords.clear();
+                tokenizer.tokenize(in, fileWords::intern);
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + file);
+                continue;
+            }
+            addEmail(label);
+        }
+        return this;
+    }
+
+    /*
+     * Adds every message of an mbox file as one email.
+     */
+
+    public TokenizedCorpus addMbox(Path mboxFile, Label label) throws IOException {
+        try (InputStream in = Files.newInputStream(mboxFile); MboxReader reader = new MboxReader(in)) {
+            for (byte[] message = reader.next(); message != null; message = reader.next()) {
+                fileWords.clear();
+                tokenizer.tokenize(new ByteArrayInputStream(message), fileWords::intern);
+                addEmail(label);
+            }
+        }
+        return this;
+    }
+
+    private void addEmail(Label label) {
+        int start = offsets[size];
+        if (wordIds.length < start + fileWords.size()) {
+            wordIds = Arrays.copyOf(wordIds, Math.max(wordIds.length * 2, start + fileWords.size()));
+        }
+        for (int i = 0; i < fileWords.size(); i++) {
+            wordIds[start + i] = words.intern(fileWords, i);
+        }
+        if (size + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(16, offsets.length * 2));
+            spam = Arrays.copyOf(spam, offsets.length);
+        }
+        spam[size] = label == Label.SPAM;
+        offsets[++size] = start + fileWords.size();
+    }
+
+    public Tokenization getTokenization() {
+        return tokenization;
+    }
+
+    // Number of emails
+    public int size() {
+        return size;
+    }
+
+    // Number of distinct words across all emails; word IDs are below this
+    public int wordCount() {
+        return words.size();
+    }
+
+    public boolean isSpam(int email) {
+        return spam[email];
+    }
+
+    public int spamCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (spam[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Index in wordIds() of the first word of an email
+    int start(int email) {
+        return offsets[email];
+    }
+
+    // Index in wordIds() after the last word of an email
+    int end(int email) {
+        return offsets[email + 1];
+    }
+
+    // Word IDs of all emails, to be read between start() and end(); not copied
+    int[] wordIds() {
+        return wordIds;
+    }
+}
@@ -0,0 +1,188 @@
+package csci2020u.assignment01;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/*
+ * TrainingPartial holds the raw training counts of part of a corpus: how many ham and spam files
+ * contained each word, and how many ham and spam files there were. Partials are written by
+ * SpamDetector.countShard() in separate processes (see ShardedTrainer) and combined with merge(),
+ * which adds the counts. Addition is associative and commutative, so partials can be merged in any
+ * order or tree and SpamDetector.train(TrainingPartial) gives the same model as training on all
+ * the files at once.
+
+ * Partials keep every word, unpruned; a model budget is applied when the model is built.
+
+ * File format (big-endian, DataOutputStream):
+ * - int MAGIC, int VERSION, int tokenization ordinal, int numHamFiles, int numSpamFiles, int word count
+ * - per word: int hash, int length, bytes (ISO-8859-1), int ham count, int spam count
+ */
+public final class TrainingPartial {
+    private static final int MAGIC = 0x53445450; // "SDTP"
+    private static final int VERSION = 1;
+
+    private final Tokenization tokenization;
+    private final Vocabulary counts;
+    private final int numHamFiles;
+    private final int numSpamFiles;
+
+    TrainingPartial(Tokenization tokenization, Vocabulary counts, int numHamFiles, int numSpamFiles) {
+        this.tokenization = tokenization;
+        this.counts = counts;
+        this.numHamFiles = numHamFiles;
+        this.numSpamFiles = numSpamFiles;
+    }
+
+    public Tokenization getTokenization() {
+        return tokenization;
+    }
+
+    public int getNumHamFiles() {
+        return numHamFiles;
+    }
+
+    public int getNumSpamFiles() {
+        return numSpamFiles;
+    }
+
+    // Number of distinct words
+    public int size() {
+        return counts.size();
+    }
+
+    // The counts; not copied, so they must not be modified
+    Vocabulary counts() {
+        return counts;
+    }
+
+    /*
+     * Returns a partial with the counts of both partials added. Neither is modified.
+     *
+     * @throws IllegalArgumentException If the partials were counted with different tokenizations.
+     */
+
+    public TrainingPartial merge(TrainingPartial other) {
+        if (other.tokenization != tokenization) {
+            throw new IllegalArgumentException("Cannot merge partials counted with " + tokenization
+                    + " and " + other.tokenization + " tokenization");
+        }
+        // Copy the larger one and add the smaller one to it
+        TrainingPartial larger = size() >= other.size() ? this : other;
+        TrainingPartial smaller = larger == this ? other : this;
+        Vocabulary merged = larger.counts.copy();
+        merged.addAll(smaller.counts);
+        return new TrainingPartial(tokenization, merged, numHamFiles + other.numHamFiles,
+                numSpamFiles + other.numSpamFiles);
+    }
+
+    /*
+     * Reads partial files one at a time and merges them.
+     *
+     * @param files At least one partial file.
+     * @throws IOException If a file cannot be read or is not a valid partial file.
+     * @throws IllegalArgumentException If the partials were counted with different tokenizations.
+     */
+
+    public static TrainingPartial merge(List<Path> files) throws IOException {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No partial files to merge");
+        }
+        TrainingPartial first = read(files.get(0));
+        Vocabulary merged = first.counts;
+        int numHamFiles = first.numHamFiles;
+        int numSpamFiles = first.numSpamFiles;
+        for (Path file : files.subList(1, files.size())) {
+            TrainingPartial partial = read(file);
+            if (partial.tokenization != first.tokenization) {
+                throw new IllegalArgumentException(file + " was counted with " + partial.tokenization
+                        + " tokenization, not " + first.tokenization);
+            }
+            merged.addAll(partial.counts);
+            numHamFiles += partial.numHamFiles;
+            numSpamFiles += partial.numSpamFiles;
+        }
+        return new TrainingPartial(first.tokenization, merged, numHamFiles, numSpamFiles);
+    }
+
+    /*
+     * Reads a partial written by write().
+     *
+     * @throws IOException If the file cannot be read or is not a valid partial file.
+     */
+
+    public static TrainingPartial read(Path file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a training partial file: " + file);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported training partial version " + version + ": " + file);
+            }
+            int mode = in.getInt();
+            if (mode < 0 || mode >= Tokenization.values().length) {
+                throw new IOException("Unknown tokenization " + mode + ": " + file);
+            }
+            int numHamFiles = in.getInt();
+            int numSpamFiles = in.getInt();
+            int wordCount = in.getInt();
+
+            Vocabulary counts = new Vocabulary(wordCount);
+            byte[] word = new byte[256];
+            for (int i = 0; i < wordCount; i++) {
+                int hash = in.getInt();
+                int length = in.getInt();
+                if (word.length < length) {
+                    word = new byte[Math.max(length, word.length * 2)];
+                }
+                in.get(word, 0, length);
+                counts.addCounts(counts.intern(word, length, hash), in.getInt(), in.getInt());
+            }
+            return new TrainingPartial(Tokenization.values()[mode], counts, numHamFiles, numSpamFiles);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Truncated training partial file: " + file, e);
+        }
+    }
+
+    /*
+     * Writes the partial to a file in the format read() reads. The file is written under a
+     * temporary name, forced to disk and then moved into place, so a reader never sees a partly
+     * written partial, even after a crash.
+     */
+
+    public void write(Path file) throws IOException {
+        TokenTable words = counts.words();
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tokenization.ordinal());
+            out.writeInt(numHamFiles);
+            out.writeInt(numSpamFiles);
+            out.writeInt(counts.size());
+            for (int id = 0; id < counts.size(); id++) {
+                out.writeInt(words.hash(id));
+                out.writeInt(words.length(id));
+                out.write(words.keyBytes(), words.start(id), words.length(id));
+                out.writeInt(counts.hamCount(id));
+                out.writeInt(counts.spamCount(id));
+            }
+            out.flush();
+            stream.getChannel().force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,247 @@
+package csci2020u.assignment01;
+
+import java.util.Arrays;
+
+/*
+ * Vocabulary stores, for every word seen during training, how many ham and spam files contained it.
+
+ * Words are interned into dense IDs by a TokenTable, and the counts live in two parallel int arrays
+ * indexed by those IDs. Compared with a TreeMap<String, Integer> per class this needs no String,
+ * Integer or map entry objects per word, and a lookup is a single hash probe instead of
+ * O(log n) string comparisons.
+
+ * A Vocabulary is not thread-safe.
+ */
+public final class Vocabulary {
+    private final TokenTable words;
+    private int[] hamCounts;
+    private int[] spamCounts;
+
+    public Vocabulary() {
+        this(1024);
+    }
+
+    /*
+     * Creates a vocabulary sized for the given number of words.
+     *
+     * @param expectedWords The number of distinct words expected.
+     */
+
+    public Vocabulary(int expectedWords) {
+        words = new TokenTable(expectedWords);
+        hamCounts = new int[Math.max(16, expectedWords)];
+        spamCounts = new int[hamCounts.length];
+    }
+
+    private Vocabulary(Vocabulary source) {
+        words = source.words.copy();
+        int length = Math.max(16, source.size());
+        hamCounts = Arrays.copyOf(source.hamCounts, length);
+        spamCounts = Arrays.copyOf(source.spamCounts, length);
+    }
+
+    /*
+     * Returns an independent copy of this vocabulary; word IDs are the same in both.
+     */
+
+    public Vocabulary copy() {
+        return new Vocabulary(this);
+    }
+
+    /*
+     * Returns a copy that leaves out words whose ham and spam counts are both 0,
+     * such as words whose every file has been unlearned.
+     */
+
+    public Vocabulary withoutUnusedWords() {
+        Vocabulary used = new Vocabulary(size());
+        for (int id = 0; id < size(); id++) {
+            if (hamCounts[id] != 0 || spamCounts[id] != 0) {
+                int usedId = used.intern(words, id);
+                used.hamCounts[usedId] = hamCounts[id];
+                used.spamCounts[usedId] = spamCounts[id];
+            }
+        }
+        return used;
+    }
+
+    /*
+     * Returns a copy that keeps only frequent words: those in at least minCount files (ham and spam together),
+     * and of those at most maxWords, the ones in the most files. Ties at the cut-off are broken by word ID.
+     *
+     * @param minCount Minimum number of files a word must be in (1 keeps every used word).
+     * @param maxWords Maximum number of words to keep, or 0 for no limit.
+     */
+
+    public Vocabulary pruned(int minCount, int maxWords) {
+        int threshold = Math.max(1, minCount);
+        int size = size();
+        if (maxWords > 0) {
+            int[] totals = new int[size];
+            int eligible = 0;
+            for (int id = 0; id < size; id++) {
+                int total = hamCounts[id] + spamCounts[id];
+                if (total >= threshold) {
+                    totals[eligible++] = total;
+                }
+            }
+            if (eligible > maxWords) {
+                Arrays.sort(totals, 0, eligible);
+                threshold = totals[eligible - maxWords];
+            }
+        }
+
+        // Words above the threshold are always kept; words exactly at it fill the remaining places
+        int aboveThreshold = 0;
+        if (maxWords > 0) {
+            for (int id = 0; id < size; id++) {
+                if (hamCounts[id] + spamCounts[id] > threshold) {
+                    aboveThreshold++;
+                }
+            }
+        }
+        int atThresholdAllowed = maxWords > 0 ? maxWords - aboveThreshold : Integer.MAX_VALUE;
+
+        Vocabulary kept = new Vocabulary(maxWords > 0 ? Math.min(maxWords, size) : size);
+        for (int id = 0; id < size; id++) {
+            int total = hamCounts[id] + spamCounts[id];
+            if (total < threshold || total == threshold && atThresholdAllowed-- <= 0) {
+                continue;
+            }
+            int keptId = kept.intern(words, id);
+            kept.hamCounts[keptId] = hamCounts[id];
+            kept.spamCounts[keptId] = spamCounts[id];
+        }
+        return kept;
+    }
+
+    public int size() {
+        return words.size();
+    }
+
+    // Approximate heap size of the words and counts in bytes, for memory budgets
+    long estimatedBytes() {
+        return words.estimatedBytes() + 4L * (hamCounts.length + spamCounts.length) + 48;
+    }
+
+    /*
+     * Returns the ID of a word, or -1 if the vocabulary does not contain it.
+     *
+     * @param word The word to look up.
+     */
+
+    public int find(String word) {
+        return words.find(word);
+    }
+
+    /*
+     * Returns the ID of a token reported by WordTokenizer, or -1 if the vocabulary does not contain it.
+     */
+
+    public int find(byte[] token, int length, int hash) {
+        return words.find(token, length, hash);
+    }
+
+    /*
+     * Returns the ID of a word held in another TokenTable, or -1 if the vocabulary does not contain it.
+     */
+
+    public int find(TokenTable source, int sourceId) {
+        return words.find(source, sourceId);
+    }
+
+    TokenTable words() {
+        return words;
+    }
+
+    public String word(int id) {
+        return words.token(id);
+    }
+
+    // String.hashCode() of a word
+    int hash(int id) {
+        return words.hash(id);
+    }
+
+    public int hamCount(int id) {
+        return hamCounts[id];
+    }
+
+    public int spamCount(int id) {
+        return spamCounts[id];
+    }
+
+    /*
+     * Returns the ID of a token reported by WordTokenizer, adding it with zero counts if it is new.
+     */
+
+    public int intern(byte[] token, int length, int hash) {
+        return ensureCapacity(words.intern(token, length, hash));
+    }
+
+    /*
+     * Returns the ID of a word held in another TokenTable, adding it with zero counts if it is new.
+     */
+
+    public int intern(TokenTable source, int sourceId) {
+        return ensureCapacity(words.intern(source, sourceId));
+    }
+
+    /*
+     * Adds to the ham and spam counts of a word.
+     */
+
+    public void addCounts(int id, int ham, int spam) {
+        hamCounts[id] += ham;
+        spamCounts[id] += spam;
+    }
+
+    /*
+     * Replaces the ham and spam counts of a word.
+     */
+
+    public void setCounts(int id, int ham, int spam) {
+        hamCounts[id] = ham;
+        spamCounts[id] = spam;
+    }
+
+    /*
+     * Counts one training file: every word of the file has its ham or spam count increased by one.
+     *
+     * @param fileWords The distinct words of the file.
+     * @param spam      Whether the file is spam (true) or ham (false).
+     */
+
+    public void addFile(TokenTable fileWords, boolean spam) {
+        for (int i = 0; i < fileWords.size(); i++) {
+            int id = intern(fileWords, i);
+            if (spam) {
+                spamCounts[id]++;
+            } else {
+                hamCounts[id]++;
+            }
+        }
+    }
+
+    /*
+     * Adds all counts of another vocabulary to this one.
+     *
+     * @param other The vocabulary to merge in; it is not modified.
+     */
+
+    public void addAll(Vocabulary other) {
+        for (int otherId = 0; otherId < other.size(); otherId++) {
+            int id = intern(other.words, otherId);
+            hamCounts[id] += other.hamCounts[otherId];
+            spamCounts[id] += other.spamCounts[otherId];
+        }
+    }
+
+    private int ensureCapacity(int id) {
+        if (id == hamCounts.length) {
+            hamCounts = Arrays.copyOf(hamCounts, id * 2);
+            spamCounts = Arrays.copyOf(spamCounts, id * 2);
+        }
+        return id;
+    }
+}
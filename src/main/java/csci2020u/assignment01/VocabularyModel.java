@@ -0,0 +1,132 @@
+package csci2020u.assignment01;
+
+/*
+ * VocabularyModel is the in-heap SpamModel built at the end of training:
+ * a Vocabulary with its counts plus a double[] of word probabilities indexed by the same IDs,
+ * and a double[] of the word weights derived from them, so scoring does no logarithms.
+
+ * The model is immutable as long as the vocabulary it was created with is not modified;
+ * train() makes its own copy of the counts, so models built by it are safe to share between threads.
+ */
+public final class VocabularyModel implements SpamModel {
+    private final Vocabulary vocabulary;
+    private final double[] spamProbabilities;
+    private final double[] weights;
+    private final int numHamFiles;
+    private final int numSpamFiles;
+    private final double smoothingFactor;
+
+    public VocabularyModel(Vocabulary vocabulary, double[] spamProbabilities,
+                           int numHamFiles, int numSpamFiles, double smoothingFactor) {
+        if (spamProbabilities.length != vocabulary.size()) {
+            throw new IllegalArgumentException("Expected " + vocabulary.size() + " probabilities, got " + spamProbabilities.length);
+        }
+        this.vocabulary = vocabulary;
+        this.spamProbabilities = spamProbabilities;
+        weights = new double[spamProbabilities.length];
+        for (int id = 0; id < weights.length; id++) {
+            weights[id] = SpamModel.weightOf(spamProbabilities[id]);
+        }
+        this.numHamFiles = numHamFiles;
+        this.numSpamFiles = numSpamFiles;
+        this.smoothingFactor = smoothingFactor;
+    }
+
+    @Override
+    public int numHamFiles() {
+        return numHamFiles;
+    }
+
+    @Override
+    public int numSpamFiles() {
+        return numSpamFiles;
+    }
+
+    @Override
+    public double smoothingFactor() {
+        return smoothingFactor;
+    }
+
+    @Override
+    public int size() {
+        return spamProbabilities.length;
+    }
+
+    @Override
+    public int find(String word) {
+        return vocabulary.find(word);
+    }
+
+    @Override
+    public int find(byte[] token, int length, int hash) {
+        return vocabulary.find(token, length, hash);
+    }
+
+    @Override
+    public int find(TokenTable words, int wordId) {
+        return vocabulary.find(words, wordId);
+    }
+
+    @Override
+    public String word(int id) {
+        return vocabulary.word(id);
+    }
+
+    @Override
+    public int hamCount(int id) {
+        return vocabulary.hamCount(id);
+    }
+
+    @Override
+    public int spamCount(int id) {
+        return vocabulary.spamCount(id);
+    }
+
+    @Override
+    public double spamProbability(int id) {
+        return spamProbabilities[id];
+    }
+
+    @Override
+    public double weight(int id) {
+        return weights[id];
+    }
+
+    @Override
+    public double sumWeights(int[] ids, int count) {
+        // Two sums halve the dependency chain of additions; the loads are independent anyway
+        double even = 0.0;
+        double odd = 0.0;
+        int i = 0;
+        for (; i + 1 < count; i += 2) {
+            even += weights[ids[i]];
+            odd += weights[ids[i + 1]];
+        }
+        if (i < count) {
+            even += weights[ids[i]];
+        }
+        return even + odd;
+    }
+
+    @Override
+    public void addCountsTo(Vocabulary counts) {
+        counts.addAll(vocabulary);
+    }
+
+    /*
+     * Builds a model from training counts, computing every word probability.
+     * Words whose ham and spam counts are both 0 are left out.
+     *
+     * @param counts The training counts; the model keeps its own copy.
+     */
+
+    public static VocabularyModel train(Vocabulary counts, int numHamFiles, int numSpamFiles, double smoothingFactor) {
+        Vocabulary vocabulary = counts.withoutUnusedWords();
+        double[] probabilities = new double[vocabulary.size()];
+        for (int id = 0; id < probabilities.length; id++) {
+            probabilities[id] = SpamModel.estimateSpamProbability(vocabulary.spamCount(id), vocabulary.hamCount(id),
+                    numSpamFiles, numHamFiles, smoothingFactor);
+        }
+        return new VocabularyModel(vocabulary, probabilities, numHamFiles, numSpamFiles, smoothingFactor);
+    }
+}
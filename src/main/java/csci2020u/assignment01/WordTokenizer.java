@@ -0,0 +1,293 @@
+package csci2020u.assignment01;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/*
+ * WordTokenizer splits email text into lowercase words without creating a String per word.
+ * Each word is handed to a TokenSink as bytes in a reused buffer together with its hash,
+ * which equals String.hashCode() of the word.
+
+ * Word boundaries are exactly those of line.toLowerCase().split("\\W+") applied to every line:
+ * - A word is a run of ASCII letters, digits or '_' (the characters \w matches); letters are folded while scanning.
+ * - 'İ' (U+0130) lowercases to "i" + U+0307 and the Kelvin sign (U+212A) to "k", so they yield word characters too.
+ * - Lines end at '\n', '\r' or "\r\n", the same terminators BufferedReader.readLine() uses.
+ * - An empty line, or a line starting with a non-word character and containing a word, yields the empty word ""
+ *   (String.split keeps that leading empty string).
+
+ * Streams are read as UTF-8, the default charset of FileReader since Java 18. Every other multi-byte
+ * UTF-8 sequence decodes to a non-word character, so the scanner can work on raw bytes.
+ * Case folding assumes a non-Turkic default locale, as toLowerCase() does for those locales.
+
+ * A WordTokenizer is not thread-safe; use one instance per thread and reuse it across messages.
+ */
+public final class WordTokenizer implements MessageTokenizer {
+
+    /*
+     * Receives the words produced by a WordTokenizer.
+     * The token array is reused for the next word, so implementations must copy what they keep.
+     */
+    @FunctionalInterface
+    public interface TokenSink {
+        void token(byte[] token, int length, int hash);
+    }
+
+    // Lowercase value of every ASCII word byte, 0 for every other byte
+    private static final byte[] WORD_BYTES = new byte[256];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) WORD_BYTES[c] = (byte) c;
+        for (int c = 'A'; c <= 'Z'; c++) WORD_BYTES[c] = (byte) (c + ('a' - 'A'));
+        for (int c = '0'; c <= '9'; c++) WORD_BYTES[c] = (byte) c;
+        WORD_BYTES['_'] = '_';
+    }
+
+    // Progress through the UTF-8 encodings of U+0130 (C4 B0) and U+212A (E2 84 AA)
+    private static final int PENDING_NONE = 0;
+    private static final int PENDING_C4 = 1;
+    private static final int PENDING_E2 = 2;
+    private static final int PENDING_E2_84 = 3;
+
+    private final byte[] readBuffer = new byte[16 * 1024];
+    private byte[] token = new byte[64];
+
+    private TokenSink sink;
+    private int tokenLength;
+    private int tokenHash;
+    private boolean lineHasChars;      // the current line contains at least one character
+    private boolean lineStartsNonWord; // the first character of the current line is not a word character
+    private boolean leadingEmitted;    // the leading "" of the current line has been produced
+    private boolean skipLineFeed;      // the previous character was '\r'
+    private int pending;
+    private boolean stopped;           // the sink asked to stop reading
+
+    /*
+     * Tokenizes a UTF-8 encoded stream until end of input. The stream is not closed.
+     *
+     * @param in   The stream to read.
+     * @param sink Receives every word, including repeated ones, in input order.
+     */
+
+    @Override
+    public void tokenize(InputStream in, TokenSink sink) throws IOException {
+        tokenize(in, Long.MAX_VALUE, sink);
+    }
+
+    /*
+     * Tokenizes at most maxBytes bytes of a UTF-8 encoded stream. The stream is not closed.
+     * A word cut off by the limit is reported as far as it was read.
+     *
+     * @param in       The stream to read.
+     * @param maxBytes Number of bytes to read at most.
+     * @param sink     Receives every word, including repeated ones, in input order.
+     */
+
+    @Override
+    public void tokenize(InputStream in, long maxBytes, TokenSink sink) throws IOException {
+        begin(sink);
+        try {
+            long remaining = maxBytes;
+            int n;
+            while (remaining > 0 && (n = in.read(readBuffer, 0, (int) Math.min(readBuffer.length, remaining))) > 0) {
+                remaining -= n;
+                for (int i = 0; i < n && !stopped; i++) {
+                    acceptByte(readBuffer[i] & 0xFF);
+                }
+                if (stopped) {
+                    return;
+                }
+            }
+            end();
+        } finally {
+            this.sink = null;
+        }
+    }
+
+    /*
+     * Called by a sink to end the current tokenize() call after the word it is receiving;
+     * the rest of the input is not read and no further words are reported.
+     */
+
+    @Override
+    public void stop() {
+        stopped = true;
+    }
+
+    /*
+     * Tokenizes a message that is already in memory.
+     *
+     * @param text The message text.
+     * @param sink Receives every word, including repeated ones, in input order.
+     */
+
+    @Override
+    public void tokenize(CharSequence text, TokenSink sink) {
+        begin(sink);
+        try {
+            for (int i = 0, n = text.length(); i < n && !stopped; i++) {
+                char c = text.charAt(i);
+                if (c < 128) {
+                    acceptAscii(c);
+                } else if (c == '\u0130') {
+                    word('i');
+                    separator(); // the combining dot above that follows the 'i'
+                } else if (c == '\u212A') {
+                    word('k');
+                } else {
+                    separator();
+                }
+            }
+            if (!stopped) {
+                end();
+            }
+        } finally {
+            this.sink = null;
+        }
+    }
+
+    // Push interface for MimeTokenizer, which feeds decoded text section by section
+
+    void start(TokenSink sink) {
+        begin(sink);
+    }
+
+    void accept(byte[] bytes, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end && !stopped; i++) {
+            acceptByte(bytes[i] & 0xFF);
+        }
+    }
+
+    void finish() {
+        if (!stopped) {
+            end();
+        }
+        sink = null;
+    }
+
+    private void begin(TokenSink sink) {
+        this.sink = sink;
+        tokenLength = 0;
+        tokenHash = 0;
+        lineHasChars = false;
+        lineStartsNonWord = false;
+        leadingEmitted = false;
+        skipLineFeed = false;
+        pending = PENDING_NONE;
+        stopped = false;
+    }
+
+    private void end() {
+        if (pending != PENDING_NONE) {
+            pending = PENDING_NONE;
+            separator();
+        }
+        // readLine() returns a last line without terminator only if it is not empty
+        if (lineHasChars) {
+            endOfLine();
+        }
+    }
+
+    private void acceptByte(int b) {
+        if (pending != PENDING_NONE) {
+            int state = pending;
+            pending = PENDING_NONE;
+            if (state == PENDING_C4 && b == 0xB0) {
+                word('i');
+                separator(); // the combining dot above that follows the 'i'
+                return;
+            }
+            if (state == PENDING_E2 && b == 0x84) {
+                pending = PENDING_E2_84;
+                return;
+            }
+            if (state == PENDING_E2_84 && b == 0xAA) {
+                word('k');
+                return;
+            }
+            // Some other character (or malformed input), which is never a word character
+            separator();
+        }
+
+        if (b < 128) {
+            acceptAscii(b);
+        } else if (b == 0xC4) {
+            pending = PENDING_C4;
+        } else if (b == 0xE2) {
+            pending = PENDING_E2;
+        } else {
+            separator();
+        }
+    }
+
+    private void acceptAscii(int c) {
+        if (c == '\n') {
+            if (skipLineFeed) {
+                skipLineFeed = false;
+            } else {
+                endOfLine();
+            }
+            return;
+        }
+        if (c == '\r') {
+            skipLineFeed = true;
+            endOfLine();
+            return;
+        }
+
+        byte lower = WORD_BYTES[c];
+        if (lower != 0) {
+            word(lower);
+        } else {
+            separator();
+        }
+    }
+
+    private void word(int lower) {
+        skipLineFeed = false;
+        if (!lineHasChars) {
+            lineHasChars = true;
+        } else if (tokenLength == 0 && lineStartsNonWord && !leadingEmitted) {
+            leadingEmitted = true;
+            emit(0, 0);
+        }
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, tokenLength * 2);
+        }
+        token[tokenLength++] = (byte) lower;
+        tokenHash = 31 * tokenHash + lower;
+    }
+
+    private void separator() {
+        skipLineFeed = false;
+        if (!lineHasChars) {
+            lineHasChars = true;
+            lineStartsNonWord = true;
+        }
+        flushToken();
+    }
+
+    private void endOfLine() {
+        if (!lineHasChars) {
+            emit(0, 0); // "".split("\\W+") yields [""]
+        }
+        flushToken();
+        lineHasChars = false;
+        lineStartsNonWord = false;
+        leadingEmitted = false;
+    }
+
+    private void flushToken() {
+        if (tokenLength > 0) {
+            emit(tokenLength, tokenHash);
+            tokenLength = 0;
+            tokenHash = 0;
+        }
+    }
+
+    private void emit(int length, int hash) {
+        if (!stopped) {
+            sink.token(token, length, hash);
+        }
+    }
+}
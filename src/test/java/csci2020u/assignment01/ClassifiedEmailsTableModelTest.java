@@ -0,0 +1,70 @@
+package csci2020u.assignment01;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Runs the GUI's classification task without a window and checks that the rows it streams into
+ * the table are the scores classifyAll() gives the same files.
+ */
+class ClassifiedEmailsTableModelTest {
+    private static final Path DATA = Path.of("src/main/resources/data");
+
+    @Test
+    void tableRowsMatchClassifyAll() throws Exception {
+        SpamDetector detector = new SpamDetector();
+        detector.train(DATA.resolve("train").toFile());
+
+        ClassifiedEmailsTableModel tableModel = new ClassifiedEmailsTableModel();
+        SpamDetectorGUI.ClassifyTask task = new SpamDetectorGUI.ClassifyTask(detector, DATA.resolve("test").toFile(), tableModel);
+        task.execute();
+        task.get(60, TimeUnit.SECONDS);
+
+        List<Path> emails = new ArrayList<>();
+        for (String actualClass : List.of("ham", "spam")) {
+            try (Stream<Path> files = Files.list(DATA.resolve("test").resolve(actualClass))) {
+                emails.addAll(files.toList());
+            }
+        }
+        // Ham and spam share some file names, so rows are matched by class and name
+        DecimalFormat format = new DecimalFormat("0.00000");
+        Map<String, String> expectedProbabilities = new HashMap<>();
+        for (TestFile result : detector.classifyAll(emails)) {
+            File email = new File(result.getFilename());
+            expectedProbabilities.put(email.getParentFile().getName() + "/" + email.getName(),
+                    format.format(result.getSpamProbability()));
+        }
+
+        // The last batch reaches the table on the Event Dispatch Thread, possibly after the task is done
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        int[] rowCount = new int[1];
+        do {
+            SwingUtilities.invokeAndWait(() -> rowCount[0] = tableModel.getRowCount());
+        } while (rowCount[0] < emails.size() && System.nanoTime() < deadline);
+        assertEquals(emails.size(), rowCount[0]);
+
+        SwingUtilities.invokeAndWait(() -> {
+            for (int row = 0; row < tableModel.getRowCount(); row++) {
+                String name = ((String) tableModel.getValueAt(row, 1)).toLowerCase(Locale.ROOT)
+                        + "/" + tableModel.getValueAt(row, 0);
+                assertTrue(expectedProbabilities.containsKey(name), "Unexpected row " + name);
+                assertEquals(expectedProbabilities.get(name), tableModel.getValueAt(row, 2), name);
+            }
+        });
+    }
+}
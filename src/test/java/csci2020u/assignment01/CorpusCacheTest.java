@@ -0,0 +1,124 @@
+package csci2020u.assignment01;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/*
+ * Checks that training through a CorpusCache, cold or warm, gives the same model as reading every file.
+ */
+class CorpusCacheTest {
+    private static final Path TRAIN = Path.of("src/main/resources/data/train");
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void warmCacheTrainsTheSameModelAsNoCache() {
+        Map<Path, Label> sources = new LinkedHashMap<>();
+        sources.put(TRAIN.resolve("ham"), Label.HAM);
+        sources.put(TRAIN.resolve("ham2"), Label.HAM);
+        sources.put(TRAIN.resolve("spam"), Label.SPAM);
+        assertCacheTrainsTheSameModel(sources);
+    }
+
+    @Test
+    void unreadableFileIsSkippedWithAndWithoutCache() throws IOException {
+        Path ham = copy(TRAIN.resolve("ham"), temp.resolve("ham"), 40);
+        Path spam = copy(TRAIN.resolve("spam"), temp.resolve("spam"), 40);
+        Map<Path, Label> sources = new LinkedHashMap<>();
+        sources.put(ham, Label.HAM);
+        sources.put(spam, Label.SPAM);
+
+        // Warm the cache while every file can still be read
+        CorpusCache cache = CorpusCache.open(temp.resolve("corpus.cache"));
+        new SpamDetector().train(sources, cache);
+        cache.save();
+
+        File unreadable;
+        try (Stream<Path> files = Files.list(ham)) {
+            unreadable = files.findFirst().orElseThrow().toFile();
+        }
+        assertTrue(unreadable.setReadable(false, false));
+        try {
+            assumeFalse(unreadable.canRead(), "File permissions do not apply to this user");
+            SpamModel uncached = assertCacheTrainsTheSameModel(sources);
+            assertEquals(39, uncached.numHamFiles());
+            assertEquals(40, uncached.numSpamFiles());
+        } finally {
+            unreadable.setReadable(true, false);
+        }
+    }
+
+    /*
+     * Trains on the sources without a cache, with a cold cache and with the same cache once saved and
+     * reopened, and checks that the three models have the same counts.
+     *
+     * @return The model trained without a cache.
+     */
+
+    private SpamModel assertCacheTrainsTheSameModel(Map<Path, Label> sources) {
+        SpamDetector uncached = new SpamDetector();
+        uncached.train(sources, null);
+
+        Path cacheFile = temp.resolve("same-model.cache");
+        CorpusCache cold = CorpusCache.open(cacheFile);
+        SpamDetector coldCached = new SpamDetector();
+        coldCached.train(sources, cold);
+        try {
+            cold.save();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        CorpusCache warm = CorpusCache.open(cacheFile);
+        SpamDetector warmCached = new SpamDetector();
+        warmCached.train(sources, warm);
+        assertTrue(warm.getFilesReused() > 0, "The cache was not warm");
+
+        assertSameCounts(uncached.model(), coldCached.model());
+        assertSameCounts(uncached.model(), warmCached.model());
+        return uncached.model();
+    }
+
+    private static void assertSameCounts(SpamModel expected, SpamModel actual) {
+        assertEquals(expected.numHamFiles(), actual.numHamFiles());
+        assertEquals(expected.numSpamFiles(), actual.numSpamFiles());
+        Vocabulary expectedCounts = new Vocabulary();
+        expected.addCountsTo(expectedCounts);
+        Vocabulary actualCounts = new Vocabulary();
+        actual.addCountsTo(actualCounts);
+        assertEquals(expectedCounts.size(), actualCounts.size());
+        for (int id = 0; id < expectedCounts.size(); id++) {
+            String word = expectedCounts.word(id);
+            int actualId = actualCounts.find(word);
+            assertTrue(actualId >= 0, "Missing word " + word);
+            assertEquals(expectedCounts.hamCount(id), actualCounts.hamCount(actualId), word);
+            assertEquals(expectedCounts.spamCount(id), actualCounts.spamCount(actualId), word);
+        }
+    }
+
+    // Copies the first files of a directory, in name order
+    private static Path copy(Path from, Path to, int files) throws IOException {
+        Files.createDirectories(to);
+        try (Stream<Path> listing = Files.list(from)) {
+            List<Path> first = listing.sorted().limit(files).toList();
+            for (Path file : first) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+        return to;
+    }
+}
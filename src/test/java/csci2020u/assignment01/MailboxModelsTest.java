@@ -0,0 +1,76 @@
+package csci2020u.assignment01;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Checks that mailboxes keep scoring and learning when their overlays cannot be written, and that
+ * the failures are counted and reported by flush().
+ */
+class MailboxModelsTest {
+    private static final Path DATA = Path.of("src/main/resources/data");
+    private static final int MAILBOXES = 5;
+    // Room for about two mailboxes that learned one email each, so learning more evicts
+    private static final long BUDGET = 100_000;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void unwritableDirectoryDoesNotFailScoringOrLearning() throws IOException {
+        SpamDetector shared = new SpamDetector();
+        shared.train(DATA.resolve("train").toFile());
+        List<Path> emails;
+        try (Stream<Path> files = Files.list(DATA.resolve("train/ham2"))) {
+            emails = files.sorted().limit(MAILBOXES).toList();
+        }
+        byte[] probe = Files.readAllBytes(emails.get(0));
+
+        Path directory = temp.resolve("mailboxes");
+        MailboxModels mailboxes = new MailboxModels(shared, directory, BUDGET);
+        MailboxModels reference = new MailboxModels(shared, temp.resolve("reference"), Long.MAX_VALUE);
+        // A regular file where the directory was: every overlay write fails, whoever runs the test
+        Files.delete(directory);
+        Files.writeString(directory, "not a directory");
+
+        for (int i = 0; i < MAILBOXES; i++) {
+            learn(mailboxes, "user" + i, emails.get(i));
+            learn(reference, "user" + i, emails.get(i));
+        }
+        for (int i = 0; i < MAILBOXES; i++) {
+            assertEquals(reference.score("user" + i, probe).toString(), mailboxes.score("user" + i, probe).toString());
+        }
+        MailboxStats stats = mailboxes.getStats();
+        assertTrue(stats.getWriteFailures() > 0, stats.toString());
+        assertEquals(MAILBOXES, stats.getLoadedMailboxes(), "Unwritten mailboxes must stay loaded");
+        assertThrows(IOException.class, mailboxes::flush);
+
+        // Once the directory is back, flush() writes every mailbox and a reload scores the same
+        Files.delete(directory);
+        Files.createDirectories(directory);
+        long failures = mailboxes.getStats().getWriteFailures();
+        mailboxes.flush();
+        assertEquals(failures, mailboxes.getStats().getWriteFailures());
+        MailboxModels reloaded = new MailboxModels(shared, directory, BUDGET);
+        for (int i = 0; i < MAILBOXES; i++) {
+            assertEquals(reference.score("user" + i, probe).toString(), reloaded.score("user" + i, probe).toString());
+        }
+    }
+
+    private static void learn(MailboxModels mailboxes, String mailbox, Path email) throws IOException {
+        try (InputStream in = Files.newInputStream(email)) {
+            mailboxes.learn(mailbox, in, Label.HAM);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package csci2020u.assignment01;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*
+ * Writes trained models with MappedModel.write(), maps them back and checks that every word,
+ * count, probability and weight survives exactly, and that a loaded detector scores like the
+ * one that saved it.
+ */
+class MappedModelTest {
+    private static final Path DATA = Path.of("src/main/resources/data");
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void writtenModelReadsBackExactly() throws IOException {
+        for (Tokenization mode : Tokenization.values()) {
+            SpamDetector detector = new SpamDetector();
+            detector.setTokenization(mode);
+            detector.train(DATA.resolve("train").toFile());
+            SpamModel written = detector.model();
+            Path file = temp.resolve(mode.name().toLowerCase(Locale.ROOT) + ".model");
+            MappedModel.write(file, written, mode);
+
+            MappedModel read = MappedModel.open(file);
+            assertSameModel(written, read, mode.name());
+            assertEquals(mode, read.tokenization());
+        }
+    }
+
+    @Test
+    void loadedDetectorScoresLikeTheSavedOne() throws IOException {
+        SpamDetector trained = new SpamDetector();
+        trained.setTokenization(Tokenization.MIME);
+        trained.train(DATA.resolve("train").toFile());
+        // Learning layers an overlay over the trained model, which save() compacts into one file
+        try (Stream<Path> files = Files.list(DATA.resolve("test/spam"))) {
+            for (Path email : files.sorted().limit(20).toList()) {
+                try (InputStream in = Files.newInputStream(email)) {
+                    trained.learn(in, Label.SPAM);
+                }
+            }
+        }
+        Path file = temp.resolve("detector.model");
+        trained.save(file);
+        SpamDetector loaded = SpamDetector.load(file);
+        assertEquals(Tokenization.MIME, loaded.getTokenization());
+
+        for (String directory : List.of("test/ham", "test/spam")) {
+            try (Stream<Path> files = Files.list(DATA.resolve(directory))) {
+                for (Path email : files.sorted().toList()) {
+                    byte[] message = Files.readAllBytes(email);
+                    SpamScore expected = trained.score(new ByteArrayInputStream(message));
+                    SpamScore actual = loaded.score(new ByteArrayInputStream(message));
+                    // The models hold the same weights but add them up in a different order
+                    assertEquals(expected.getSpamProbability(), actual.getSpamProbability(), 1e-12, email.toString());
+                    assertEquals(expected.getWordCount(), actual.getWordCount(), email.toString());
+                    assertEquals(expected.getKnownWordCount(), actual.getKnownWordCount(), email.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void rewritingReplacesTheFileWithoutLeavingTemporaryFiles() throws IOException {
+        SpamDetector detector = new SpamDetector();
+        detector.train(DATA.resolve("train").toFile());
+        Path file = temp.resolve("replaced.model");
+        MappedModel.write(file, VocabularyModel.train(new Vocabulary(16), 0, 0, 500));
+        MappedModel.write(file, detector.model());
+
+        assertSameModel(detector.model(), MappedModel.open(file), "rewritten");
+        try (Stream<Path> files = Files.list(temp)) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        SpamDetector detector = new SpamDetector();
+        detector.train(DATA.resolve("train").toFile());
+        Path file = temp.resolve("truncated.model");
+        MappedModel.write(file, detector.model());
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(IOException.class, () -> MappedModel.open(file));
+    }
+
+    private static void assertSameModel(SpamModel expected, MappedModel actual, String name) {
+        assertEquals(expected.numHamFiles(), actual.numHamFiles(), name);
+        assertEquals(expected.numSpamFiles(), actual.numSpamFiles(), name);
+        assertEquals(expected.smoothingFactor(), actual.smoothingFactor(), name);
+        assertEquals(expected.size(), actual.size(), name);
+        for (int id = 0; id < expected.size(); id++) {
+            String word = expected.word(id);
+            byte[] bytes = word.getBytes(StandardCharsets.ISO_8859_1);
+            int mappedId = actual.find(word);
+            assertEquals(mappedId, actual.find(bytes, bytes.length, word.hashCode()), word);
+            assertEquals(word, actual.word(mappedId), name);
+            assertEquals(expected.hamCount(id), actual.hamCount(mappedId), word);
+            assertEquals(expected.spamCount(id), actual.spamCount(mappedId), word);
+            assertEquals(expected.spamProbability(id), actual.spamProbability(mappedId), word);
+            assertEquals(expected.weight(id), actual.weight(mappedId), word);
+        }
+        assertEquals(-1, actual.find("not-a-word-in-any-email"), name);
+    }
+}
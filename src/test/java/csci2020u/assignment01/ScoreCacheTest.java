@@ -0,0 +1,73 @@
+package csci2020u.assignment01;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Checks that the score cache never changes a score: every message scored through the cache gets
+ * the score it gets without it, with both tokenizations.
+ */
+class ScoreCacheTest {
+    private static final Path DATA = Path.of("src/main/resources/data");
+
+    @Test
+    void cachedScoresMatchUncachedScores() throws IOException {
+        List<byte[]> messages = new ArrayList<>();
+        for (String directory : List.of("test/ham", "test/spam")) {
+            try (Stream<Path> files = Files.list(DATA.resolve(directory))) {
+                for (Path file : files.sorted().toList()) {
+                    messages.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        // Copies that differ in a trace header, which MIME scoring skips, or in a header it scores
+        for (byte[] message : List.copyOf(messages.subList(0, 200))) {
+            String text = new String(message, StandardCharsets.ISO_8859_1);
+            messages.add(latin1("Received: from relay.example by mx.example\n" + text));
+            messages.add(latin1(text.replaceFirst("(?mi)^To: .*$", "To: someone.else@example.com")));
+        }
+
+        for (Tokenization mode : Tokenization.values()) {
+            SpamDetector detector = new SpamDetector();
+            detector.setTokenization(mode);
+            detector.setScoreCacheSize(10_000);
+            detector.train(DATA.resolve("train").toFile());
+            // Twice, so that the second pass answers every message from the cache
+            for (int pass = 0; pass < 2; pass++) {
+                for (byte[] message : messages) {
+                    SpamScore uncached = detector.score(new ByteArrayInputStream(message));
+                    assertEquals(uncached.toString(), detector.score(message).toString(), mode.name());
+                }
+            }
+            assertTrue(detector.getScoreCacheStats().getHits() >= messages.size(), mode.name());
+        }
+    }
+
+    @Test
+    void keysLeaveOutOnlyTraceHeadersWhenAsked() {
+        byte[] message = latin1("From: a@example.com\nSubject: offer\n\nbody\n");
+        byte[] delivered = latin1("From: a@example.com\nReceived: from relay.example\nSubject: offer\n\nbody\n");
+        byte[] readdressed = latin1("From: a@example.com\nTo: b@example.com\nSubject: offer\n\nbody\n");
+
+        assertEquals(ContentHash.of(message, true), ContentHash.of(delivered, true));
+        assertNotEquals(ContentHash.of(message, false), ContentHash.of(delivered, false));
+        assertNotEquals(ContentHash.of(message, true), ContentHash.of(readdressed, true));
+        assertEquals(ContentHash.of(message, false), ContentHash.of(message.clone(), false));
+    }
+
+    private static byte[] latin1(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,125 @@
+package csci2020u.assignment01;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/*
+ * Checks that WordTokenizer produces the words line.toLowerCase().split("\\W+") gives for every
+ * line, in the same order and with String.hashCode() hashes, over the bundled corpus and the
+ * cases the byte scanner handles specially.
+ */
+class WordTokenizerTest {
+    private static final Path DATA = Path.of("src/main/resources/data");
+
+    private static final List<String> EDGE_CASES = List.of(
+            "",
+            "\n",
+            "\n\n\n",
+            "word",
+            "two words\n",
+            "!leading punctuation",
+            "  leading spaces and trailing ones  ",
+            "!!!",
+            "a\n\nb\n",
+            "cr\rlf\r\ncrlf\n\rmixed\r",
+            "\r\n\r\n",
+            "under_score snake_case __ 42 x1y2",
+            "\u0130stanbul \u0130\u0130 a\u0130b \u0130",
+            "\u212Aelvin 5\u212A \u212A",
+            "!\u0130 !\u212A",
+            "caf\u00E9 na\u00EFve \u00C9COLE stra\u00DFe",
+            "\u00FF\u0100\u0131\u2122\u20AC \u4E2D\u6587 emoji\uD83D\uDE00here",
+            "MiXeD CaSe WORDS");
+
+    @Test
+    void corpusMatchesRegexSplit() throws IOException {
+        assumeTurkicLocaleNotInUse();
+        WordTokenizer tokenizer = new WordTokenizer();
+        List<Path> emails;
+        try (Stream<Path> files = Files.walk(DATA)) {
+            emails = files.filter(Files::isRegularFile).sorted().toList();
+        }
+        assertTrue(emails.size() > 1000, "Expected the bundled corpus under " + DATA);
+
+        for (Path email : emails) {
+            byte[] bytes = Files.readAllBytes(email);
+            List<String> expected = regexSplit(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+            assertEquals(expected, tokenize(tokenizer, bytes), email.toString());
+        }
+    }
+
+    @Test
+    void edgeCasesMatchRegexSplit() throws IOException {
+        assumeTurkicLocaleNotInUse();
+        WordTokenizer tokenizer = new WordTokenizer();
+        for (String text : EDGE_CASES) {
+            List<String> expected = regexSplit(new StringReader(text));
+            String name = text.replace("\r", "\\r").replace("\n", "\\n");
+            assertEquals(expected, tokenize(tokenizer, text.getBytes(StandardCharsets.UTF_8)), "bytes: " + name);
+            assertEquals(expected, tokenize(tokenizer, text), "chars: " + name);
+        }
+    }
+
+    @Test
+    void emptyLinesAndLeadingSeparatorsYieldTheEmptyWord() throws IOException {
+        WordTokenizer tokenizer = new WordTokenizer();
+        assertEquals(List.of(), tokenize(tokenizer, new byte[0]));
+        assertEquals(List.of(""), tokenize(tokenizer, "\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of("a", "", "b"), tokenize(tokenizer, "a\n\nb".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of("", "hi"), tokenize(tokenizer, "!hi".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of("i", "k"), tokenize(tokenizer, "\u0130 \u212A".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // What the detector did before WordTokenizer: read lines, lowercase them and split on non-word runs
+    private static List<String> regexSplit(Reader text) throws IOException {
+        List<String> words = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(text)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                words.addAll(List.of(line.toLowerCase().split("\\W+")));
+            }
+        }
+        return words;
+    }
+
+    private static List<String> tokenize(WordTokenizer tokenizer, byte[] bytes) throws IOException {
+        List<String> words = new ArrayList<>();
+        tokenizer.tokenize(new ByteArrayInputStream(bytes), (token, length, hash) -> words.add(word(token, length, hash)));
+        return words;
+    }
+
+    private static List<String> tokenize(WordTokenizer tokenizer, String text) {
+        List<String> words = new ArrayList<>();
+        tokenizer.tokenize(text, (token, length, hash) -> words.add(word(token, length, hash)));
+        return words;
+    }
+
+    private static String word(byte[] token, int length, int hash) {
+        String word = new String(token, 0, length, StandardCharsets.ISO_8859_1);
+        assertEquals(word.hashCode(), hash, word);
+        return word;
+    }
+
+    // Under a Turkic default locale toLowerCase() maps 'I' to a dotless i, which the tokenizer does not
+    private static void assumeTurkicLocaleNotInUse() {
+        String language = Locale.getDefault().getLanguage();
+        assumeFalse(language.equals("tr") || language.equals("az"), "Turkic default locale");
+    }
+}